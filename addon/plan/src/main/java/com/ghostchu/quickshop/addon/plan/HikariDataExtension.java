@@ -52,7 +52,7 @@ public class HikariDataExtension implements DataExtension {
     @StringProvider(text = "Total shops", description = "How many shops exists on this server", iconName = "hashtable", iconColor = Color.GREEN, priority = 100, showInPlayerTable = false)
     @Tab("Summary")
     public String shopCreated() {
-        return String.valueOf(main.getQuickShop().getShopManager().getAllShops().size());
+        return String.valueOf(main.getQuickShop().getShopManager().getShopCount());
     }
 
     @Tab("Summary")
@@ -123,7 +123,9 @@ public class HikariDataExtension implements DataExtension {
 
     @StringProvider(text = "Owned shops", description = "How many shops created and exists by this player", iconName = "hashtable", iconColor = Color.GREEN, priority = 100, showInPlayerTable = true)
     public String shopCreatedPlayer(UUID playerUUID) {
-        return String.valueOf(main.getQuickShop().getShopManager().getPlayerAllShops(playerUUID).size());
+        return String.valueOf(main.getQuickShop().getShopManager().getShopSummaries().stream()
+                .filter(summary -> summary.owner().equals(playerUUID))
+                .count());
     }
 
     @TableProvider(tableColor = Color.BLUE)
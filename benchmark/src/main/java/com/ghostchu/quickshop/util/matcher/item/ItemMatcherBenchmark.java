@@ -0,0 +1,147 @@
+package com.ghostchu.quickshop.util.matcher.item;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the fingerprint matching with the comparison before it (clone both stacks, reset the amounts and compare),
+ * on the common cases of scanning a shop inventory: the same item, another material, the same material without meta
+ * and a renamed item.
+ * <p>
+ * Work type 0 runs the meta matcher with the default options, except the display name and lores, they are read
+ * by the platform of a running plugin. The items are created by MockBukkit, the meta cloning cost on a real server
+ * (CraftMetaItem) is higher than the mock.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemMatcherBenchmark {
+    @Param({"0", "1", "2"})
+    public int workType;
+    private QuickShopItemMatcherImpl matcher;
+    private QuickShopItemMatcherImpl.ItemMetaMatcher metaMatcher;
+    private ItemFingerprint fingerprint;
+    private ItemStack shopItem;
+    private ItemStack sameItem;
+    private ItemStack otherMaterial;
+    private ItemStack noMeta;
+    private ItemStack renamed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MockBukkit.mock();
+        shopItem = named(Material.DIAMOND_SWORD, "Shop Sword");
+        sameItem = shopItem.clone();
+        otherMaterial = new ItemStack(Material.STONE, 64);
+        noMeta = new ItemStack(Material.DIAMOND_SWORD);
+        renamed = named(Material.DIAMOND_SWORD, "Another Sword");
+        // The plugin only used for the platform shop id, not involved here
+        matcher = new QuickShopItemMatcherImpl(null, workType == 0 ? metaMatcher() : null, workType);
+        fingerprint = ItemFingerprint.of(shopItem, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    @Benchmark
+    public boolean fingerprintSameItem() {
+        return matcher.matches(fingerprint, shopItem, sameItem);
+    }
+
+    @Benchmark
+    public boolean fingerprintOtherMaterial() {
+        return matcher.matches(fingerprint, shopItem, otherMaterial);
+    }
+
+    @Benchmark
+    public boolean fingerprintNoMeta() {
+        return matcher.matches(fingerprint, shopItem, noMeta);
+    }
+
+    @Benchmark
+    public boolean fingerprintRenamed() {
+        return matcher.matches(fingerprint, shopItem, renamed);
+    }
+
+    @Benchmark
+    public boolean legacySameItem() {
+        return legacyMatches(shopItem, sameItem);
+    }
+
+    @Benchmark
+    public boolean legacyOtherMaterial() {
+        return legacyMatches(shopItem, otherMaterial);
+    }
+
+    @Benchmark
+    public boolean legacyNoMeta() {
+        return legacyMatches(shopItem, noMeta);
+    }
+
+    @Benchmark
+    public boolean legacyRenamed() {
+        return legacyMatches(shopItem, renamed);
+    }
+
+    /* The comparison before the fingerprint added */
+    private boolean legacyMatches(@NotNull ItemStack requireStack, @NotNull ItemStack givenStack) {
+        requireStack = requireStack.clone();
+        requireStack.setAmount(1);
+        givenStack = givenStack.clone();
+        givenStack.setAmount(1);
+        if (workType == 1) {
+            return requireStack.isSimilar(givenStack);
+        }
+        if (workType == 2) {
+            return requireStack.equals(givenStack);
+        }
+        if (requireStack.getType() != givenStack.getType()) {
+            return false;
+        }
+        if (requireStack.isSimilar(givenStack)) {
+            return true;
+        }
+        if (requireStack.hasItemMeta() && givenStack.hasItemMeta()) {
+            return metaMatcher.matches(requireStack, givenStack);
+        }
+        return !requireStack.hasItemMeta() && !givenStack.hasItemMeta();
+    }
+
+    /* The default matcher.item options, except the options depend on the plugin */
+    @NotNull
+    private QuickShopItemMatcherImpl.ItemMetaMatcher metaMatcher() {
+        if (metaMatcher == null) {
+            YamlConfiguration config = new YamlConfiguration();
+            for (String option : List.of("damage", "enchs", "potions", "attributes", "itemflags", "custommodeldata", "books",
+                    "banner", "skull", "firework", "map", "leatherArmor", "fishBucket", "suspiciousStew", "bundle")) {
+                config.set(option, true);
+            }
+            // The shulker box matcher compares the contents by the item matcher, no shulker boxes here
+            metaMatcher = new QuickShopItemMatcherImpl.ItemMetaMatcher(config, new QuickShopItemMatcherImpl(null, null, 1));
+        }
+        return metaMatcher;
+    }
+
+    @NotNull
+    private static ItemStack named(@NotNull Material material, @NotNull String name) {
+        ItemStack stack = new ItemStack(material);
+        ItemMeta meta = stack.getItemMeta();
+        meta.setDisplayName(name);
+        meta.setLore(List.of("Sold by QuickShop"));
+        stack.setItemMeta(meta);
+        return stack;
+    }
+}
@@ -5,7 +5,6 @@ import com.ghostchu.quickshop.compatibility.CompatibilityModule;
 import net.alex9849.arm.events.RemoveRegionEvent;
 import net.alex9849.arm.events.RestoreRegionEvent;
 import net.alex9849.arm.regions.Region;
-import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.event.EventHandler;
@@ -13,11 +12,6 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.util.Vector;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-
 public final class Main extends CompatibilityModule implements Listener {
 
     @Override
@@ -34,31 +28,12 @@ public final class Main extends CompatibilityModule implements Listener {
         Vector minPoint = region.getRegion().getMinPoint();
         Vector maxPoint = region.getRegion().getMaxPoint();
         World world = region.getRegionworld();
-        Set<Chunk> chuckLocations = new HashSet<>();
-
-        for (int x = minPoint.getBlockX(); x <= maxPoint.getBlockX() + 16; x += 16) {
-            for (int z = minPoint.getBlockZ(); z <= maxPoint.getBlockZ() + 16; z += 16) {
-                chuckLocations.add(world.getChunkAt(x >> 4, z >> 4));
-            }
-        }
-
-
-        HashMap<Location, Shop> shopMap = new HashMap<>();
-
-        for (Chunk chunk : chuckLocations) {
-            Map<Location, Shop> shopsInChunk = getApi().getShopManager().getShops(chunk);
-            if (shopsInChunk != null) {
-                shopMap.putAll(shopsInChunk);
-            }
-        }
-        for (Map.Entry<Location, Shop> shopEntry : shopMap.entrySet()) {
-            Location shopLocation = shopEntry.getKey();
+        // Region query never loads the chunks
+        for (Shop shop : getShops(world.getName(), minPoint.getBlockX(), minPoint.getBlockZ(), maxPoint.getBlockX(), maxPoint.getBlockZ())) {
+            Location shopLocation = shop.getLocation();
             if (region.getRegion().contains(shopLocation.getBlockX(), shopLocation.getBlockY(), shopLocation.getBlockZ())) {
-                Shop shop = shopEntry.getValue();
-                if (shop != null) {
-                    shop.onUnload();
-                    shop.delete(false);
-                }
+                shop.onUnload();
+                shop.delete(false);
             }
         }
     }
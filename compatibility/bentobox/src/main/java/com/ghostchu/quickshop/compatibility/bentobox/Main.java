@@ -22,6 +22,8 @@ public final class Main extends CompatibilityModule implements Listener {
 
     @Override
     public void init() {
+        // The island memberships override the DELETE authorize results
+        bypassAuthorizeCache(QuickShop.getInstance(), BuiltInShopPermission.DELETE.getRawNode());
         deleteShopOnLeave = getConfig().getBoolean("delete-shop-on-member-leave");
         deleteShopOnReset = getConfig().getBoolean("delete-shop-on-island-reset");
     }
@@ -1,12 +1,12 @@
 package com.ghostchu.quickshop.compatibility;
 
+import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.QuickShopAPI;
 import com.ghostchu.quickshop.api.event.QSConfigurationReloadEvent;
 import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.common.util.CommonUtil;
 import com.ghostchu.quickshop.util.logging.container.ShopRemoveLog;
 import org.bukkit.Bukkit;
-import org.bukkit.Location;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.HandlerList;
@@ -16,9 +16,7 @@ import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
 public abstract class CompatibilityModule extends JavaPlugin implements Listener {
@@ -28,30 +26,22 @@ public abstract class CompatibilityModule extends JavaPlugin implements Listener
         return api;
     }
 
+    /**
+     * Gets the shops inside the region, all heights included. The chunks will never be loaded.
+     *
+     * @param worldName The world name
+     * @param minX      min block x, inclusive
+     * @param minZ      min block z, inclusive
+     * @param maxX      max block x, inclusive
+     * @param maxZ      max block z, inclusive
+     * @return The shops inside the region
+     */
     public List<Shop> getShops(@NotNull String worldName, int minX, int minZ, int maxX, int maxZ) {
-        List<Shop> shopsList = new ArrayList<>();
-        for (int x = minX >> 4; x <= maxX >> 4; x++) {
-            for (int z = minZ >> 4; z <= maxZ >> 4; z++) {
-                Map<Location, Shop> shops = this.api.getShopManager().getShops(worldName, x, z);
-                if (shops != null) {
-                    shopsList.addAll(shops.values());
-                }
-            }
-        }
-        return shopsList;
+        return this.api.getShopManager().getShopsInRegion(worldName, minX, minZ, maxX, maxZ);
     }
 
     public List<Shop> getShops(@NotNull String worldName, int chunkX, int chunkZ) {
-        List<Shop> shopsList = new ArrayList<>();
-        for (int x = chunkX; x <= chunkX; x++) {
-            for (int z = chunkZ; z <= chunkZ; z++) {
-                Map<Location, Shop> shops = this.api.getShopManager().getShops(worldName, x, z);
-                if (shops != null) {
-                    shopsList.addAll(shops.values());
-                }
-            }
-        }
-        return shopsList;
+        return getShops(worldName, chunkX << 4, chunkZ << 4, (chunkX << 4) + 15, (chunkZ << 4) + 15);
     }
 
     @Override
@@ -68,6 +58,9 @@ public abstract class CompatibilityModule extends JavaPlugin implements Listener
     public void onDisable() {
         // Plugin shutdown logic
         HandlerList.unregisterAll((Plugin) this);
+        if (QuickShop.getInstance() != null && QuickShop.getInstance().getShopPermissionManager() != null) {
+            QuickShop.getInstance().getShopPermissionManager().setAuthorizeCacheBypass(this, false);
+        }
         getLogger().info("Unloading...");
     }
 
@@ -86,6 +79,28 @@ public abstract class CompatibilityModule extends JavaPlugin implements Listener
 
     public abstract void init();
 
+    /**
+     * Opts out the shop authorize cache, so this module sees the ShopAuthorizeCalculateEvent for every authorize call.
+     * Required by the modules overriding the authorize results without invalidating the cache
+     * when their memberships or regions changed. Use {@link #bypassAuthorizeCache(Plugin, String)} if the module
+     * only overrides some permissions.
+     *
+     * @param bypass true to opt out, false to clear all opt outs of this module
+     */
+    protected void bypassAuthorizeCache(boolean bypass) {
+        QuickShop.getInstance().getShopPermissionManager().setAuthorizeCacheBypass(this, bypass);
+    }
+
+    /**
+     * Opts out the shop authorize cache for the permission only, the other permissions are still cached.
+     *
+     * @param namespace  Plugin instance for the permission namespace.
+     * @param permission Permission name.
+     */
+    protected void bypassAuthorizeCache(@NotNull Plugin namespace, @NotNull String permission) {
+        QuickShop.getInstance().getShopPermissionManager().setAuthorizeCacheBypass(this, namespace, permission, true);
+    }
+
     @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
     public void onQuickShopReload(QSConfigurationReloadEvent event) {
         reloadConfig();
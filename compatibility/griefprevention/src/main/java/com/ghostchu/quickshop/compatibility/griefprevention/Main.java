@@ -15,7 +15,6 @@ import me.ryanhamshire.GriefPrevention.Claim;
 import me.ryanhamshire.GriefPrevention.ClaimPermission;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
 import me.ryanhamshire.GriefPrevention.events.*;
-import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
@@ -60,6 +59,27 @@ public final class Main extends CompatibilityModule implements Listener {
         return result;
     }
 
+    // The claim permissions override the shop authorize results, forget the cached results once claims changed.
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClaimCreatedInvalidate(ClaimCreatedEvent event) {
+        QuickShop.getInstance().getShopPermissionManager().invalidateAuthorizeCache();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClaimDeletedInvalidate(ClaimDeletedEvent event) {
+        QuickShop.getInstance().getShopPermissionManager().invalidateAuthorizeCache();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClaimModifiedInvalidate(ClaimModifiedEvent event) {
+        QuickShop.getInstance().getShopPermissionManager().invalidateAuthorizeCache();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClaimExpiredInvalidate(ClaimExpirationEvent event) {
+        QuickShop.getInstance().getShopPermissionManager().invalidateAuthorizeCache();
+    }
+
     // Since only the main claim expires, we will call the handleMainClaimUnclaimedOrExpired method.
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onClaimExpired(ClaimExpirationEvent event) {
@@ -71,15 +91,10 @@ public final class Main extends CompatibilityModule implements Listener {
 
     // If it is the main claim, then we will delete all the shops that were inside of it.
     private void handleMainClaimUnclaimedOrExpired(Claim claim, String logMessage) {
-        for (Chunk chunk : claim.getChunks()) {
-            Map<Location, Shop> shops = getApi().getShopManager().getShops(chunk);
-            if (shops != null) {
-                for (Shop shop : shops.values()) {
-                    if (claim.contains(shop.getLocation(), false, false)) {
-                        getApi().logEvent(new ShopRemoveLog(CommonUtil.getNilUniqueId(), String.format("[%s Integration]Shop %s deleted caused by [System] Claim/SubClaim Unclaimed/Expired: " + logMessage, this.getName(), shop), shop.saveToInfoStorage()));
-                        shop.delete();
-                    }
-                }
+        for (Shop shop : getShops(claim)) {
+            if (claim.contains(shop.getLocation(), false, false)) {
+                getApi().logEvent(new ShopRemoveLog(CommonUtil.getNilUniqueId(), String.format("[%s Integration]Shop %s deleted caused by [System] Claim/SubClaim Unclaimed/Expired: " + logMessage, this.getName(), shop), shop.saveToInfoStorage()));
+                shop.delete();
             }
         }
     }
@@ -103,16 +118,11 @@ public final class Main extends CompatibilityModule implements Listener {
     // If it is a main claim, then we will remove the shops if the main claim was resized (size was decreased).
     // A shop will be removed if the old claim contains it but the new claim doesn't.
     private void handleMainClaimResized(Claim oldClaim, Claim newClaim) {
-        for (Chunk chunk : oldClaim.getChunks()) {
-            Map<Location, Shop> shops = getApi().getShopManager().getShops(chunk);
-            if (shops != null) {
-                for (Shop shop : shops.values()) {
-                    if (oldClaim.contains(shop.getLocation(), false, false) &&
-                            !newClaim.contains(shop.getLocation(), false, false)) {
-                        getApi().logEvent(new ShopRemoveLog(CommonUtil.getNilUniqueId(), String.format("[%s Integration]Shop %s deleted caused by [Single] Claim Resized: ", this.getName(), shop), shop.saveToInfoStorage()));
-                        shop.delete();
-                    }
-                }
+        for (Shop shop : getShops(oldClaim)) {
+            if (oldClaim.contains(shop.getLocation(), false, false) &&
+                    !newClaim.contains(shop.getLocation(), false, false)) {
+                getApi().logEvent(new ShopRemoveLog(CommonUtil.getNilUniqueId(), String.format("[%s Integration]Shop %s deleted caused by [Single] Claim Resized: ", this.getName(), shop), shop.saveToInfoStorage()));
+                shop.delete();
             }
         }
     }
@@ -127,17 +137,12 @@ public final class Main extends CompatibilityModule implements Listener {
     }
 
     private void handleSubClaimResizedHelper(Claim claimVerifyChunks, Claim claimVerifyShop) {
-        for (Chunk chunk : claimVerifyChunks.getChunks()) {
-            Map<Location, Shop> shops = getApi().getShopManager().getShops(chunk);
-            if (shops != null) {
-                for (Shop shop : shops.values()) {
-                    if (!shop.getOwner().equals(claimVerifyChunks.getOwnerID()) &&
-                            claimVerifyChunks.contains(shop.getLocation(), false, false) &&
-                            !claimVerifyShop.contains(shop.getLocation(), false, false)) {
-                        getApi().logEvent(new ShopRemoveLog(CommonUtil.getNilUniqueId(), String.format("[%s Integration]Shop %s deleted caused by [Single] SubClaim Resized: ", this.getName(), shop), shop.saveToInfoStorage()));
-                        shop.delete();
-                    }
-                }
+        for (Shop shop : getShops(claimVerifyChunks)) {
+            if (!shop.getOwner().equals(claimVerifyChunks.getOwnerID()) &&
+                    claimVerifyChunks.contains(shop.getLocation(), false, false) &&
+                    !claimVerifyShop.contains(shop.getLocation(), false, false)) {
+                getApi().logEvent(new ShopRemoveLog(CommonUtil.getNilUniqueId(), String.format("[%s Integration]Shop %s deleted caused by [Single] SubClaim Resized: ", this.getName(), shop), shop.saveToInfoStorage()));
+                shop.delete();
             }
         }
     }
@@ -163,25 +168,19 @@ public final class Main extends CompatibilityModule implements Listener {
 
     // Helper to the Claim Trust Changed Event Handler (to avoid duplicate code above)
     private void handleClaimTrustChanged(Claim claim, TrustChangedEvent event) {
-        for (Chunk chunk : claim.getChunks()) {
-            Map<Location, Shop> shops = getApi().getShopManager().getShops(chunk);
-            if (shops == null) {
+        for (Shop shop : getShops(claim)) {
+            if (shop.getOwner().equals(claim.getOwnerID())) {
                 continue;
             }
-            for (Shop shop : shops.values()) {
-                if (shop.getOwner().equals(claim.getOwnerID())) {
-                    continue;
-                }
-                if (event.getIdentifier().equals(shop.getOwner().toString())) {
-                    getApi().logEvent(new ShopRemoveLog(Util.getSenderUniqueId(event.getChanger()), String.format("[%s Integration]Shop %s deleted caused by [Single] Claim/SubClaim Trust Changed", this.getName(), shop), shop.saveToInfoStorage()));
-                    shop.delete();
-                } else if (event.getIdentifier().contains(shop.getOwner().toString())) {
-                    getApi().logEvent(new ShopRemoveLog(Util.getSenderUniqueId(event.getChanger()), String.format("[%s Integration]Shop %s deleted caused by [Group] Claim/SubClaim Trust Changed", this.getName(), shop), shop.saveToInfoStorage()));
-                    shop.delete();
-                } else if ("all".equals(event.getIdentifier()) || "public".equals(event.getIdentifier())) {
-                    getApi().logEvent(new ShopRemoveLog(Util.getSenderUniqueId(event.getChanger()), String.format("[%s Integration]Shop %s deleted caused by [All/Public] Claim/SubClaim Trust Changed", this.getName(), shop), shop.saveToInfoStorage()));
-                    shop.delete();
-                }
+            if (event.getIdentifier().equals(shop.getOwner().toString())) {
+                getApi().logEvent(new ShopRemoveLog(Util.getSenderUniqueId(event.getChanger()), String.format("[%s Integration]Shop %s deleted caused by [Single] Claim/SubClaim Trust Changed", this.getName(), shop), shop.saveToInfoStorage()));
+                shop.delete();
+            } else if (event.getIdentifier().contains(shop.getOwner().toString())) {
+                getApi().logEvent(new ShopRemoveLog(Util.getSenderUniqueId(event.getChanger()), String.format("[%s Integration]Shop %s deleted caused by [Group] Claim/SubClaim Trust Changed", this.getName(), shop), shop.saveToInfoStorage()));
+                shop.delete();
+            } else if ("all".equals(event.getIdentifier()) || "public".equals(event.getIdentifier())) {
+                getApi().logEvent(new ShopRemoveLog(Util.getSenderUniqueId(event.getChanger()), String.format("[%s Integration]Shop %s deleted caused by [All/Public] Claim/SubClaim Trust Changed", this.getName(), shop), shop.saveToInfoStorage()));
+                shop.delete();
             }
         }
 
@@ -204,20 +203,22 @@ public final class Main extends CompatibilityModule implements Listener {
     // If it is a subclaim, then we will not remove the shops of the main claim owner.
     // But we will remove all the others.
     private void handleSubClaimUnclaimed(Claim subClaim) {
-        for (Chunk chunk : subClaim.getChunks()) {
-            Map<Location, Shop> shops = getApi().getShopManager().getShops(chunk);
-            if (shops != null) {
-                for (Shop shop : shops.values()) {
-                    if (!shop.getOwner().equals(subClaim.getOwnerID()) &&
-                            subClaim.contains(shop.getLocation(), false, false)) {
-                        getApi().logEvent(new ShopRemoveLog(CommonUtil.getNilUniqueId(), String.format("[%s Integration]Shop %s deleted caused by [Single] SubClaim Unclaimed", this.getName(), shop), shop.saveToInfoStorage()));
-                        shop.delete();
-                    }
-                }
+        for (Shop shop : getShops(subClaim)) {
+            if (!shop.getOwner().equals(subClaim.getOwnerID()) &&
+                    subClaim.contains(shop.getLocation(), false, false)) {
+                getApi().logEvent(new ShopRemoveLog(CommonUtil.getNilUniqueId(), String.format("[%s Integration]Shop %s deleted caused by [Single] SubClaim Unclaimed", this.getName(), shop), shop.saveToInfoStorage()));
+                shop.delete();
             }
         }
     }
 
+    // Query by the claim boundary, the Claim#getChunks will load the chunks
+    private List<Shop> getShops(Claim claim) {
+        Location lesser = claim.getLesserBoundaryCorner();
+        Location greater = claim.getGreaterBoundaryCorner();
+        return getShops(lesser.getWorld().getName(), lesser.getBlockX(), lesser.getBlockZ(), greater.getBlockX(), greater.getBlockZ());
+    }
+
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onCreation(ShopCreateEvent event) {
         //noinspection ConstantConditions
@@ -262,16 +263,11 @@ public final class Main extends CompatibilityModule implements Listener {
         if (event.getClaim().parent == null) {
             return;
         }
-        for (Chunk chunk : event.getClaim().getChunks()) {
-            Map<Location, Shop> shops = getApi().getShopManager().getShops(chunk);
-            if (shops != null) {
-                for (Shop shop : shops.values()) {
-                    if (!shop.getOwner().equals(event.getClaim().getOwnerID()) &&
-                            event.getClaim().contains(shop.getLocation(), false, false)) {
-                        getApi().logEvent(new ShopRemoveLog(Util.getSenderUniqueId(event.getCreator()), String.format("[%s Integration]Shop %s deleted caused by [Single] SubClaim Created", this.getName(), shop), shop.saveToInfoStorage()));
-                        shop.delete();
-                    }
-                }
+        for (Shop shop : getShops(event.getClaim())) {
+            if (!shop.getOwner().equals(event.getClaim().getOwnerID()) &&
+                    event.getClaim().contains(shop.getLocation(), false, false)) {
+                getApi().logEvent(new ShopRemoveLog(Util.getSenderUniqueId(event.getCreator()), String.format("[%s Integration]Shop %s deleted caused by [Single] SubClaim Created", this.getName(), shop), shop.saveToInfoStorage()));
+                shop.delete();
             }
         }
     }
@@ -5,12 +5,10 @@ import com.ghostchu.quickshop.api.event.ShopAuthorizeCalculateEvent;
 import com.ghostchu.quickshop.api.event.ShopCreateEvent;
 import com.ghostchu.quickshop.api.event.ShopPreCreateEvent;
 import com.ghostchu.quickshop.api.event.ShopPurchaseEvent;
-import com.ghostchu.quickshop.api.shop.Shop;
-import com.ghostchu.quickshop.api.shop.ShopChunk;
+import com.ghostchu.quickshop.api.shop.ShopSummary;
 import com.ghostchu.quickshop.api.shop.permission.BuiltInShopPermission;
 import com.ghostchu.quickshop.common.util.CommonUtil;
 import com.ghostchu.quickshop.compatibility.CompatibilityModule;
-import com.ghostchu.quickshop.util.Util;
 import me.angeschossen.lands.api.events.LandUntrustPlayerEvent;
 import me.angeschossen.lands.api.events.PlayerLeaveLandEvent;
 import me.angeschossen.lands.api.integration.LandsIntegration;
@@ -21,7 +19,8 @@ import org.bukkit.World;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 public final class Main extends CompatibilityModule {
@@ -32,6 +31,8 @@ public final class Main extends CompatibilityModule {
 
     @Override
     public void init() {
+        // The land trusts override the DELETE authorize results
+        bypassAuthorizeCache(QuickShop.getInstance(), BuiltInShopPermission.DELETE.getRawNode());
         landsIntegration = new me.angeschossen.lands.api.integration.LandsIntegration(this);
         ignoreDisabledWorlds = getConfig().getBoolean("ignore-disabled-worlds");
         whitelist = getConfig().getBoolean("whitelist-mode");
@@ -70,27 +71,21 @@ public final class Main extends CompatibilityModule {
     }
 
     private void deleteShopInLand(Land land, UUID target) {
-        //Getting all shop with world-chunk-shop mapping
-        for (Map.Entry<String, Map<ShopChunk, Map<Location, Shop>>> entry : getApi().getShopManager().getShops().entrySet()) {
-            //Matching world
-            World world = getServer().getWorld(entry.getKey());
-            if (world != null) {
-                //Matching chunk
-                for (Map.Entry<ShopChunk, Map<Location, Shop>> chunkedShopEntry : entry.getValue().entrySet()) {
-                    ShopChunk shopChunk = chunkedShopEntry.getKey();
-                    if (land.hasChunk(world, shopChunk.getX(), shopChunk.getZ())) {
-                        //Matching Owner and delete it
-                        Map<Location, Shop> shops = chunkedShopEntry.getValue();
-                        for (Shop shop : shops.values()) {
-                            if (target.equals(shop.getOwner())) {
-                                recordDeletion(CommonUtil.getNilUniqueId(), shop, "Lands: shop deleted because owner lost permission");
-                                Util.mainThreadRun(shop::delete);
-                            }
-                        }
-                    }
-                }
+        // Matching owner and land chunk by the summaries, only the shops going to delete will be hydrated
+        List<ShopSummary> matched = new ArrayList<>();
+        for (ShopSummary summary : getApi().getShopManager().getShopSummaries()) {
+            if (!target.equals(summary.owner())) {
+                continue;
+            }
+            World world = getServer().getWorld(summary.world());
+            if (world != null && land.hasChunk(world, summary.chunkX(), summary.chunkZ())) {
+                matched.add(summary);
             }
         }
+        getApi().getShopManager().hydrateLazily(matched, shop -> {
+            recordDeletion(CommonUtil.getNilUniqueId(), shop, "Lands: shop deleted because owner lost permission");
+            shop.delete();
+        });
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -94,6 +94,8 @@ public final class Main extends CompatibilityModule implements Listener {
 
     @Override
     public void init() {
+        // The plot trusts override the DELETE authorize results
+        bypassAuthorizeCache(QuickShop.getInstance(), BuiltInShopPermission.DELETE.getRawNode());
         this.whiteList = getConfig().getBoolean("whitelist-mode");
         this.deleteUntrusted = getConfig().getBoolean("delete-when-user-untrusted");
     }
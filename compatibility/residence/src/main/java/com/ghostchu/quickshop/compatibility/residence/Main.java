@@ -31,6 +31,8 @@ public final class Main extends CompatibilityModule {
             Bukkit.getPluginManager().disablePlugin(this);
             return;
         }
+        // The residence owners override all authorize results
+        bypassAuthorizeCache(getConfig().getBoolean("allow-permission-override"));
         whitelist = getConfig().getBoolean("whitelist-mode");
         FlagPermissions.addFlag(CREATE_FLAG);
         FlagPermissions.addFlag(TRADE_FLAG);
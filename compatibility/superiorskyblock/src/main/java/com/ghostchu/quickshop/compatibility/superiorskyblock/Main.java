@@ -14,13 +14,14 @@ import com.ghostchu.quickshop.api.event.ShopPreCreateEvent;
 import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.api.shop.permission.BuiltInShopPermission;
 import com.ghostchu.quickshop.compatibility.CompatibilityModule;
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Map;
 import java.util.UUID;
 
 
@@ -37,20 +38,24 @@ public final class Main extends CompatibilityModule implements Listener {
     }
 
     private void deleteShops(@NotNull Island island, @Nullable UUID uuid) {
-        island.getAllChunks().forEach((chunk) -> {
-            Map<Location, Shop> shops = QuickShop.getInstance().getShopManager().getShops(chunk);
-            if (shops != null && !shops.isEmpty()) {
-                shops.forEach((location, shop) -> {
-                    if (uuid != null) {
-                        if (!shop.getOwner().equals(uuid)) {
-                            return;
-                        }
-                        recordDeletion(uuid, shop, "Shop deleting");
-                        shop.delete();
-                    }
-                });
+        if (uuid == null) {
+            return;
+        }
+        Location min = island.getMinimum();
+        Location max = island.getMaximum();
+        // The islands share the same area in all island worlds, region query never loads the chunks
+        for (World world : Bukkit.getWorlds()) {
+            if (!SuperiorSkyblockAPI.getGrid().isIslandsWorld(world)) {
+                continue;
             }
-        });
+            for (Shop shop : getShops(world.getName(), min.getBlockX(), min.getBlockZ(), max.getBlockX(), max.getBlockZ())) {
+                if (!shop.getOwner().equals(uuid)) {
+                    continue;
+                }
+                recordDeletion(uuid, shop, "Shop deleting");
+                shop.delete();
+            }
+        }
     }
 
     @EventHandler
@@ -97,6 +102,8 @@ public final class Main extends CompatibilityModule implements Listener {
 
     @Override
     public void init() {
+        // The island memberships override the DELETE authorize results
+        bypassAuthorizeCache(QuickShop.getInstance(), BuiltInShopPermission.DELETE.getRawNode());
         onlyOwnerCanCreateShop = getConfig().getBoolean("owner-create-only");
         deleteShopOnMemberLeave = getConfig().getBoolean("delete-shop-on-member-leave");
     }
@@ -5,6 +5,7 @@ import com.ghostchu.quickshop.api.QuickShopAPI;
 import com.ghostchu.quickshop.api.command.CommandContainer;
 import com.ghostchu.quickshop.api.event.*;
 import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.api.shop.ShopSummary;
 import com.ghostchu.quickshop.api.shop.permission.BuiltInShopPermission;
 import com.ghostchu.quickshop.compatibility.CompatibilityModule;
 import com.ghostchu.quickshop.compatibility.towny.command.NationCommand;
@@ -12,6 +13,7 @@ import com.ghostchu.quickshop.compatibility.towny.command.TownCommand;
 import com.ghostchu.quickshop.util.Util;
 import com.ghostchu.quickshop.util.logger.Log;
 import com.palmergames.bukkit.towny.TownyAPI;
+import com.palmergames.bukkit.towny.TownySettings;
 import com.palmergames.bukkit.towny.event.PlotClearEvent;
 import com.palmergames.bukkit.towny.event.TownRemoveResidentEvent;
 import com.palmergames.bukkit.towny.event.town.TownUnclaimEvent;
@@ -113,6 +115,8 @@ public final class Main extends CompatibilityModule implements Listener {
     @Override
     public void init() {
         performConfigurationUpgrade();
+        // The town memberships override the DELETE authorize results
+        bypassAuthorizeCache(QuickShop.getInstance(), BuiltInShopPermission.DELETE.getRawNode());
         api = (QuickShopAPI) Bukkit.getPluginManager().getPlugin("QuickShop-Hikari");
         createFlags = TownyFlags.deserialize(getConfig().getStringList("create"));
         tradeFlags = TownyFlags.deserialize(getConfig().getStringList("trade"));
@@ -148,13 +152,29 @@ public final class Main extends CompatibilityModule implements Listener {
         if (getConfig().getBoolean("bank-mode.enable")) {
             getLogger().info("Scanning and reflecting configuration changes...");
             long startTime = System.currentTimeMillis();
-            for (Shop shop : getApi().getShopManager().getAllShops()) {
+            // Town/Nation shops only can be created inside the towns, so the shops in wilderness don't need to be hydrated
+            int size = TownySettings.getTownBlockSize();
+            Map<String, Set<Long>> townBlocks = new HashMap<>();
+            for (Town town : TownyAPI.getInstance().getTowns()) {
+                for (TownBlock townBlock : town.getTownBlocks()) {
+                    WorldCoord coord = townBlock.getWorldCoord();
+                    townBlocks.computeIfAbsent(coord.getWorldName(), k -> new HashSet<>()).add(townBlockKey(coord.getX(), coord.getZ()));
+                }
+            }
+            List<ShopSummary> inTowns = new ArrayList<>();
+            for (ShopSummary summary : getApi().getShopManager().getShopSummaries()) {
+                Set<Long> blocks = townBlocks.get(summary.world());
+                if (blocks != null && blocks.contains(townBlockKey(Math.floorDiv(summary.x(), size), Math.floorDiv(summary.z(), size)))) {
+                    inTowns.add(summary);
+                }
+            }
+            getApi().getShopManager().hydrateLazily(inTowns, shop -> {
                 if (TownyShopUtil.getShopNation(shop) != null || TownyShopUtil.getShopTown(shop) != null) {
                     Double price = priceLimiter.getPrice(shop.getItem().getType(), shop.isSelling());
                     if (price == null) {
                         shop.delete();
                         recordDeletion(null, shop, "Towny settings disallowed this item as town/nation shop anymore");
-                        continue;
+                        return;
                     }
                     if (shop.isStackingShop()) {
                         shop.setPrice(price * shop.getShopStackingAmount());
@@ -162,11 +182,14 @@ public final class Main extends CompatibilityModule implements Listener {
                         shop.setPrice(price);
                     }
                 }
-            }
-            getLogger().info("Finished to scan shops, used " + (System.currentTimeMillis() - startTime) + "ms");
+            }).thenRun(() -> getLogger().info("Finished to scan shops, used " + (System.currentTimeMillis() - startTime) + "ms"));
         }
     }
 
+    private static long townBlockKey(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
     @EventHandler
     public void onPlayerLeave(TownRemoveResidentEvent event) {
         if (isWorldIgnored(event.getTown().getWorld())) {
@@ -185,16 +208,14 @@ public final class Main extends CompatibilityModule implements Listener {
     }
 
     public void purgeShops(@NotNull WorldCoord worldCoord, @Nullable UUID owner, @Nullable UUID deleter, @NotNull String reason) {
-        //Getting all shop with world-chunk-shop mapping
-        for (Shop shop : api.getShopManager().getAllShops()) {
-            if (!Objects.equals(shop.getLocation().getWorld(), worldCoord.getBukkitWorld())) {
-                continue;
-            }
-            if (WorldCoord.parseWorldCoord(shop.getLocation()).equals(worldCoord)) {
-                if (owner != null && shop.getOwner().equals(owner)) {
-                    recordDeletion(deleter, shop, reason);
-                    shop.delete();
-                }
+        //Getting the shops inside the town block only
+        int size = TownySettings.getTownBlockSize();
+        int minX = worldCoord.getX() * size;
+        int minZ = worldCoord.getZ() * size;
+        for (Shop shop : getShops(worldCoord.getWorldName(), minX, minZ, minX + size - 1, minZ + size - 1)) {
+            if (owner != null && shop.getOwner().equals(owner)) {
+                recordDeletion(deleter, shop, reason);
+                shop.delete();
             }
         }
     }
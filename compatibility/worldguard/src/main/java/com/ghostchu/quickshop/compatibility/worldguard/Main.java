@@ -70,7 +70,8 @@ public final class Main extends CompatibilityModule implements Listener {
 
     @Override
     public void init() {
-        // There no init stuffs need to do
+        // The region flags override the DELETE authorize results
+        bypassAuthorizeCache(QuickShop.getInstance(), BuiltInShopPermission.DELETE.getRawNode());
     }
 
     @EventHandler(ignoreCancelled = true)
@@ -7,7 +7,9 @@ import org.jetbrains.annotations.Nullable;
 import java.util.UUID;
 
 /**
- * Fire when watcher processing the shop ongoing fee
+ * Fire when watcher processing the shop ongoing fee.
+ * Fired asynchronously, or on the main thread if the fee aggregated by owner.
+ * Not fired for the shops not loaded yet, they are charged the configured cost directly.
  */
 public class ShopOngoingFeeEvent extends AbstractQSEvent implements QSCancellable {
     private final UUID player;
@@ -29,19 +29,18 @@ public interface InventoryWrapperIterator extends Iterator<ItemStack> {
                 return currentIndex < size;
             }
 
+            // Storage contents are the leading slots, access them by slot instead of copying the whole contents
             @Override
             public ItemStack next() {
                 if (!hasNext()) {
                     throw new NoSuchElementException();
                 }
-                return inventory.getStorageContents()[currentIndex++];
+                return inventory.getItem(currentIndex++);
             }
 
             @Override
             public void setCurrent(ItemStack stack) {
-                ItemStack[] storageItems = inventory.getStorageContents();
-                storageItems[Math.max(0, currentIndex - 1)] = stack;
-                inventory.setStorageContents(storageItems);
+                inventory.setItem(Math.max(0, currentIndex - 1), stack);
             }
         };
     }
@@ -12,6 +12,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * The manager that managing shops
@@ -121,11 +123,57 @@ public interface ShopManager {
      * Returns all shops in the whole database, include unloaded.
      *
      * <p>Make sure you have caching this, because this need a while to get all shops
+     * <p>All the shops not loaded yet will be loaded by this method, use {@link #getShopSummaries()} to filter
+     * the shops and {@link #hydrateLazily(Collection, Consumer)} to get the filtered shops instead.
      *
      * @return All shop in the database
      */
     @NotNull List<Shop> getAllShops();
 
+    /**
+     * Gets the summaries of all shops in the whole database, the shops not loaded yet won't be loaded.
+     *
+     * @return The shop summaries
+     */
+    @NotNull
+    default List<ShopSummary> getShopSummaries() {
+        List<ShopSummary> summaries = new ArrayList<>();
+        for (Shop shop : getAllShops()) {
+            World world = shop.getLocation().getWorld();
+            if (world != null) {
+                summaries.add(ShopSummary.of(world.getName(), shop));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Gets the shops of the summaries in main thread, the shops not loaded yet will be loaded chunk by chunk
+     * and spread across ticks.
+     *
+     * @param summaries The shop summaries
+     * @param consumer  Called in main thread for every shop still exists
+     * @return The future completed after all summaries visited
+     */
+    @NotNull
+    default CompletableFuture<Void> hydrateLazily(@NotNull Collection<ShopSummary> summaries, @NotNull Consumer<Shop> consumer) {
+        for (ShopSummary summary : summaries) {
+            if (summary.shop() != null && !summary.shop().isDeleted()) {
+                consumer.accept(summary.shop());
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Gets the amount of all shops in the whole database, the shops not loaded yet won't be loaded.
+     *
+     * @return The amount of shops
+     */
+    default int getShopCount() {
+        return getShopSummaries().size();
+    }
+
     /**
      * Get all loaded shops.
      *
@@ -208,6 +256,7 @@ public interface ShopManager {
 
     /**
      * Returns a map of World - Chunk - Shop
+     * <p>All the shops not loaded yet will be loaded by this method, same as {@link #getAllShops()}.
      *
      * @return a map of World - Chunk - Shop
      */
@@ -240,6 +289,59 @@ public interface ShopManager {
      */
     @Nullable Map<ShopChunk, Map<Location, Shop>> getShops(@NotNull String world);
 
+    /**
+     * Gets the shops inside an axis-aligned region, all heights included.
+     * Only the chunks that contain shops are visited, the chunks will never be loaded.
+     *
+     * @param world The name of the world (case sensitive)
+     * @param minX  The min block x, inclusive
+     * @param minZ  The min block z, inclusive
+     * @param maxX  The max block x, inclusive
+     * @param maxZ  The max block z, inclusive
+     * @return The shops inside the region
+     */
+    @NotNull
+    default List<Shop> getShopsInRegion(@NotNull String world, int minX, int minZ, int maxX, int maxZ) {
+        Map<ShopChunk, Map<Location, Shop>> worldShops = getShops(world);
+        if (worldShops == null) {
+            return Collections.emptyList();
+        }
+        List<Shop> collected = new ArrayList<>();
+        worldShops.forEach((chunk, inChunk) -> {
+            if (chunk.getX() < minX >> 4 || chunk.getX() > maxX >> 4 || chunk.getZ() < minZ >> 4 || chunk.getZ() > maxZ >> 4) {
+                return;
+            }
+            inChunk.forEach((location, shop) -> {
+                if (location.getBlockX() >= minX && location.getBlockX() <= maxX && location.getBlockZ() >= minZ && location.getBlockZ() <= maxZ) {
+                    collected.add(shop);
+                }
+            });
+        });
+        return collected;
+    }
+
+    /**
+     * Gets the shops in the given chunks, the chunks will never be loaded.
+     *
+     * @param chunks The chunks to search, duplicated chunks are only searched once
+     * @return The shops in the chunks
+     */
+    @NotNull
+    default List<Shop> getShopsInChunks(@NotNull Collection<? extends ShopChunk> chunks) {
+        Set<String> visited = new HashSet<>();
+        List<Shop> collected = new ArrayList<>();
+        for (ShopChunk chunk : chunks) {
+            if (!visited.add(chunk.getWorld() + ":" + chunk.getX() + ":" + chunk.getZ())) {
+                continue;
+            }
+            Map<Location, Shop> inChunk = getShops(chunk.getWorld(), chunk.getX(), chunk.getZ());
+            if (inChunk != null) {
+                collected.addAll(inChunk.values());
+            }
+        }
+        return collected;
+    }
+
     /**
      * Get the all shops in the world.
      *
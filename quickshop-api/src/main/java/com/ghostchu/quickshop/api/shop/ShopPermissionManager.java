@@ -88,4 +88,33 @@ public interface ShopPermissionManager {
      * @param permission Permission name.
      */
     void unregisterPermission(@NotNull String group, @NotNull Plugin namespace, @NotNull String permission);
+
+    /**
+     * Invalidates the cached shop authorize results.
+     * Should be called when anything that affects the {@link com.ghostchu.quickshop.api.event.ShopAuthorizeCalculateEvent}
+     * listener result changed, e.g. the claims or regions changed.
+     */
+    void invalidateAuthorizeCache();
+
+    /**
+     * Sets whether the plugin needs to see the {@link com.ghostchu.quickshop.api.event.ShopAuthorizeCalculateEvent}
+     * for every authorize call. The shop authorize results will not be cached while any plugin requires it.
+     * Prefer {@link #setAuthorizeCacheBypass(Plugin, Plugin, String, boolean)} or {@link #invalidateAuthorizeCache()}
+     * if possible, this disables the cache for all permissions.
+     *
+     * @param plugin The plugin
+     * @param bypass true to require every authorize call, false to clear all bypasses of the plugin
+     */
+    void setAuthorizeCacheBypass(@NotNull Plugin plugin, boolean bypass);
+
+    /**
+     * Sets whether the plugin needs to see the {@link com.ghostchu.quickshop.api.event.ShopAuthorizeCalculateEvent}
+     * for every authorize call of the permission. The results of other permissions are still cached.
+     *
+     * @param plugin     The plugin
+     * @param namespace  Plugin instance for the permission namespace.
+     * @param permission Permission name.
+     * @param bypass     true to require every authorize call of the permission
+     */
+    void setAuthorizeCacheBypass(@NotNull Plugin plugin, @NotNull Plugin namespace, @NotNull String permission, boolean bypass);
 }
@@ -0,0 +1,62 @@
+package com.ghostchu.quickshop.api.shop;
+
+import com.ghostchu.quickshop.api.database.bean.DataRecord;
+import com.ghostchu.quickshop.api.database.bean.InfoRecord;
+import com.ghostchu.quickshop.api.database.bean.ShopRecord;
+import org.bukkit.Location;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * Lightweight summary of a shop, built from the loaded shop or from the database record of a shop
+ * not loaded yet, so the callers can filter the shops without loading them.
+ * <p>
+ * Use {@link ShopManager#hydrateLazily} to get the shops of the summaries still needed.
+ *
+ * @param shopId     The shop id, -1 if the shop not saved yet
+ * @param world      The world name
+ * @param x          block x
+ * @param y          block y
+ * @param z          block z
+ * @param owner      The shop owner
+ * @param unlimited  Whether the shop is unlimited
+ * @param taxAccount The shop tax account, null if not set
+ * @param shop       The shop, null if the shop was not loaded when the summary built
+ */
+public record ShopSummary(long shopId, @NotNull String world, int x, int y, int z, @NotNull UUID owner,
+                          boolean unlimited, @Nullable UUID taxAccount, @Nullable Shop shop) {
+
+    @NotNull
+    public static ShopSummary of(@NotNull String world, @NotNull Shop shop) {
+        Location location = shop.getLocation();
+        return new ShopSummary(shop.getShopId(), world, location.getBlockX(), location.getBlockY(), location.getBlockZ(),
+                shop.getOwner(), shop.isUnlimited(), shop.getTaxAccount(), shop);
+    }
+
+    @NotNull
+    public static ShopSummary of(@NotNull ShopRecord shopRecord) {
+        InfoRecord info = shopRecord.getInfoRecord();
+        DataRecord data = shopRecord.getDataRecord();
+        return new ShopSummary(info.getShopId(), info.getWorld(), info.getX(), info.getY(), info.getZ(),
+                data.getOwner(), data.isUnlimited(), data.getTaxAccount(), null);
+    }
+
+    /**
+     * Checks if the shop was not loaded when the summary built
+     *
+     * @return true if the shop is cold
+     */
+    public boolean isCold() {
+        return shop == null;
+    }
+
+    public int chunkX() {
+        return x >> 4;
+    }
+
+    public int chunkZ() {
+        return z >> 4;
+    }
+}
@@ -205,6 +205,11 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI, Reloadable {
     @Getter
     private SignUpdateWatcher signUpdateWatcher;
     @Getter
+    @Nullable
+    private DisplayCheckWatcher displayCheckWatcher;
+    @Nullable
+    private DisplayCheckListener displayCheckListener;
+    @Getter
     private ShopContainerWatcher shopContainerWatcher;
     @Getter
     private Cache shopCache;
@@ -399,7 +404,8 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI, Reloadable {
             return;
         }
         if (loggingLocation == 0) {
-            this.getLogWatcher().log(JsonUtil.getGson().toJson(eventObject));
+            // Serialized by the log writer thread
+            this.getLogWatcher().log(eventObject);
         } else {
             getDatabaseHelper().insertHistoryRecord(eventObject)
                     .whenComplete((result, throwable) -> {
@@ -464,6 +470,19 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI, Reloadable {
         updateConfig();
     }
 
+    private void initExecutors() {
+        ConfigurationSection section = getConfig().getConfigurationSection("executor");
+        if (section == null) {
+            return;
+        }
+        boolean virtualThreads = section.getBoolean("virtual-threads", true);
+        QuickExecutor.configure(section.getInt("database-threads", 0), section.getInt("common-threads", 0),
+                section.getInt("shop-save-threads", 0), section.getInt("queue-capacity", 0), virtualThreads);
+        if (virtualThreads && !QuickExecutor.isVirtualThreadSupported()) {
+            getLogger().info("Virtual threads are not supported by current Java version, using platform threads instead.");
+        }
+    }
+
     private void initDatabase() {
         setupDBonEnableding = true;
         if (!setupDatabase()) {
@@ -700,6 +719,7 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI, Reloadable {
         new ShopProtectionListener(this, this.shopCache).register();
         new MetricListener(this).register();
         new InternalListener(this).register();
+        new ShopInventoryCounterListener(this, this.shopCache).register();
         if (checkIfBungee()) {
             this.bungeeListener = new BungeeListener(this);
             this.bungeeListener.register();
@@ -724,7 +744,6 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI, Reloadable {
         signUpdateWatcher.runTaskTimer(this, 0, 10);
         shopContainerWatcher.runTaskTimer(this, 0, 5); // Nobody use it
         if (logWatcher != null) {
-            logWatcher.runTaskTimerAsynchronously(this, 10, 10);
             getLogger().info("Log actions is enabled. Actions will be logged in the qs.log file!");
         }
         this.registerOngoingFee();
@@ -766,6 +785,10 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI, Reloadable {
         if (StringUtils.isEmpty(this.currency)) {
             this.currency = null;
         }
+        if (logWatcher != null) {
+            // Release the log file before reopen it
+            logWatcher.close();
+        }
         if (this.getConfig().getBoolean("logging.enable")) {
             logWatcher = new LogWatcher(this, new File(getDataFolder(), "qs.log"));
         } else {
@@ -806,6 +829,8 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI, Reloadable {
         }
         getLogger().info("Reading the configuration...");
         initConfiguration();
+        getLogger().info("Setting up executors...");
+        initExecutors();
         getLogger().info("Loading up platform modules...");
         loadPlatform();
         getLogger().info("Loading player name and unique id mapping...");
@@ -880,6 +905,10 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI, Reloadable {
         Bukkit.getScheduler().cancelTasks(this);
         getLogger().info("Unregistering plugin services...");
         getServer().getServicesManager().unregisterAll(this);
+        if (this.databaseHelper != null) {
+            getLogger().info("Flushing database log records...");
+            this.databaseHelper.close();
+        }
         if (this.getSqlManager() != null) {
             getLogger().info("Shutting down database connections...");
             EasySQL.shutdownManager(this.getSqlManager());
@@ -1046,26 +1075,32 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI, Reloadable {
     }
 
     private void registerDisplayItem() {
+        if (this.displayCheckWatcher != null) {
+            this.displayCheckWatcher.cancel();
+            this.displayCheckWatcher = null;
+        }
+        if (this.displayCheckListener != null) {
+            this.displayCheckListener.unregister();
+            this.displayCheckListener = null;
+        }
         if (this.display && AbstractDisplayItem.getNowUsing() != DisplayType.VIRTUALITEM) {
+            int sweepTicks = 0;
             if (getDisplayItemCheckTicks() > 0) {
                 if (getConfig().getInt("shop.display-items-check-ticks") < 3000) {
                     getLogger().severe("Shop.display-items-check-ticks is too low! It may cause HUGE lag! Pick a number > 3000");
                 }
-                getLogger().info("Registering DisplayCheck task....");
-                getServer().getScheduler().runTaskTimer(this, () -> {
-                    for (Shop shop : getShopManager().getLoadedShops()) {
-                        //Shop may be deleted or unloaded when iterating
-                        if (shop.isDeleted() || !shop.isLoaded()) {
-                            continue;
-                        }
-                        shop.checkDisplay();
-                    }
-                }, 1L, getDisplayItemCheckTicks());
+                sweepTicks = getDisplayItemCheckTicks();
             } else if (getDisplayItemCheckTicks() == 0) {
-                getLogger().info("shop.display-items-check-ticks was set to 0. Display Check has been disabled");
+                getLogger().info("shop.display-items-check-ticks was set to 0. Periodic Display Check has been disabled");
             } else {
                 getLogger().severe("shop.display-items-check-ticks has been set to an invalid value. Please use a value above 3000.");
             }
+            // Event-driven checks, plus a round-robin sweep spread across display-items-check-ticks
+            getLogger().info("Registering DisplayCheck task....");
+            this.displayCheckWatcher = new DisplayCheckWatcher(this, sweepTicks);
+            this.displayCheckWatcher.runTaskTimer(this, 1L, 1L);
+            this.displayCheckListener = new DisplayCheckListener(this, this.shopCache, this.displayCheckWatcher);
+            this.displayCheckListener.register();
             new DisplayProtectionListener(this, this.shopCache).register();
         } else {
             Util.unregisterListenerClazz(this, DisplayProtectionListener.class);
@@ -1221,7 +1256,7 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI, Reloadable {
             metrics.addCustomChart(new Metrics.SimplePie("display_type", () -> AbstractDisplayItem.getNowUsing().name()));
             metrics.addCustomChart(new Metrics.SimplePie("itemmatcher_type", () -> this.getItemMatcher().getName()));
             metrics.addCustomChart(new Metrics.SimplePie("use_stack_item", () -> String.valueOf(this.isAllowStack())));
-            metrics.addCustomChart(new Metrics.SingleLineChart("shops_created_on_all_servers", () -> this.getShopManager().getAllShops().size()));
+            metrics.addCustomChart(new Metrics.SingleLineChart("shops_created_on_all_servers", () -> this.shopManager.getShopCount()));
         } else {
             getLogger().info("You disabled metrics, Skipping...");
         }
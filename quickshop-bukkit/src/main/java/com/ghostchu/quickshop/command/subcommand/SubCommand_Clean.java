@@ -4,6 +4,7 @@ import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.command.CommandHandler;
 import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.shop.ContainerShop;
+import com.ghostchu.quickshop.shop.SimpleShopManager;
 import com.ghostchu.quickshop.util.MsgUtil;
 import com.ghostchu.quickshop.util.Util;
 import com.ghostchu.quickshop.util.logging.container.ShopRemoveLog;
@@ -28,7 +29,8 @@ public class SubCommand_Clean implements CommandHandler<CommandSender> {
         final List<Shop> pendingRemoval = new ArrayList<>();
         int i = 0;
 
-        for (Shop shop : plugin.getShopManager().getAllShops()) {
+        // Cold shops are in the unloaded chunks, which never cleaned, so don't hydrate them
+        for (Shop shop : ((SimpleShopManager) plugin.getShopManager()).getHydratedShops()) {
             try {
                 if (Util.isLoaded(shop.getLocation())
                         && shop.isSelling()
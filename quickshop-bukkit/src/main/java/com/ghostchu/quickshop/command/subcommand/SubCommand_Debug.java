@@ -3,7 +3,11 @@ package com.ghostchu.quickshop.command.subcommand;
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.command.CommandHandler;
 import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.common.util.MonitoredExecutor;
+import com.ghostchu.quickshop.common.util.QuickExecutor;
 import com.ghostchu.quickshop.util.MsgUtil;
+import com.ghostchu.quickshop.watcher.ShopDataSaveWatcher;
+import com.ghostchu.quickshop.watcher.SignUpdateWatcher;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
@@ -42,6 +46,9 @@ public class SubCommand_Debug implements CommandHandler<CommandSender> {
             case "handlerlist" -> handleHandlerList(sender, ArrayUtils.remove(cmdArg, 0));
             case "signs" -> handleSigns(sender);
             case "database" -> handleDatabase(sender, ArrayUtils.remove(cmdArg, 0));
+            case "executors" -> handleExecutors(sender);
+            case "signqueue" -> handleSignQueue(sender);
+            case "shopsave" -> handleShopSave(sender);
             default -> plugin.text().of(sender, "debug.arguments-invalid", cmdArg[0]).send();
         }
     }
@@ -97,6 +104,41 @@ public class SubCommand_Debug implements CommandHandler<CommandSender> {
         plugin.text().of(sender, "debug.operation-invalid", cmdArg[0]).send();
     }
 
+    private void handleExecutors(@NotNull CommandSender sender) {
+        for (MonitoredExecutor executor : QuickExecutor.getExecutors()) {
+            MonitoredExecutor.Stats stats = executor.getStats();
+            MsgUtil.sendDirectMessage(sender, LegacyComponentSerializer.legacySection().deserialize(ChatColor.AQUA
+                    + stats.name() + (stats.virtual() ? " (virtual)" : "")
+                    + ChatColor.YELLOW + " threads: " + ChatColor.GREEN + stats.activeCount() + "/" + stats.poolSize() + "/" + stats.maxPoolSize()
+                    + ChatColor.YELLOW + " queued: " + ChatColor.GREEN + stats.queued() + "/" + stats.queueCapacity()
+                    + ChatColor.YELLOW + " completed: " + ChatColor.GREEN + stats.completed()
+                    + ChatColor.YELLOW + " overflowed: " + ChatColor.GREEN + stats.rejected()
+                    + ChatColor.YELLOW + " wait: " + ChatColor.GREEN + String.format("%.2f/%.2f ms", stats.avgWaitMillis(), stats.maxWaitMillis())
+                    + ChatColor.YELLOW + " run: " + ChatColor.GREEN + String.format("%.2f ms", stats.avgRunMillis())));
+        }
+    }
+
+    private void handleSignQueue(@NotNull CommandSender sender) {
+        SignUpdateWatcher.Stats stats = plugin.getSignUpdateWatcher().getStats();
+        MsgUtil.sendDirectMessage(sender, LegacyComponentSerializer.legacySection().deserialize(ChatColor.AQUA + "Sign Update Queue"
+                + ChatColor.YELLOW + " queued: " + ChatColor.GREEN + stats.queued() + " (max " + stats.maxQueued() + ")"
+                + ChatColor.YELLOW + " deferred: " + ChatColor.GREEN + stats.deferred()
+                + ChatColor.YELLOW + " updated: " + ChatColor.GREEN + stats.drained()
+                + ChatColor.YELLOW + " rate: " + ChatColor.GREEN + String.format("%.1f/s", stats.drainRate())));
+    }
+
+    private void handleShopSave(@NotNull CommandSender sender) {
+        if (plugin.getShopSaveWatcher() == null) {
+            plugin.text().of(sender, "debug.shop-save-not-ready").send();
+            return;
+        }
+        ShopDataSaveWatcher.Stats stats = plugin.getShopSaveWatcher().getStats();
+        MsgUtil.sendDirectMessage(sender, LegacyComponentSerializer.legacySection().deserialize(ChatColor.AQUA + "Shop Save"
+                + ChatColor.YELLOW + " last flush: " + ChatColor.GREEN + stats.lastFlushShops() + " shops in " + stats.lastFlushBatches() + " batches, " + stats.lastFlushLatency() + " ms"
+                + ChatColor.YELLOW + " batched: " + ChatColor.GREEN + stats.totalFlushedShops()
+                + ChatColor.YELLOW + " fallback: " + ChatColor.GREEN + stats.totalFallbackShops()));
+    }
+
     public void printHandlerList(@NotNull CommandSender sender, String event) {
         try {
             final Class<?> clazz = Class.forName(event);
@@ -25,6 +25,7 @@ public class SubCommand_Empty implements CommandHandler<Player> {
                 return;
             }
             cs.getInventory().clear();
+            cs.invalidateInventoryCounters();
             plugin.text().of(sender, "empty-success").send();
         } else {
             plugin.text().of(sender, "not-looking-at-shop").send();
@@ -2,21 +2,29 @@ package com.ghostchu.quickshop.command.subcommand;
 
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.command.CommandHandler;
+import com.ghostchu.quickshop.api.localization.text.ProxiedLocale;
 import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.api.shop.permission.BuiltInShopPermission;
+import com.ghostchu.quickshop.shop.SimpleShopManager;
+import com.ghostchu.quickshop.shop.index.ShopSearchIndex;
 import com.ghostchu.quickshop.util.MsgUtil;
 import com.ghostchu.quickshop.util.Util;
 import io.papermc.lib.PaperLib;
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
-import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.player.PlayerTeleportEvent;
-import org.bukkit.util.Vector;
+import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Level;
 
 public class SubCommand_Find implements CommandHandler<Player> {
 
@@ -34,7 +42,6 @@ public class SubCommand_Find implements CommandHandler<Player> {
         }
 
         final Location loc = sender.getLocation().clone();
-        final Vector playerVector = loc.toVector();
 
         //Combing command args
         final StringBuilder sb = new StringBuilder(cmdArg[0]);
@@ -56,48 +63,65 @@ public class SubCommand_Find implements CommandHandler<Player> {
         final boolean allShops = plugin.getConfig().getBoolean("shop.finding.all");
         final boolean excludeOutOfStock = plugin.getConfig().getBoolean("shop.finding.exclude-out-of-stock");
 
-        //Rewrite by Ghost_chu - Use vector to replace old chunks finding.
-
-        Map<Shop, Double> aroundShops = new HashMap<>();
+        //Search in the index off-thread, then check the permission and stock in main thread
+        SimpleShopManager shopManager = (SimpleShopManager) plugin.getShopManager();
+        final ItemStack marker = plugin.getItemMarker().get(originLookFor);
+        ShopSearchIndex.Query query = new ShopSearchIndex.Query(Objects.requireNonNull(loc.getWorld()).getName(), loc.getX(), loc.getY(), loc.getZ(),
+                maxDistance, lookFor, marker != null);
+        shopManager.getSearchIndex().search(query).whenComplete((results, error) -> Util.mainThreadRun(() -> {
+            if (!sender.isOnline()) {
+                return;
+            }
+            if (error != null) {
+                plugin.getLogger().log(Level.WARNING, "Failed to search shops for " + lookFor, error);
+                plugin.text().of(sender, "internal-error").send();
+                return;
+            }
+            handleResults(sender, shopManager, results, lookFor, marker, shopLimit, allShops, excludeOutOfStock, usingOldLogic);
+        }));
+    }
 
-        //Choose finding source
-        Collection<Shop> scanPool;
-        if (allShops) {
-            scanPool = plugin.getShopManager().getAllShops();
-        } else {
-            scanPool = plugin.getShopManager().getLoadedShops();
-        }
-        //Calc distance between player and shop
-        for (Shop shop : scanPool) {
-            if (!Objects.equals(shop.getLocation().getWorld(), loc.getWorld())) {
+    private void handleResults(@NotNull Player sender, @NotNull SimpleShopManager shopManager, @NotNull List<ShopSearchIndex.Result> results,
+                               @NotNull String lookFor, @Nullable ItemStack marker, int shopLimit, boolean allShops, boolean excludeOutOfStock, boolean usingOldLogic) {
+        //Results already sorted from near to far
+        List<ShopSearchIndex.Result> aroundShops = new ArrayList<>(Math.min(shopLimit, results.size()));
+        Set<Shop> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ShopSearchIndex.Result result : results) {
+            if (aroundShops.size() >= shopLimit) {
+                break;
+            }
+            // The item matcher is not thread-safe, match the marker here instead of in the index
+            if (!result.textMatched() && (marker == null || !plugin.getItemMatcher().matches(marker, result.item()))) {
                 continue;
             }
-            if (aroundShops.size() == shopLimit) {
-                break;
+            Shop shop = result.shop();
+            if (shop == null) {
+                // Cold shops are in the unloaded chunks, only hydrate the ones going to be checked
+                if (!allShops) {
+                    continue;
+                }
+                shop = shopManager.resolve(Objects.requireNonNull(result.shopRecord()));
+                if (shop == null) {
+                    continue;
+                }
+            }
+            // The shop hydrated while indexing might be found twice
+            if (!visited.add(shop)) {
+                continue;
+            }
+            if (shop.isDeleted() || (!allShops && !shop.isLoaded())) {
+                continue;
             }
             if (!shop.playerAuthorize(sender.getUniqueId(), BuiltInShopPermission.SEARCH)
                     && !plugin.perm().hasPermission(sender, "quickshop.other.search")) {
                 continue;
             }
-            Vector shopVector = shop.getLocation().toVector();
-            double distance = shopVector.distance(playerVector);
-            //Check distance
-            if (distance <= maxDistance) {
-                //Collect valid shop that trading items we want
-                if (!ChatColor.stripColor(LegacyComponentSerializer.legacySection().serialize(Util.getItemStackName(shop.getItem()))).toLowerCase().contains(lookFor)) {
-                    if (!shop.getItem().getType().name().toLowerCase().contains(lookFor)) {
-                        if (plugin.getItemMarker().get(originLookFor) == null) {
-                            continue;
-                        }
-                    }
-                }
-                if (excludeOutOfStock) {
-                    if ((shop.isSelling() && shop.getRemainingStock() == 0) || (shop.isBuying() && shop.getRemainingSpace() == 0)) {
-                        continue;
-                    }
+            if (excludeOutOfStock) {
+                if ((shop.isSelling() && shop.getRemainingStock() == 0) || (shop.isBuying() && shop.getRemainingSpace() == 0)) {
+                    continue;
                 }
-                aroundShops.put(shop, distance);
             }
+            aroundShops.add(result.shop() == shop ? result : new ShopSearchIndex.Result(shop, null, result.item(), result.distance(), result.textMatched()));
         }
         //Check if no shops found
         if (aroundShops.isEmpty()) {
@@ -105,31 +129,31 @@ public class SubCommand_Find implements CommandHandler<Player> {
             return;
         }
 
-        //Okay now all shops is our wanted shop in Map
-
-        List<Map.Entry<Shop, Double>> sortedShops = aroundShops.entrySet().stream().sorted(Map.Entry.<Shop, Double>comparingByValue(Double::compare).reversed()).toList();
-
         //Function
         if (usingOldLogic) {
-            Map.Entry<Shop, Double> closest = sortedShops.get(0);
-            Location lookAt = closest.getKey().getLocation().clone().add(0.5, 0.5, 0.5);
+            ShopSearchIndex.Result closest = aroundShops.get(0);
+            Location lookAt = closest.shop().getLocation().clone().add(0.5, 0.5, 0.5);
             PaperLib.teleportAsync(sender, Util.lookAt(sender.getEyeLocation(), lookAt).add(0, -1.62, 0),
                     PlayerTeleportEvent.TeleportCause.UNKNOWN);
-            plugin.text().of(sender, "nearby-shop-this-way", closest.getValue().intValue()).send();
+            plugin.text().of(sender, "nearby-shop-this-way", (int) closest.distance()).send();
         } else {
+            ProxiedLocale locale = plugin.text().findRelativeLanguages(sender);
             Component stringBuilder = plugin.text().of(sender, "nearby-shop-header", lookFor).forLocale()
                     .append(Component.newline());
-            for (Map.Entry<Shop, Double> shopDoubleEntry : sortedShops) {
-                Shop shop = shopDoubleEntry.getKey();
+            //The nearest shop at the bottom
+            for (int i = aroundShops.size() - 1; i >= 0; i--) {
+                ShopSearchIndex.Result result = aroundShops.get(i);
+                Shop shop = result.shop();
                 Location location = shop.getLocation();
+                List<Component> signText = shop.getSignText(locale);
                 //  "nearby-shop-entry": "&a- Info:{0} &aPrice:&b{1} &ax:&b{2} &ay:&b{3} &az:&b{4} &adistance: &b{5} &ablock(s)"
                 stringBuilder = stringBuilder.append(plugin.text().of(sender, "nearby-shop-entry",
-                        shop.getSignText(plugin.text().findRelativeLanguages(sender)).get(1),
-                        shop.getSignText(plugin.text().findRelativeLanguages(sender)).get(3),
+                        signText.get(1),
+                        signText.get(3),
                         location.getBlockX(),
                         location.getBlockY(),
                         location.getBlockZ(),
-                        shopDoubleEntry.getValue().intValue()
+                        (int) result.distance()
                 ).forLocale()).append(Component.newline());
             }
             MsgUtil.sendDirectMessage(sender, stringBuilder.compact());
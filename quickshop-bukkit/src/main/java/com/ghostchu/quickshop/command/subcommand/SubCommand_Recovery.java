@@ -49,10 +49,8 @@ public class SubCommand_Recovery implements CommandHandler<ConsoleCommandSender>
             try {
                 databaseIOUtil.importTables(file);
                 Log.debug("Re-loading shop from database...");
-                Util.mainThreadRun(() -> {
-                    plugin.getShopLoader().loadShops();
-                    plugin.text().of(sender, "imported-database", "recovery.zip").send();
-                });
+                Util.mainThreadRun(() -> plugin.getShopLoader().loadShopsAsync(null)
+                        .thenRun(() -> plugin.text().of(sender, "imported-database", "recovery.zip").send()));
             } catch (SQLException | ClassNotFoundException e) {
                 plugin.text().of(sender, "importing-failed", e.getMessage()).send();
                 plugin.getLogger().log(Level.WARNING, "Failed to import the database from backup file.", e);
@@ -2,7 +2,7 @@ package com.ghostchu.quickshop.command.subcommand;
 
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.command.CommandHandler;
-import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.api.shop.ShopSummary;
 import com.ghostchu.quickshop.util.Util;
 import com.ghostchu.quickshop.util.logging.container.ShopRemoveLog;
 import org.bukkit.ChatColor;
@@ -14,6 +14,8 @@ import org.jetbrains.annotations.Nullable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.ghostchu.quickshop.util.Util.getPlayerList;
 
@@ -28,8 +30,6 @@ public class SubCommand_RemoveAll implements CommandHandler<CommandSender> {
     @Override
     public void onCommand(@NotNull CommandSender sender, @NotNull String commandLabel, @NotNull String[] cmdArg) {
         if (cmdArg.length == 1) {
-            //copy it first
-            List<Shop> tempList = new ArrayList<>(plugin.getShopManager().getAllShops());
             OfflinePlayer shopOwner = null;
             for (OfflinePlayer player : plugin.getServer().getOfflinePlayers()) {
                 if (player.getName() != null && player.getName().equalsIgnoreCase(cmdArg[0])) {
@@ -42,19 +42,11 @@ public class SubCommand_RemoveAll implements CommandHandler<CommandSender> {
                 return;
             }
 
-            int i = 0;
             if (!shopOwner.equals(sender)) { //Non-self shop
                 if (!plugin.perm().hasPermission(sender, "quickshop.removeall.other")) {
                     plugin.text().of(sender, "no-permission").send();
                     return;
                 }
-                for (Shop shop : tempList) {
-                    if (shop.getOwner().equals(shopOwner.getUniqueId())) {
-                        plugin.logEvent(new ShopRemoveLog(Util.getSenderUniqueId(sender), "Deleting shop " + shop + " as requested by the /qs removeall command.", shop.saveToInfoStorage()));
-                        shop.delete();
-                        i++;
-                    }
-                }
             } else { //Self shop
                 if (!plugin.perm().hasPermission(sender, "quickshop.removeall.self")) {
                     plugin.text().of(sender, "no-permission").send();
@@ -64,15 +56,21 @@ public class SubCommand_RemoveAll implements CommandHandler<CommandSender> {
                     sender.sendMessage(ChatColor.RED + "This command can't be run by the console!");
                     return;
                 }
-                for (Shop shop : tempList) {
-                    if (shop.getOwner().equals(((OfflinePlayer) sender).getUniqueId())) {
-                        plugin.logEvent(new ShopRemoveLog(Util.getSenderUniqueId(sender), "Deleting shop " + shop + " as requested by the /qs removeall command.", shop.saveToInfoStorage()));
-                        shop.delete();
-                        i++;
-                    }
+            }
+            // Filter by the summaries, only the shops going to delete will be hydrated
+            UUID ownerId = shopOwner.getUniqueId();
+            List<ShopSummary> owned = new ArrayList<>();
+            for (ShopSummary summary : plugin.getShopManager().getShopSummaries()) {
+                if (summary.owner().equals(ownerId)) {
+                    owned.add(summary);
                 }
             }
-            plugin.text().of(sender, "command.some-shops-removed", i).send();
+            AtomicInteger removed = new AtomicInteger();
+            plugin.getShopManager().hydrateLazily(owned, shop -> {
+                plugin.logEvent(new ShopRemoveLog(Util.getSenderUniqueId(sender), "Deleting shop " + shop + " as requested by the /qs removeall command.", shop.saveToInfoStorage()));
+                shop.delete();
+                removed.incrementAndGet();
+            }).whenComplete((v, e) -> plugin.text().of(sender, "command.some-shops-removed", removed.get()).send());
         } else {
             plugin.text().of(sender, "command.no-owner-given").send();
         }
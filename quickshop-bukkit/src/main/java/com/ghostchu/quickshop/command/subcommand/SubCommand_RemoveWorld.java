@@ -2,14 +2,17 @@ package com.ghostchu.quickshop.command.subcommand;
 
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.command.CommandHandler;
-import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.api.shop.ShopSummary;
 import com.ghostchu.quickshop.util.logger.Log;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.command.CommandSender;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
 public class SubCommand_RemoveWorld implements CommandHandler<CommandSender> {
 
@@ -30,15 +33,24 @@ public class SubCommand_RemoveWorld implements CommandHandler<CommandSender> {
             plugin.text().of(sender, "world-not-exists", cmdArg[0]).send();
             return;
         }
-        int shopsDeleted = 0;
-        for (Shop shop : plugin.getShopManager().getAllShops()) {
-            if (Objects.equals(shop.getLocation().getWorld(), world)) {
-                shop.delete();
-                shopsDeleted++;
+        List<ShopSummary> inWorld = new ArrayList<>();
+        for (ShopSummary shop : plugin.getShopManager().getShopSummaries()) {
+            if (shop.world().equals(world.getName())) {
+                inWorld.add(shop);
             }
         }
-        Log.debug("Successfully deleted all shops in world " + cmdArg[0] + "!");
-        plugin.text().of(sender, "shops-removed-in-world", shopsDeleted, world.getName()).send();
+        AtomicInteger shopsDeleted = new AtomicInteger();
+        plugin.getShopManager().hydrateLazily(inWorld, shop -> {
+            shop.delete();
+            shopsDeleted.incrementAndGet();
+        }).whenComplete((v, e) -> {
+            if (e != null) {
+                plugin.getLogger().log(Level.WARNING, "Failed to delete all shops in world " + world.getName() + ".", e);
+            } else {
+                Log.debug("Successfully deleted all shops in world " + world.getName() + "!");
+            }
+            plugin.text().of(sender, "shops-removed-in-world", shopsDeleted.get(), world.getName()).send();
+        });
     }
 
 }
@@ -31,6 +31,7 @@ public class SubCommand_SilentEmpty extends SubCommand_SilentBase {
         }
 
         inventory.clear();
+        cs.invalidateInventoryCounters();
         shop.setSignText(plugin.text().findRelativeLanguages(sender));
         MsgUtil.sendControlPanelInfo(sender, shop);
         plugin.text().of(sender, "empty-success").send();
@@ -41,9 +41,11 @@ public enum DataTables {
 
         table.addColumn("create_time", "DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP"); // SHOP CREATE TIME
         table.addColumn("benefit", "MEDIUMTEXT"); // BENEFIT (JSON) version 10
+        table.addColumn("content_hash", "VARCHAR(64)"); // SHA-256 OF THE LOOKUP COLUMNS (NULL for duplicated rows) version 11
         // table.addColumn("remove_time", "DATETIME"); // SHOP REMOVE TIME (NULL if not removed)
 
         table.setIndex(IndexType.INDEX, "idx_qs_data_owner", "owner");
+        table.setIndex(IndexType.UNIQUE_KEY, "idx_qs_data_content_hash", "content_hash");
     }),
 
     SHOPS("shops", (table) -> {
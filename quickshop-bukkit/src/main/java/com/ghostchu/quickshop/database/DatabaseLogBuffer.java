@@ -0,0 +1,324 @@
+package com.ghostchu.quickshop.database;
+
+import cc.carm.lib.easysql.api.SQLManager;
+import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.util.logger.Log;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Buffers the rows of log tables, and writes them with multi-row inserts in a dedicated thread.
+ * <p>
+ * Rows are flushed when a batch filled or the flush interval passed, each flush writes one multi-row insert per table
+ * in a single transaction, and falls back to insert the rows one by one if the transaction failed.
+ * The buffer is bounded and never blocks the producers, the row will be dropped and counted when it is full.
+ * The shop data ids required by purchase logs are cached, the missing ones resolved by one query per flush.
+ */
+public class DatabaseLogBuffer implements AutoCloseable {
+    private static final int QUEUE_CAPACITY = 16384;
+    private static final int BATCH_SIZE = 500;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+    private final QuickShop plugin;
+    private final SQLManager manager;
+    private final BlockingQueue<PendingRow> pending = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Cache<Long, Long> shopDataIds = CacheBuilder.newBuilder()
+            .maximumSize(65536)
+            .build();
+    private final AtomicLong droppedRows = new AtomicLong(0);
+    private final Thread flushThread;
+    private volatile boolean running = true;
+
+    public DatabaseLogBuffer(@NotNull QuickShop plugin, @NotNull SQLManager manager) {
+        this.plugin = plugin;
+        this.manager = manager;
+        this.flushThread = new Thread(this::runFlusher, "QuickShop-DatabaseLogFlusher");
+        this.flushThread.setDaemon(true);
+        this.flushThread.start();
+    }
+
+    /**
+     * Queues a row to insert into the log table.
+     *
+     * @param table  The log table
+     * @param params The row values, in the order of the table {@link Columns}
+     * @return The future completes with the affected lines after the row flushed
+     */
+    @NotNull
+    public CompletableFuture<Integer> insert(@NotNull Columns table, @Nullable Object... params) {
+        return enqueue(new PendingRow(table, params, -1, new CompletableFuture<>()));
+    }
+
+    /**
+     * Queues a purchase log row, the data id column will be filled by the current data id of the shop when flushing.
+     *
+     * @param shopId The shop id
+     * @param params The row values, in the order of {@link Columns#LOG_PURCHASE} and the data column is ignored
+     * @return The future completes with the affected lines after the row flushed
+     */
+    @NotNull
+    public CompletableFuture<Integer> insertPurchase(long shopId, @Nullable Object... params) {
+        return enqueue(new PendingRow(Columns.LOG_PURCHASE, params, shopId, new CompletableFuture<>()));
+    }
+
+    @NotNull
+    private CompletableFuture<Integer> enqueue(@NotNull PendingRow row) {
+        // Never wait here, the producers are usually the server thread
+        if (!running || !pending.offer(row)) {
+            if (droppedRows.getAndIncrement() % 1000 == 0) {
+                plugin.getLogger().warning("Database log buffer is full or closed, dropped " + droppedRows.get() + " log rows so far.");
+            }
+            row.future().completeExceptionally(new IllegalStateException("Database log buffer is full or closed"));
+        }
+        return row.future();
+    }
+
+    /**
+     * Gets the cached data id of the shop
+     *
+     * @param shopId The shop id
+     * @return The data id, or null if not cached
+     */
+    @Nullable
+    public Long getCachedShopDataId(long shopId) {
+        return shopDataIds.getIfPresent(shopId);
+    }
+
+    /**
+     * Updates the cached data id of the shop, should be called every time the data of the shop changed.
+     *
+     * @param shopId The shop id
+     * @param dataId The data id, null to invalidate
+     */
+    public void setCachedShopDataId(long shopId, @Nullable Long dataId) {
+        if (dataId == null) {
+            shopDataIds.invalidate(shopId);
+        } else {
+            shopDataIds.put(shopId, dataId);
+        }
+    }
+
+    public long getDroppedRows() {
+        return droppedRows.get();
+    }
+
+    public int getPendingRows() {
+        return pending.size();
+    }
+
+    private void runFlusher() {
+        List<PendingRow> batch = new ArrayList<>(BATCH_SIZE);
+        long lastFlush = System.currentTimeMillis();
+        while (running || !pending.isEmpty()) {
+            try {
+                PendingRow row = pending.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (row != null) {
+                    batch.add(row);
+                    pending.drainTo(batch, BATCH_SIZE - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            long now = System.currentTimeMillis();
+            if (batch.isEmpty() || (running && batch.size() < BATCH_SIZE && now - lastFlush < FLUSH_INTERVAL_MILLIS)) {
+                continue;
+            }
+            flush(batch);
+            batch.clear();
+            lastFlush = now;
+        }
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+    }
+
+    private void flush(@NotNull List<PendingRow> batch) {
+        Map<Columns, List<PendingRow>> byTable = new EnumMap<>(Columns.class);
+        for (PendingRow row : batch) {
+            byTable.computeIfAbsent(row.table(), k -> new ArrayList<>()).add(row);
+        }
+        try (Connection connection = manager.getConnection()) {
+            List<PendingRow> purchases = byTable.get(Columns.LOG_PURCHASE);
+            if (purchases != null) {
+                byTable.put(Columns.LOG_PURCHASE, fillShopDataIds(connection, purchases));
+            }
+            try {
+                insertInTransaction(connection, byTable);
+                byTable.values().forEach(rows -> rows.forEach(row -> row.future().complete(1)));
+                Log.debug("Flushed {} database log rows", batch.size());
+                return;
+            } catch (SQLException e) {
+                Log.debug("Failed to flush " + batch.size() + " database log rows in batch, fallback to insert them one by one: " + e.getMessage());
+            }
+            insertOneByOne(connection, byTable);
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to write " + batch.size() + " log rows into database", e);
+            batch.forEach(row -> row.future().completeExceptionally(e));
+        }
+    }
+
+    private void insertInTransaction(@NotNull Connection connection, @NotNull Map<Columns, List<PendingRow>> byTable) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            for (Map.Entry<Columns, List<PendingRow>> entry : byTable.entrySet()) {
+                insertRows(connection, entry.getKey(), entry.getValue());
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Inserts the rows one by one, so a bad row only fails itself.
+     */
+    private void insertOneByOne(@NotNull Connection connection, @NotNull Map<Columns, List<PendingRow>> byTable) {
+        int failed = 0;
+        SQLException lastError = null;
+        for (Map.Entry<Columns, List<PendingRow>> entry : byTable.entrySet()) {
+            for (PendingRow row : entry.getValue()) {
+                try {
+                    insertRows(connection, entry.getKey(), List.of(row));
+                    row.future().complete(1);
+                } catch (SQLException e) {
+                    failed++;
+                    lastError = e;
+                    row.future().completeExceptionally(e);
+                }
+            }
+        }
+        if (lastError != null) {
+            plugin.getLogger().log(Level.WARNING, "Failed to write " + failed + " log rows into database", lastError);
+        }
+    }
+
+    /**
+     * Fills the data id column of the purchase rows, rows of the shops that no longer exist will be discarded.
+     *
+     * @return The rows ready to insert
+     */
+    @NotNull
+    private List<PendingRow> fillShopDataIds(@NotNull Connection connection, @NotNull List<PendingRow> rows) throws SQLException {
+        Set<Long> missing = new HashSet<>();
+        for (PendingRow row : rows) {
+            if (shopDataIds.getIfPresent(row.shopId()) == null) {
+                missing.add(row.shopId());
+            }
+        }
+        Map<Long, Long> resolved = new HashMap<>(missing.size());
+        if (!missing.isEmpty()) {
+            String SQL = "SELECT id, data FROM " + DataTables.SHOPS.getName()
+                    + " WHERE id IN (" + String.join(",", Collections.nCopies(missing.size(), "?")) + ")";
+            try (PreparedStatement ps = connection.prepareStatement(SQL)) {
+                int index = 1;
+                for (Long shopId : missing) {
+                    ps.setLong(index++, shopId);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        resolved.put(rs.getLong("id"), rs.getLong("data"));
+                    }
+                }
+            }
+            shopDataIds.putAll(resolved);
+        }
+        List<PendingRow> ready = new ArrayList<>(rows.size());
+        for (PendingRow row : rows) {
+            Long dataId = shopDataIds.getIfPresent(row.shopId());
+            if (dataId == null) {
+                dataId = resolved.get(row.shopId());
+            }
+            if (dataId == null) {
+                row.future().completeExceptionally(new IllegalStateException("Shop " + row.shopId() + " doesn't exist in database"));
+                continue;
+            }
+            row.params()[Columns.LOG_PURCHASE.indexOf("data")] = dataId;
+            ready.add(row);
+        }
+        return ready;
+    }
+
+    private void insertRows(@NotNull Connection connection, @NotNull Columns table, @NotNull List<PendingRow> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        String placeholders = "(" + String.join(",", Collections.nCopies(table.columns.length, "?")) + ")";
+        String SQL = "INSERT INTO " + table.table.getName() + " (" + table.quotedColumns + ") VALUES "
+                + String.join(",", Collections.nCopies(rows.size(), placeholders));
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
+            int index = 1;
+            for (PendingRow row : rows) {
+                for (Object param : row.params()) {
+                    ps.setObject(index++, param);
+                }
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Stops accepting rows, and waits the flush thread to write all pending rows.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            flushThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flushThread.isAlive()) {
+            plugin.getLogger().warning("Database log flusher didn't finish in time, " + pending.size() + " log rows may lost.");
+        }
+    }
+
+    /**
+     * The log tables and their columns written by the buffer.
+     */
+    public enum Columns {
+        LOG_OTHERS(DataTables.LOG_OTHERS, "type", "data"),
+        LOG_TRANSACTION(DataTables.LOG_TRANSACTION, "from", "to", "currency", "amount", "tax_amount", "tax_account", "error"),
+        LOG_PURCHASE(DataTables.LOG_PURCHASE, "time", "shop", "data", "buyer", "type", "amount", "money", "tax");
+
+        private final DataTables table;
+        private final String[] columns;
+        private final String quotedColumns;
+
+        Columns(@NotNull DataTables table, @NotNull String... columns) {
+            this.table = table;
+            this.columns = columns;
+            // "from" and "to" are keywords
+            StringJoiner joiner = new StringJoiner(",");
+            for (String column : columns) {
+                joiner.add("`" + column + "`");
+            }
+            this.quotedColumns = joiner.toString();
+        }
+
+        private int indexOf(@NotNull String column) {
+            return Arrays.asList(columns).indexOf(column);
+        }
+    }
+
+    private record PendingRow(@NotNull Columns table, @Nullable Object[] params, long shopId,
+                              @NotNull CompletableFuture<Integer> future) {
+    }
+}
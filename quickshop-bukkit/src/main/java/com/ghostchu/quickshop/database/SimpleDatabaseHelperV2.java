@@ -2,7 +2,6 @@ package com.ghostchu.quickshop.database;
 
 import cc.carm.lib.easysql.api.SQLManager;
 import cc.carm.lib.easysql.api.SQLQuery;
-import cc.carm.lib.easysql.api.builder.TableQueryBuilder;
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.database.DatabaseHelper;
 import com.ghostchu.quickshop.api.database.ShopMetricRecord;
@@ -37,7 +36,9 @@ import java.sql.*;
 import java.util.Date;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 /**
@@ -50,8 +51,11 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
     @NotNull
     private final QuickShop plugin;
 
+    private static final int HASH_BACKFILL_BATCH_SIZE = 500;
     @NotNull
     private final String prefix;
+    @NotNull
+    private final DatabaseLogBuffer logBuffer;
 
     public SimpleDatabaseHelperV2(@NotNull QuickShop plugin, @NotNull SQLManager manager, @NotNull String prefix) throws SQLException {
         this.plugin = plugin;
@@ -60,6 +64,7 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
         //manager.setDebugMode(Util.isDevMode());
         checkTables();
         checkColumns();
+        this.logBuffer = new DatabaseLogBuffer(plugin, manager);
     }
 
     public void checkTables() throws SQLException {
@@ -122,9 +127,99 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
             plugin.getLogger().info("Data upgrading: All completed!");
             setDatabaseVersion(10);
         }
+        if (getDatabaseVersion() == 10) {
+            plugin.getLogger().info("Data upgrading: Performing database structure upgrade (content hash)...");
+            if (upgradeContentHash()) {
+                plugin.getLogger().info("Data upgrading: All completed!");
+                setDatabaseVersion(11);
+            } else {
+                plugin.getLogger().warning("Data upgrading: Content hash upgrade failed, it will be retried on next startup.");
+            }
+        }
         plugin.getLogger().info("Finished!");
     }
 
+    /**
+     * Adds the content_hash column, backfills the hashes and creates the unique index.
+     *
+     * @return true if the hashes backfilled and the index created, the database version should only be bumped on success
+     */
+    private boolean upgradeContentHash() {
+        try {
+            getManager().alterTable(DataTables.DATA.getName())
+                    .addColumn("content_hash", "VARCHAR(64)")
+                    .execute();
+        } catch (SQLException e) {
+            Log.debug("Failed to add content_hash column in " + DataTables.DATA.getName() + "! Err:" + e.getMessage());
+        }
+        try {
+            int hashed = backfillContentHash();
+            plugin.getLogger().info("Data upgrading: Hashed " + hashed + " data records.");
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to backfill content hash for data records!", e);
+            return false;
+        }
+        try {
+            manager.executeSQL("CREATE UNIQUE INDEX idx_qs_data_content_hash ON " + DataTables.DATA.getName() + " (content_hash)");
+        } catch (SQLException e) {
+            // Without the index the duplicated records can't be prevented, retry on next startup
+            plugin.getLogger().log(Level.WARNING, "Failed to create content_hash index in " + DataTables.DATA.getName() + "!", e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Fills content_hash for data records in batches.
+     * Only the first record of the duplicated records will be hashed, so the unique index can be created.
+     *
+     * @return The amount of hashed records
+     * @throws SQLException Throw exception when failed to read or write the records
+     */
+    private int backfillContentHash() throws SQLException {
+        String selectSQL = "SELECT * FROM " + DataTables.DATA.getName() + " WHERE id > ? ORDER BY id LIMIT " + HASH_BACKFILL_BATCH_SIZE;
+        String updateSQL = "UPDATE " + DataTables.DATA.getName() + " SET content_hash = ? WHERE id = ?";
+        // Compare the full hashes, the unique index is on the full hash too
+        Set<String> seen = new HashSet<>();
+        long lastId = 0;
+        int hashed = 0;
+        try (Connection connection = manager.getConnection();
+             PreparedStatement select = connection.prepareStatement(selectSQL);
+             PreparedStatement update = connection.prepareStatement(updateSQL)) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                while (true) {
+                    int rows = 0;
+                    select.setLong(1, lastId);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            rows++;
+                            lastId = rs.getLong("id");
+                            String hash = new SimpleDataRecord(rs).generateContentHash();
+                            update.setString(1, seen.add(hash) ? hash : null);
+                            update.setLong(2, lastId);
+                            update.addBatch();
+                        }
+                    }
+                    if (rows == 0) {
+                        break;
+                    }
+                    update.executeBatch();
+                    connection.commit();
+                    hashed += rows;
+                    plugin.getLogger().info("Data upgrading: Hashing data records... (" + hashed + ")");
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        return hashed;
+    }
+
     private void upgradeBenefit() {
         try {
             Integer lines = getManager().alterTable(DataTables.DATA.getName())
@@ -401,10 +496,18 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
         return queryDataId(simpleDataRecord).thenCompose(id -> {
             if (id == null) {
                 Map<String, Object> map = simpleDataRecord.generateParams();
+                map.put("content_hash", simpleDataRecord.generateContentHash());
                 return DataTables.DATA.createInsert()
                         .setColumnNames(new ArrayList<>(map.keySet()))
                         .setParams(map.values())
-                        .returnGeneratedKey(Long.class).executeFuture(i -> i);
+                        .returnGeneratedKey(Long.class).executeFuture(i -> i)
+                        // Someone else inserted the same data at the same time, use theirs
+                        .exceptionallyCompose(err -> queryDataId(simpleDataRecord).thenApply(existId -> {
+                            if (existId == null) {
+                                throw new CompletionException(err);
+                            }
+                            return existId;
+                        }));
             } else {
                 return CompletableFuture.completedFuture(id);
             }
@@ -470,34 +573,15 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
 
     @Override
     public @NotNull CompletableFuture<@NotNull Integer> insertHistoryRecord(@NotNull Object rec) {
-        return DataTables.LOG_OTHERS.createInsert()
-                .setColumnNames("type", "data")
-                .setParams(rec.getClass().getName(), JsonUtil.getGson().toJson(rec))
-                .executeFuture(lines -> lines);
+        return logBuffer.insert(DatabaseLogBuffer.Columns.LOG_OTHERS, rec.getClass().getName(), JsonUtil.getGson().toJson(rec));
     }
 
     @Override
     public @NotNull CompletableFuture<@NotNull Integer> insertMetricRecord(@NotNull ShopMetricRecord metricRecord) {
-        CompletableFuture<Integer> future = new CompletableFuture<>();
-        plugin.getDatabaseHelper().locateShopDataId(metricRecord.getShopId()).whenCompleteAsync((dataId, err) -> {
-            if (err != null) {
-                future.completeExceptionally(err);
-            }
-            DataTables.LOG_PURCHASE
-                    .createInsert()
-                    .setColumnNames("time", "shop", "data", "buyer", "type", "amount", "money", "tax")
-                    .setParams(new Date(metricRecord.getTime()), metricRecord.getShopId()
-                            , dataId, metricRecord.getPlayer(), metricRecord.getType().name(),
-                            metricRecord.getAmount(), metricRecord.getTotal(), metricRecord.getTax())
-                    .executeFuture(lines -> lines).whenComplete((line, err2) -> {
-                        if (err2 != null) {
-                            future.completeExceptionally(err2);
-                        }
-                        future.complete(line);
-                    });
-        });
-        return future;
-
+        // The data id will be filled by the buffer
+        return logBuffer.insertPurchase(metricRecord.getShopId(), new Timestamp(metricRecord.getTime()), metricRecord.getShopId(),
+                null, metricRecord.getPlayer().toString(), metricRecord.getType().name(),
+                metricRecord.getAmount(), metricRecord.getTotal(), metricRecord.getTax());
     }
 
     @Override
@@ -508,31 +592,33 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
         if (to == null) {
             to = CommonUtil.getNilUniqueId();
         }
-        DataTables.LOG_TRANSACTION.createInsert()
-                .setColumnNames("from", "to", "currency", "amount", "tax_amount", "tax_account", "error")
-                .setParams(from.toString(), to.toString(), currency, amount, taxAmount, taxAccount == null ? null : taxAccount.toString(), error)
-                .executeAsync(handler -> Log.debug("Operation completed, insertTransactionRecord, " + handler + " lines affected"));
+        logBuffer.insert(DatabaseLogBuffer.Columns.LOG_TRANSACTION, from.toString(), to.toString(), currency, amount, taxAmount, taxAccount == null ? null : taxAccount.toString(), error)
+                .whenComplete((lines, err) -> {
+                    if (err != null) {
+                        Log.debug("Failed to insert transaction record: " + err.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Writes all buffered log records and stops the log buffer.
+     */
+    public void close() {
+        logBuffer.close();
+    }
+
+    @NotNull
+    public DatabaseLogBuffer getLogBuffer() {
+        return logBuffer;
     }
 
     @Override
     public @NotNull List<ShopRecord> listShops(boolean deleteIfCorrupt) {
         List<ShopRecord> shopRecords = new ArrayList<>();
-        String SQL = "SELECT * FROM " + DataTables.DATA.getName()
-                + " INNER JOIN " + DataTables.SHOPS.getName()
-                + " ON " + DataTables.DATA.getName() + ".id = " + DataTables.SHOPS.getName() + ".data"
-                + " INNER JOIN " + DataTables.SHOP_MAP.getName()
-                + " ON " + DataTables.SHOP_MAP.getName() + ".shop = " + DataTables.SHOPS.getName() + ".id";
-        try (SQLQuery query = manager.createQuery().withPreparedSQL(SQL).execute()) {
+        try (SQLQuery query = manager.createQuery().withPreparedSQL(getListShopsSQL()).execute()) {
             ResultSet rs = query.getResultSet();
             while (rs.next()) {
-                long shopId = rs.getLong("shop");
-                int x = rs.getInt("x");
-                int y = rs.getInt("y");
-                int z = rs.getInt("z");
-                String world = rs.getString("world");
-                DataRecord dataRecord = new SimpleDataRecord(rs);
-                InfoRecord infoRecord = new ShopInfo(shopId, world, x, y, z);
-                shopRecords.add(new ShopRecord(dataRecord, infoRecord));
+                shopRecords.add(readShopRecord(rs));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -540,8 +626,65 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
         return shopRecords;
     }
 
+    /**
+     * Streams all shops from database in batches instead of pulling whole result set into memory.
+     * The consumer will be called on the caller thread, once per batch.
+     *
+     * @param batchSize The fetch size and the max size of each batch
+     * @param consumer  The batch consumer
+     * @return The amount of rows fetched
+     * @throws SQLException Throw exception when failed to read the result set
+     */
+    public int streamShops(int batchSize, @NotNull Consumer<List<ShopRecord>> consumer) throws SQLException {
+        int rows = 0;
+        try (Connection connection = manager.getConnection();
+             PreparedStatement ps = connection.prepareStatement(getListShopsSQL(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(batchSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<ShopRecord> batch = new ArrayList<>(batchSize);
+                while (rs.next()) {
+                    batch.add(readShopRecord(rs));
+                    rows++;
+                    if (batch.size() >= batchSize) {
+                        consumer.accept(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    consumer.accept(batch);
+                }
+            }
+        }
+        return rows;
+    }
+
+    @NotNull
+    private String getListShopsSQL() {
+        return "SELECT * FROM " + DataTables.DATA.getName()
+                + " INNER JOIN " + DataTables.SHOPS.getName()
+                + " ON " + DataTables.DATA.getName() + ".id = " + DataTables.SHOPS.getName() + ".data"
+                + " INNER JOIN " + DataTables.SHOP_MAP.getName()
+                + " ON " + DataTables.SHOP_MAP.getName() + ".shop = " + DataTables.SHOPS.getName() + ".id";
+    }
+
+    @NotNull
+    private ShopRecord readShopRecord(@NotNull ResultSet rs) throws SQLException {
+        long shopId = rs.getLong("shop");
+        int x = rs.getInt("x");
+        int y = rs.getInt("y");
+        int z = rs.getInt("z");
+        String world = rs.getString("world");
+        DataRecord dataRecord = new SimpleDataRecord(rs);
+        InfoRecord infoRecord = new ShopInfo(shopId, world, x, y, z);
+        return new ShopRecord(dataRecord, infoRecord);
+    }
+
     @Override
     public @NotNull CompletableFuture<@Nullable Long> locateShopDataId(long shopId) {
+        Long cached = logBuffer.getCachedShopDataId(shopId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
         return DataTables.SHOPS.createQuery()
                 .addCondition("id", shopId)
                 .setLimit(1)
@@ -549,7 +692,9 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
                 .executeFuture(query -> {
                     ResultSet result = query.getResultSet();
                     if (result.next()) {
-                        return result.getLong("data");
+                        long dataId = result.getLong("data");
+                        logBuffer.setCachedShopDataId(shopId, dataId);
+                        return dataId;
                     }
                     return null;
                 });
@@ -585,6 +730,7 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
     @Override
     public @NotNull CompletableFuture<@NotNull Integer> removeShop(long shopId) {
         Validate.isTrue(shopId > 0, "Shop ID must be greater than 0!");
+        logBuffer.setCachedShopDataId(shopId, null);
         return DataTables.SHOPS.createDelete()
                 .addCondition("id", shopId)
                 .build().executeFuture(lines -> lines);
@@ -658,17 +804,121 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
                         .addCondition("id", shopId)
                         .setColumnValues("data", dataId)
                         .build()
-                        .executeFuture();
+                        .executeFuture()
+                        .thenRun(() -> logBuffer.setCachedShopDataId(shopId, dataId));
             } else {
                 return createData(shop).thenCompose(createdDataId -> DataTables.SHOPS.createUpdate()
                         .addCondition("id", shopId)
                         .setColumnValues("data", createdDataId)
                         .build()
-                        .executeFuture());
+                        .executeFuture()
+                        .thenRun(() -> logBuffer.setCachedShopDataId(shopId, createdDataId)));
             }
         });
     }
 
+    /**
+     * Updates the data of multiple shops in one transaction.
+     * <p>
+     * The data ids are resolved by one multi-row query over the content hash, the missing data records
+     * and the shop updates are written as JDBC batches. This method blocks the caller thread.
+     *
+     * @param shopRecords Shop id - the data record to save
+     * @throws SQLException Throw exception when failed to save, the whole transaction rolled back
+     */
+    public void updateShops(@NotNull Map<Long, SimpleDataRecord> shopRecords) throws SQLException {
+        if (shopRecords.isEmpty()) {
+            return;
+        }
+        Map<Long, String> shopHashes = new LinkedHashMap<>(shopRecords.size());
+        Map<String, SimpleDataRecord> hashRecords = new LinkedHashMap<>();
+        for (Map.Entry<Long, SimpleDataRecord> entry : shopRecords.entrySet()) {
+            String hash = entry.getValue().generateContentHash();
+            shopHashes.put(entry.getKey(), hash);
+            hashRecords.putIfAbsent(hash, entry.getValue());
+        }
+        try (Connection connection = manager.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                Map<String, Long> dataIds = queryDataIds(connection, hashRecords.keySet());
+                List<SimpleDataRecord> missing = new ArrayList<>();
+                hashRecords.forEach((hash, record) -> {
+                    if (!dataIds.containsKey(hash)) {
+                        missing.add(record);
+                    }
+                });
+                if (!missing.isEmpty()) {
+                    insertDataRecords(connection, missing);
+                    dataIds.putAll(queryDataIds(connection, hashRecords.keySet()));
+                }
+                try (PreparedStatement ps = connection.prepareStatement("UPDATE " + DataTables.SHOPS.getName() + " SET data = ? WHERE id = ?")) {
+                    for (Map.Entry<Long, String> entry : shopHashes.entrySet()) {
+                        Long dataId = dataIds.get(entry.getValue());
+                        if (dataId == null) {
+                            throw new SQLException("Data record for shop " + entry.getKey() + " not found after inserted");
+                        }
+                        ps.setLong(1, dataId);
+                        ps.setLong(2, entry.getKey());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                connection.commit();
+                shopHashes.forEach((shopId, hash) -> logBuffer.setCachedShopDataId(shopId, dataIds.get(hash)));
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    @NotNull
+    private Map<String, Long> queryDataIds(@NotNull Connection connection, @NotNull Collection<String> hashes) throws SQLException {
+        Map<String, Long> dataIds = new HashMap<>(hashes.size());
+        String SQL = "SELECT id, content_hash FROM " + DataTables.DATA.getName()
+                + " WHERE content_hash IN (" + String.join(",", Collections.nCopies(hashes.size(), "?")) + ")";
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
+            int index = 1;
+            for (String hash : hashes) {
+                ps.setString(index++, hash);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    dataIds.put(rs.getString("content_hash"), rs.getLong("id"));
+                }
+            }
+        }
+        return dataIds;
+    }
+
+    private void insertDataRecords(@NotNull Connection connection, @NotNull List<SimpleDataRecord> records) throws SQLException {
+        List<String> columns = new ArrayList<>(records.get(0).generateParams().keySet());
+        columns.add("content_hash");
+        String SQL = "INSERT INTO " + DataTables.DATA.getName() + " (" + String.join(",", columns) + ") VALUES ("
+                + String.join(",", Collections.nCopies(columns.size(), "?")) + ")";
+        try (PreparedStatement ps = connection.prepareStatement(SQL)) {
+            for (SimpleDataRecord record : records) {
+                Map<String, Object> params = record.generateParams();
+                params.put("content_hash", record.generateContentHash());
+                int index = 1;
+                for (String column : columns) {
+                    Object value = params.get(column);
+                    if (value instanceof UUID uuid) {
+                        value = uuid.toString();
+                    } else if (value instanceof Date date) {
+                        value = new Timestamp(date.getTime());
+                    }
+                    ps.setObject(index++, value);
+                }
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
     public CompletableFuture<Integer> purgeLogsRecords(@Nullable Date endDate) {
         return CompletableFuture.supplyAsync(() -> {
             int linesAffected = 0;
@@ -695,14 +945,12 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
 
     @NotNull
     public CompletableFuture<@Nullable Long> queryDataId(@NotNull SimpleDataRecord simpleDataRecord) {
-        // Check if dataRecord exists in database with same values
-        Map<String, Object> lookupParams = simpleDataRecord.generateLookupParams();
-        TableQueryBuilder builder = DataTables.DATA.createQuery();
-        builder.setLimit(1);
-        for (Map.Entry<String, Object> entry : lookupParams.entrySet()) {
-            builder.addCondition(entry.getKey(), entry.getValue());
-        }
-        return builder.build()
+        // Check if dataRecord exists in database with same values, the content hash is unique indexed
+        return DataTables.DATA.createQuery()
+                .addCondition("content_hash", simpleDataRecord.generateContentHash())
+                .selectColumns("id")
+                .setLimit(1)
+                .build()
                 .executeFuture(query -> {
                     ResultSet set = query.getResultSet();
                     if (set.next()) {
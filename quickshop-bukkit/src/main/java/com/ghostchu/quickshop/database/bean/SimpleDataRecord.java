@@ -3,7 +3,13 @@ package com.ghostchu.quickshop.database.bean;
 import com.ghostchu.quickshop.api.database.bean.DataRecord;
 import lombok.Data;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
@@ -70,6 +76,48 @@ public class SimpleDataRecord implements DataRecord {
         return map;
     }
 
+    /**
+     * Generates the SHA-256 content hash over the canonicalized lookup params,
+     * the records have same lookup params will have same content hash.
+     *
+     * @return The hex encoded content hash
+     */
+    @NotNull
+    public String generateContentHash() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Object> entry : new TreeMap<>(generateLookupParams()).entrySet()) {
+            String value = canonicalize(entry.getKey(), entry.getValue());
+            builder.append(entry.getKey()).append(':');
+            if (value == null) {
+                builder.append("-1:");
+            } else {
+                builder.append(value.length()).append(':').append(value);
+            }
+            builder.append(';');
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(builder.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not supported", e);
+        }
+    }
+
+    @Nullable
+    private static String canonicalize(@NotNull String key, @Nullable Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Boolean bool) {
+            return bool ? "1" : "0";
+        }
+        if ("price".equals(key) && value instanceof Double price) {
+            // Same as the DECIMAL(32,2) column stored
+            return BigDecimal.valueOf(price).setScale(2, RoundingMode.HALF_UP).toPlainString();
+        }
+        return value.toString();
+    }
+
     @NotNull
     public Map<String, Object> generateParams() {
         Map<String, Object> map = new LinkedHashMap<>();
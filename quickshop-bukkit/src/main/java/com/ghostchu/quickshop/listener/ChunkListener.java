@@ -3,6 +3,7 @@ package com.ghostchu.quickshop.listener;
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.api.shop.display.DisplayType;
+import com.ghostchu.quickshop.shop.SimpleShopManager;
 import com.ghostchu.quickshop.shop.display.AbstractDisplayItem;
 import com.ghostchu.quickshop.util.logger.Log;
 import com.ghostchu.simplereloadlib.ReloadResult;
@@ -29,6 +30,8 @@ public class ChunkListener extends AbstractQSListener {
         if (e.isNewChunk()) {
             return;
         }
+        // Hydrate the cold shops first, so they will be loaded as usual
+        ((SimpleShopManager) plugin.getShopManager()).hydrateChunk(e.getWorld().getName(), e.getChunk().getX(), e.getChunk().getZ());
         final Map<Location, Shop> inChunk = plugin.getShopManager().getShops(e.getChunk());
         if (inChunk == null) {
             return;
@@ -0,0 +1,116 @@
+package com.ghostchu.quickshop.listener;
+
+import com.ghostchu.quickshop.Cache;
+import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.shop.SimpleShopManager;
+import com.ghostchu.quickshop.shop.display.AbstractDisplayItem;
+import com.ghostchu.quickshop.util.Util;
+import com.ghostchu.quickshop.watcher.DisplayCheckWatcher;
+import com.ghostchu.simplereloadlib.ReloadResult;
+import com.ghostchu.simplereloadlib.ReloadStatus;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Item;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.entity.ItemMergeEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * Requests display checks from the events may break the display item, instead of checking all shops periodically.
+ */
+public class DisplayCheckListener extends AbstractProtectionListener {
+    private static final BlockFace[] NEARBY_FACES = {BlockFace.SELF, BlockFace.DOWN, BlockFace.NORTH, BlockFace.SOUTH, BlockFace.EAST, BlockFace.WEST};
+    private final DisplayCheckWatcher watcher;
+
+    public DisplayCheckListener(@NotNull QuickShop plugin, @Nullable Cache cache, @NotNull DisplayCheckWatcher watcher) {
+        super(plugin, cache);
+        this.watcher = watcher;
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGHEST)
+    public void onItemMerge(ItemMergeEvent event) {
+        boolean source = AbstractDisplayItem.checkIsGuardItemStack(event.getEntity().getItemStack());
+        boolean target = AbstractDisplayItem.checkIsGuardItemStack(event.getTarget().getItemStack());
+        if (!source && !target) {
+            return;
+        }
+        event.setCancelled(true);
+        requestCheck(event.getEntity());
+        requestCheck(event.getTarget());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGHEST)
+    public void onEntityPickup(EntityPickupItemEvent event) {
+        if (!AbstractDisplayItem.checkIsGuardItemStack(event.getItem().getItemStack())) {
+            return;
+        }
+        event.setCancelled(true);
+        requestCheck(event.getItem());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        requestNearby(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockBreak(BlockBreakEvent event) {
+        requestNearby(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        // The entities may load after the chunk, check again for the dupes
+        Map<Location, Shop> inChunk = plugin.getShopManager().getShops(event.getChunk());
+        if (inChunk != null) {
+            inChunk.values().forEach(watcher::requestCheck);
+        }
+    }
+
+    private void requestCheck(@NotNull Item item) {
+        // Display floating above the shop block
+        Shop shop = getShopNature(Util.getBlockLocation(item.getLocation()).subtract(0, 1, 0), true);
+        if (shop != null) {
+            watcher.requestCheck(shop);
+        }
+    }
+
+    /**
+     * Requests checks for the shops may affected by the block change: the shop itself,
+     * the shop below (display blocked) and the shops next to it (double chest changed).
+     *
+     * @param block The changed block
+     */
+    private void requestNearby(@NotNull Block block) {
+        // Most of block changes are far away from shops, skip the lookups by the presence bitmap
+        if (!((SimpleShopManager) plugin.getShopManager()).isShopNearby(block)) {
+            return;
+        }
+        for (BlockFace face : NEARBY_FACES) {
+            Shop shop = getShopNature(block.getRelative(face).getLocation(), false);
+            if (shop != null) {
+                watcher.requestCheck(shop);
+            }
+        }
+    }
+
+    /**
+     * Callback for reloading
+     *
+     * @return Reloading success
+     */
+    @Override
+    public ReloadResult reloadModule() {
+        return ReloadResult.builder().status(ReloadStatus.SUCCESS).build();
+    }
+}
@@ -0,0 +1,105 @@
+package com.ghostchu.quickshop.listener;
+
+import com.ghostchu.quickshop.Cache;
+import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.shop.ContainerShop;
+import com.ghostchu.quickshop.util.Util;
+import com.ghostchu.simplereloadlib.ReloadResult;
+import com.ghostchu.simplereloadlib.ReloadStatus;
+import io.papermc.lib.PaperLib;
+import org.bukkit.Location;
+import org.bukkit.block.DoubleChest;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.event.inventory.InventoryPickupItemEvent;
+import org.bukkit.inventory.BlockInventoryHolder;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Invalidates the cached stock and space counters of shops when their inventory modified by players or hoppers.
+ * The counters have no expiration, so every inventory change of the shops must come through here or the shop transactions.
+ * <p>
+ * These events fired before the inventory actually changed, so the shops will be invalidated again at next tick,
+ * in case someone counted the inventory in the middle.
+ */
+public class ShopInventoryCounterListener extends AbstractProtectionListener {
+    private final Set<ContainerShop> pendingInvalidate = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public ShopInventoryCounterListener(@NotNull QuickShop plugin, @Nullable Cache cache) {
+        super(plugin, cache);
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onInventoryMove(InventoryMoveItemEvent event) {
+        invalidate(event.getSource());
+        invalidate(event.getDestination());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onInventoryPickup(InventoryPickupItemEvent event) {
+        invalidate(event.getInventory());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onInventoryClick(InventoryClickEvent event) {
+        // Shift-click in bottom inventory also moves items into the top one
+        invalidate(event.getInventory());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        invalidate(event.getInventory());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClose(InventoryCloseEvent event) {
+        // The plugins editing the opened inventory (e.g. sorting) don't fire the click events
+        invalidate(event.getInventory());
+    }
+
+    private void invalidate(@NotNull Inventory inventory) {
+        // Cheap holder check first, most of the events are on the player or other non-container inventories
+        InventoryHolder holder = PaperLib.getHolder(inventory, false).getHolder();
+        if (!(holder instanceof BlockInventoryHolder) && !(holder instanceof DoubleChest)) {
+            return;
+        }
+        Location location = inventory.getLocation();
+        if (location == null) {
+            return;
+        }
+        Shop shop = getShopRedstone(Util.getBlockLocation(location), true);
+        if (!(shop instanceof ContainerShop containerShop)) {
+            return;
+        }
+        containerShop.invalidateInventoryCounters();
+        if (pendingInvalidate.isEmpty()) {
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                pendingInvalidate.forEach(ContainerShop::invalidateInventoryCounters);
+                pendingInvalidate.clear();
+            });
+        }
+        pendingInvalidate.add(containerShop);
+    }
+
+    /**
+     * Callback for reloading
+     *
+     * @return Reloading success
+     */
+    @Override
+    public ReloadResult reloadModule() {
+        return ReloadResult.builder().status(ReloadStatus.SUCCESS).build();
+    }
+}
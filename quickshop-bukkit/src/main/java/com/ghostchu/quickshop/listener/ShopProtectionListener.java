@@ -5,6 +5,7 @@ import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.api.shop.permission.BuiltInShopPermission;
 import com.ghostchu.quickshop.common.util.CommonUtil;
+import com.ghostchu.quickshop.shop.SimpleShopManager;
 import com.ghostchu.quickshop.shop.datatype.HopperPersistentData;
 import com.ghostchu.quickshop.shop.datatype.HopperPersistentDataType;
 import com.ghostchu.quickshop.util.Util;
@@ -45,6 +46,9 @@ public class ShopProtectionListener extends AbstractProtectionListener {
     public void onBlockExplode(BlockExplodeEvent e) {
         for (int i = 0, a = e.blockList().size(); i < a; i++) {
             final Block b = e.blockList().get(i);
+            if (!isShopNearby(b)) {
+                continue;
+            }
             Shop shop = getShopNature(b.getLocation(), true);
             if (shop == null) {
                 shop = getShopNextTo(b.getLocation());
@@ -60,6 +64,21 @@ public class ShopProtectionListener extends AbstractProtectionListener {
         }
     }
 
+    @NotNull
+    private SimpleShopManager shopManager() {
+        return (SimpleShopManager) plugin.getShopManager();
+    }
+
+    /**
+     * Checks the shop presence bitmap before any shop lookup, most of nature events are far away from shops.
+     *
+     * @param block The block
+     * @return false if definitely no shops around
+     */
+    private boolean isShopNearby(@NotNull Block block) {
+        return shopManager().isShopNearby(block);
+    }
+
     /**
      * Gets the shop a sign is attached to
      *
@@ -85,6 +104,9 @@ public class ShopProtectionListener extends AbstractProtectionListener {
         if (!plugin.getConfig().getBoolean("protect.entity", true)) {
             return;
         }
+        if (!isShopNearby(e.getBlock())) {
+            return;
+        }
         if (getShopNature(e.getBlock().getLocation(), true) != null) {
             e.setCancelled(true);
         }
@@ -97,6 +119,9 @@ public class ShopProtectionListener extends AbstractProtectionListener {
     public void onExplode(EntityExplodeEvent e) {
         for (int i = 0, a = e.blockList().size(); i < a; i++) {
             final Block b = e.blockList().get(i);
+            if (!isShopNearby(b)) {
+                continue;
+            }
             final Shop shop = getShopNature(b.getLocation(), true);
 
             if (shop == null) {
@@ -118,7 +143,7 @@ public class ShopProtectionListener extends AbstractProtectionListener {
         }
         final Location loc = event.getSource().getLocation();
 
-        if (loc == null) {
+        if (loc == null || !shopManager().isShopNearby(loc)) {
             return;
         }
         final Shop shop = getShopRedstone(loc, true);
@@ -14,8 +14,6 @@ import org.bukkit.event.world.WorldLoadEvent;
 import org.bukkit.event.world.WorldUnloadEvent;
 
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class WorldListener extends AbstractQSListener {
 
@@ -33,9 +31,7 @@ public class WorldListener extends AbstractQSListener {
          */
         final World world = e.getWorld();
 
-        plugin.getShopLoader().loadShops(world.getName());
-        // New world data
-        final Map<ShopChunk, Map<Location, Shop>> inWorld = new ConcurrentHashMap<>(1);
+        plugin.getShopLoader().loadShopsAsync(world.getName());
         // Old world data
         final Map<ShopChunk, Map<Location, Shop>> oldInWorld =
                 plugin.getShopManager().getShops(world.getName());
@@ -44,22 +40,15 @@ public class WorldListener extends AbstractQSListener {
         if (oldInWorld == null) {
             return;
         }
-
-        for (Entry<ShopChunk, Map<Location, Shop>> oldInChunk : oldInWorld.entrySet()) {
-            final Map<Location, Shop> inChunk = new ConcurrentHashMap<>(1);
-            // Put the new chunk were the old chunk was
-            inWorld.put(oldInChunk.getKey(), inChunk);
-
-            for (Entry<Location, Shop> entry : oldInChunk.getValue().entrySet()) {
-                final Shop shop = entry.getValue();
-
+        // The shop index keyed by world name and block position, so only the
+        // world reference in shop location need to be updated, re-adding the
+        // shop refreshes the cached Location keyed views.
+        for (Map<Location, Shop> oldInChunk : oldInWorld.values()) {
+            for (final Shop shop : oldInChunk.values()) {
                 shop.getLocation().setWorld(world);
-                inChunk.put(shop.getLocation(), shop);
+                plugin.getShopManager().addShop(world.getName(), shop);
             }
         }
-        // Done - Now we can store the new world dataz!
-
-        plugin.getShopManager().getShops().put(world.getName(), inWorld);
         // This is a workaround, because I don't get parsed chunk events when a
         // world first loads....
         // So manually tell all of these shops they're loaded.
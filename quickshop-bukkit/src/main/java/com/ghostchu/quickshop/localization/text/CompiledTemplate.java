@@ -0,0 +1,112 @@
+package com.ghostchu.quickshop.localization.text;
+
+import com.ghostchu.quickshop.localization.text.postprocessing.impl.PlaceHolderApiProcessor;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextReplacementConfig;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A translation parsed by MiniMessage once, with the argument slots ({0}, {1}...) located at compile time.
+ * <p>
+ * Rendering a template without slots returns the compiled component directly, otherwise all slots
+ * are filled in a single traversal of the component tree. The PlaceholderAPI placeholders presence
+ * also detected at compile time, so the texts without placeholders can skip the expansion.
+ */
+public final class CompiledTemplate {
+    private static final Pattern SLOT_PATTERN = Pattern.compile("\\{(\\d+)}");
+    private final String source;
+    private final Component component;
+    private final int maxSlot;
+    private final boolean placeholders;
+
+    private CompiledTemplate(@NotNull String source, @NotNull Component component, int maxSlot, boolean placeholders) {
+        this.source = source;
+        this.component = component;
+        this.maxSlot = maxSlot;
+        this.placeholders = placeholders;
+    }
+
+    @NotNull
+    public static CompiledTemplate compile(@NotNull MiniMessage miniMessage, @NotNull String source) {
+        int maxSlot = -1;
+        Matcher matcher = SLOT_PATTERN.matcher(source);
+        while (matcher.find()) {
+            try {
+                maxSlot = Math.max(maxSlot, Integer.parseInt(matcher.group(1)));
+            } catch (NumberFormatException ignored) {
+                // Too large to be an argument index
+            }
+        }
+        return new CompiledTemplate(source, miniMessage.deserialize(source).compact(), maxSlot, PlaceHolderApiProcessor.containsPlaceholder(source));
+    }
+
+    /**
+     * Checks if the translation contains PlaceholderAPI placeholders, the arguments are not counted
+     *
+     * @return true if contains placeholders
+     */
+    public boolean hasPlaceholders() {
+        return placeholders;
+    }
+
+    /**
+     * Checks if the template compiled from the given source
+     *
+     * @param source The translation source
+     * @return true if the source not changed since compiled
+     */
+    public boolean isCompiledFrom(@NotNull String source) {
+        return this.source.equals(source);
+    }
+
+    /**
+     * Fills the arguments into slots
+     *
+     * @param args The arguments, the slots without matching argument are kept as-is
+     * @return The rendered component
+     */
+    @NotNull
+    public Component render(@Nullable Component... args) {
+        return render(UnaryOperator.identity(), args);
+    }
+
+    /**
+     * Transforms the template text and then fills the arguments into slots,
+     * the transformer only sees the template's own text, never the arguments.
+     *
+     * @param transformer The transformer for the template text
+     * @param args        The arguments, the slots without matching argument are kept as-is
+     * @return The rendered component
+     */
+    @NotNull
+    public Component render(@NotNull UnaryOperator<Component> transformer, @Nullable Component... args) {
+        Component base = transformer.apply(component);
+        if (maxSlot < 0 || args == null || args.length == 0) {
+            return base;
+        }
+        return base.replaceText(TextReplacementConfig.builder()
+                .match(SLOT_PATTERN)
+                .replacement((result, builder) -> {
+                    int index = parseIndex(result.group(1));
+                    if (index < 0 || index >= args.length) {
+                        return builder;
+                    }
+                    return args[index] == null ? Component.empty() : args[index];
+                })
+                .build()).compact();
+    }
+
+    private static int parseIndex(@NotNull String index) {
+        try {
+            return Integer.parseInt(index);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -40,6 +40,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -55,6 +56,11 @@ public class SimpleTextManager implements TextManager, Reloadable {
     private final Set<String> availableLanguages = new LinkedHashSet<>();
     private final Cache<String, String> languagesCache =
             CacheBuilder.newBuilder().expireAfterAccess(30, TimeUnit.MINUTES).build();
+    // <(Locale, Path), Template>
+    private final Cache<TemplateKey, CompiledTemplate> templateCache =
+            CacheBuilder.newBuilder().maximumSize(16384).expireAfterAccess(30, TimeUnit.MINUTES).build();
+    private final Cache<TemplateKey, List<CompiledTemplate>> templateListCache =
+            CacheBuilder.newBuilder().maximumSize(4096).expireAfterAccess(30, TimeUnit.MINUTES).build();
     @Nullable
     private CrowdinOTA crowdinOTA;
 
@@ -184,6 +190,8 @@ public class SimpleTextManager implements TextManager, Reloadable {
      */
     private void reset() {
         languagesCache.cleanUp();
+        templateCache.invalidateAll();
+        templateListCache.invalidateAll();
         languageFilesManager.reset();
         postProcessors.clear();
         availableLanguages.clear();
@@ -373,6 +381,82 @@ public class SimpleTextManager implements TextManager, Reloadable {
         }
         configuration.set(path, text);
         languageFilesManager.deploy(locale, configuration);
+        templateCache.invalidate(new TemplateKey(locale, path));
+    }
+
+    /**
+     * Gets the compiled template of the translation, compiles it if not cached or the translation changed.
+     *
+     * @param locale The resolved locale
+     * @param path   The language key path
+     * @param source The translation
+     * @return The compiled template
+     */
+    @NotNull
+    private CompiledTemplate getTemplate(@NotNull String locale, @NotNull String path, @NotNull String source) {
+        TemplateKey key = new TemplateKey(locale, path);
+        CompiledTemplate template = templateCache.getIfPresent(key);
+        if (template == null || !template.isCompiledFrom(source)) {
+            template = CompiledTemplate.compile(plugin.getPlatform().miniMessage(), source);
+            templateCache.put(key, template);
+        }
+        return template;
+    }
+
+    @NotNull
+    private List<CompiledTemplate> getTemplates(@NotNull String locale, @NotNull String path, @NotNull List<String> sources) {
+        TemplateKey key = new TemplateKey(locale, path);
+        List<CompiledTemplate> templates = templateListCache.getIfPresent(key);
+        if (templates == null || !isCompiledFrom(templates, sources)) {
+            templates = sources.stream().map(source -> CompiledTemplate.compile(plugin.getPlatform().miniMessage(), source)).toList();
+            templateListCache.put(key, templates);
+        }
+        return templates;
+    }
+
+    /**
+     * Renders the template and post processes the text.
+     * The PlaceholderAPI placeholders are expanded on the template text before the arguments filled,
+     * so the player-supplied arguments (e.g. shop names) never get expanded.
+     *
+     * @param template The template
+     * @param sender   The receiver
+     * @param args     The arguments
+     * @return The text that processed
+     */
+    @NotNull
+    private Component render(@NotNull CompiledTemplate template, @Nullable CommandSender sender, @NotNull Component[] args) {
+        Component text = template.render(template.hasPlaceholders() ? base -> expandPlaceholders(base, sender, args) : UnaryOperator.identity(), args);
+        for (PostProcessor postProcessor : postProcessors) {
+            // Arguments already filled by the template, placeholders expanded before filled
+            if (postProcessor instanceof FillerProcessor || postProcessor instanceof PlaceHolderApiProcessor) {
+                continue;
+            }
+            text = postProcessor.process(text, sender, args);
+        }
+        return text;
+    }
+
+    @NotNull
+    private Component expandPlaceholders(@NotNull Component text, @Nullable CommandSender sender, @NotNull Component[] args) {
+        for (PostProcessor postProcessor : postProcessors) {
+            if (postProcessor instanceof PlaceHolderApiProcessor) {
+                text = postProcessor.process(text, sender, args);
+            }
+        }
+        return text;
+    }
+
+    private static boolean isCompiledFrom(@NotNull List<CompiledTemplate> templates, @NotNull List<String> sources) {
+        if (templates.size() != sources.size()) {
+            return false;
+        }
+        for (int i = 0; i < templates.size(); i++) {
+            if (!templates.get(i).isCompiledFrom(sources.get(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -580,7 +664,8 @@ public class SimpleTextManager implements TextManager, Reloadable {
         @Override
         @NotNull
         public List<Component> forLocale(@NotNull String locale) {
-            FileConfiguration index = mapping.get(manager.findRelativeLanguages(locale).getLocale());
+            String relativeLocale = manager.findRelativeLanguages(locale).getLocale();
+            FileConfiguration index = mapping.get(relativeLocale);
             if (index == null) {
                 Log.debug("Fallback " + locale + " to default game-language locale caused by QuickShop doesn't support this locale");
                 String languageCode = MsgUtil.getDefaultGameLanguageCode();
@@ -596,8 +681,11 @@ public class SimpleTextManager implements TextManager, Reloadable {
                     Log.debug("Fallback Missing Language Key: " + path + ", report to QuickShop!");
                     return Collections.singletonList(LegacyComponentSerializer.legacySection().deserialize(path));
                 }
-                List<Component> components = str.stream().map(s -> manager.plugin.getPlatform().miniMessage().deserialize(s)).toList();
-                return postProcess(components);
+                List<Component> components = new ArrayList<>(str.size());
+                for (CompiledTemplate template : manager.getTemplates(relativeLocale, path, str)) {
+                    components.add(manager.render(template, sender, args));
+                }
+                return components;
             }
         }
 
@@ -645,23 +733,6 @@ public class SimpleTextManager implements TextManager, Reloadable {
                 MsgUtil.sendDirectMessage(sender, s);
             }
         }
-
-        /**
-         * Post processes the text
-         *
-         * @param text The text
-         * @return The text that processed
-         */
-        @NotNull
-        private List<Component> postProcess(@NotNull List<Component> text) {
-            List<Component> texts = new ArrayList<>();
-            for (PostProcessor postProcessor : this.manager.postProcessors) {
-                for (Component s : text) {
-                    texts.add(postProcessor.process(s, sender, args));
-                }
-            }
-            return texts;
-        }
     }
 
     public static class Text implements com.ghostchu.quickshop.api.localization.text.Text {
@@ -700,7 +771,8 @@ public class SimpleTextManager implements TextManager, Reloadable {
         @Override
         @NotNull
         public Component forLocale(@NotNull String locale) {
-            FileConfiguration index = mapping.get(manager.findRelativeLanguages(locale).getLocale());
+            String relativeLocale = manager.findRelativeLanguages(locale).getLocale();
+            FileConfiguration index = mapping.get(relativeLocale);
             if (index == null) {
                 Log.debug("Index for " + locale + " is null");
                 Log.debug("Fallback " + locale + " to default game-language locale caused by QuickShop doesn't support this locale");
@@ -723,8 +795,8 @@ public class SimpleTextManager implements TextManager, Reloadable {
                     }
                     return LegacyComponentSerializer.legacySection().deserialize(path);
                 }
-                Component component = manager.plugin.getPlatform().miniMessage().deserialize(str);
-                return postProcess(component);
+                CompiledTemplate template = manager.getTemplate(relativeLocale, path, str);
+                return manager.render(template, sender, args);
             }
         }
 
@@ -771,21 +843,9 @@ public class SimpleTextManager implements TextManager, Reloadable {
             Component lang = forLocale();
             MsgUtil.sendDirectMessage(sender, lang);
         }
-
-        /**
-         * Post processes the text
-         *
-         * @param text The text
-         * @return The text that processed
-         */
-        @NotNull
-        private Component postProcess(@NotNull Component text) {
-            for (PostProcessor postProcessor : this.manager.postProcessors) {
-                text = postProcessor.process(text, sender, args);
-            }
-            return text;
-        }
     }
 
+    private record TemplateKey(@NotNull String locale, @NotNull String path) {
+    }
 
 }
@@ -3,24 +3,55 @@ package com.ghostchu.quickshop.localization.text.postprocessing.impl;
 import com.ghostchu.quickshop.api.localization.text.postprocessor.PostProcessor;
 import me.clip.placeholderapi.PlaceholderAPI;
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.TextReplacementConfig;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.regex.Pattern;
+
 public class PlaceHolderApiProcessor implements PostProcessor {
+    // Same as the PlaceholderAPI's percent placeholder pattern
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("[%]([^%]+)[%]");
+
+    /**
+     * Checks if the text may contain PlaceholderAPI placeholders
+     *
+     * @param text The text
+     * @return true if any placeholder found
+     */
+    public static boolean containsPlaceholder(@NotNull String text) {
+        return text.indexOf('%') != -1 && PLACEHOLDER_PATTERN.matcher(text).find();
+    }
+
     @Override
     public @NotNull Component process(@NotNull Component text, @Nullable CommandSender sender, Component... args) {
-        if (sender instanceof OfflinePlayer offlinePlayer) {
-            if (Bukkit.getPluginManager().isPluginEnabled("PlaceHolderAPI")) {
-                String json = GsonComponentSerializer.gson().serialize(text);
-                json = PlaceholderAPI.setPlaceholders(offlinePlayer, json);
-                return GsonComponentSerializer.gson().deserialize(json);
+        if (!(sender instanceof OfflinePlayer offlinePlayer)) {
+            return text;
+        }
+        if (!containsPlaceholder(text) || !Bukkit.getPluginManager().isPluginEnabled("PlaceHolderAPI")) {
+            return text;
+        }
+        // Only the matched text in the text nodes will be replaced, the style kept
+        return text.replaceText(TextReplacementConfig.builder()
+                .match(PLACEHOLDER_PATTERN)
+                .replacement((result, builder) -> builder.content(PlaceholderAPI.setPlaceholders(offlinePlayer, result.group())))
+                .build());
+    }
+
+    private static boolean containsPlaceholder(@NotNull Component component) {
+        if (component instanceof TextComponent textComponent && containsPlaceholder(textComponent.content())) {
+            return true;
+        }
+        for (Component child : component.children()) {
+            if (containsPlaceholder(child)) {
+                return true;
             }
         }
-        return text;
+        return false;
     }
 
 }
@@ -3,14 +3,14 @@ package com.ghostchu.quickshop.papi;
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.common.util.CommonUtil;
-import com.ghostchu.quickshop.util.JsonUtil;
+import com.ghostchu.quickshop.shop.SimpleShopManager;
+import com.ghostchu.quickshop.shop.index.ShopCounters;
 import com.ghostchu.quickshop.util.Util;
 import com.ghostchu.simplereloadlib.ReloadResult;
 import com.ghostchu.simplereloadlib.Reloadable;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheStats;
-import lombok.Data;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -22,7 +22,7 @@ import java.util.concurrent.ExecutionException;
 public class PAPICache implements Reloadable {
     private QuickShop plugin;
     private long expiredTime;
-    private Cache<String, String> performCaches;
+    private Cache<CompiledUniqueKey, String> performCaches;
 
     public PAPICache() {
         init();
@@ -47,7 +47,7 @@ public class PAPICache implements Reloadable {
     }
 
     @NotNull
-    private String compileUniqueKey(@NotNull UUID player, @NotNull String[] args) {
+    private CompiledUniqueKey compileUniqueKey(@NotNull UUID player, @NotNull String[] args) {
         return compileUniqueKey(player, String.join("_", args));
     }
 
@@ -65,11 +65,11 @@ public class PAPICache implements Reloadable {
             case "shops-total" -> {
                 // %qs_shops-total%
                 if (Util.isNullOrEmpty(args[1])) {
-                    return String.valueOf(plugin.getShopManager().getAllShops().size());
+                    return String.valueOf(plugin.getShopManager().getShopCount());
                 }
 
                 // %qs_shops-total_<world>%
-                return String.valueOf(getShopsInWorld(args[1], false));
+                return String.valueOf(getCounters().getTotal(args[1]));
             }
 
             // %qs_shops-loaded[_world]%
@@ -80,7 +80,7 @@ public class PAPICache implements Reloadable {
                 }
 
                 // %qs_shops-loaded_<world>%
-                return String.valueOf(getShopsInWorld(args[1], true));
+                return String.valueOf(getCounters().getLoaded(args[1]));
             }
 
             // %qs_default-currency%
@@ -99,7 +99,7 @@ public class PAPICache implements Reloadable {
                     case "shops-total" -> {
                         // %qs_player_shops-total%
                         if (Util.isNullOrEmpty(args[2])) {
-                            return String.valueOf(plugin.getShopManager().getPlayerAllShops(player));
+                            return String.valueOf(getCounters().getTotal(player));
                         }
 
                         // Not valid UUID provided
@@ -108,14 +108,14 @@ public class PAPICache implements Reloadable {
                         }
 
                         // %qs_player_shop-total_<uuid>%
-                        return String.valueOf(plugin.getShopManager().getPlayerAllShops(UUID.fromString(args[2])));
+                        return String.valueOf(getCounters().getTotal(UUID.fromString(args[2])));
                     }
 
                     // %qs_player_shops-loaded[_uuid]%
                     case "shops-loaded" -> {
                         // %qs_shops-loaded%
                         if (Util.isNullOrEmpty(args[2])) {
-                            return String.valueOf(getLoadedPlayerShops(player));
+                            return String.valueOf(getCounters().getLoaded(player));
                         }
 
                         // Not valid UUID provided
@@ -124,7 +124,7 @@ public class PAPICache implements Reloadable {
                         }
 
                         // %qs_shops-loaded_<uuid>%
-                        return String.valueOf(getLoadedPlayerShops(UUID.fromString(args[2])));
+                        return String.valueOf(getCounters().getLoaded(UUID.fromString(args[2])));
                     }
 
                     // %qs_player_shops-inventory-unavailable[_uuid]%
@@ -158,22 +158,13 @@ public class PAPICache implements Reloadable {
     }
 
     @NotNull
-    private String compileUniqueKey(@NotNull UUID player, @NotNull String queryString) {
-        return JsonUtil.standard().toJson(new CompiledUniqueKey(player, queryString));
+    private CompiledUniqueKey compileUniqueKey(@NotNull UUID player, @NotNull String queryString) {
+        return new CompiledUniqueKey(player, queryString);
     }
 
-    private long getShopsInWorld(@NotNull String world, boolean loadedOnly) {
-        return plugin.getShopManager().getAllShops().stream()
-                .filter(shop -> shop.getLocation().getWorld() != null)
-                .filter(shop -> shop.getLocation().getWorld().getName().equals(world))
-                .filter(shop -> !loadedOnly || shop.isLoaded())
-                .count();
-    }
-
-    private long getLoadedPlayerShops(@NotNull UUID uuid) {
-        return plugin.getShopManager().getPlayerAllShops(uuid).stream()
-                .filter(Shop::isLoaded)
-                .count();
+    @NotNull
+    private ShopCounters getCounters() {
+        return ((SimpleShopManager) plugin.getShopManager()).getCounters();
     }
 
     private long getPlayerShopsInventoryUnavailable(@NotNull UUID uuid) {
@@ -205,14 +196,6 @@ public class PAPICache implements Reloadable {
         performCaches.put(compileUniqueKey(player, queryString), queryValue);
     }
 
-    @Data
-    static class CompiledUniqueKey {
-        private UUID player;
-        private String queryString;
-
-        public CompiledUniqueKey(UUID player, String queryString) {
-            this.player = player;
-            this.queryString = queryString;
-        }
+    record CompiledUniqueKey(@NotNull UUID player, @NotNull String queryString) {
     }
 }
@@ -6,6 +6,7 @@ import com.ghostchu.quickshop.api.economy.Benefit;
 import com.ghostchu.quickshop.api.event.*;
 import com.ghostchu.quickshop.api.inventory.InventoryWrapper;
 import com.ghostchu.quickshop.api.inventory.InventoryWrapperManager;
+import com.ghostchu.quickshop.api.inventory.InventoryWrapperType;
 import com.ghostchu.quickshop.api.localization.text.ProxiedLocale;
 import com.ghostchu.quickshop.api.serialize.BlockPos;
 import com.ghostchu.quickshop.api.shop.Shop;
@@ -26,6 +27,8 @@ import com.ghostchu.quickshop.util.MsgUtil;
 import com.ghostchu.quickshop.util.Util;
 import com.ghostchu.quickshop.util.logger.Log;
 import com.ghostchu.quickshop.util.logging.container.ShopRemoveLog;
+import com.ghostchu.quickshop.util.matcher.item.ItemFingerprint;
+import com.ghostchu.quickshop.util.matcher.item.QuickShopItemMatcherImpl;
 import com.ghostchu.simplereloadlib.ReloadResult;
 import com.ghostchu.simplereloadlib.Reloadable;
 import com.google.common.collect.ImmutableList;
@@ -61,6 +64,7 @@ import java.util.logging.Level;
  */
 @EqualsAndHashCode
 public class ContainerShop implements Shop, Reloadable {
+    private static final int STALE_COUNTER = Integer.MIN_VALUE;
     // We use deprecated method to create a fake quickshop-reremake namespace to trick bukkit to access legacy data.
     @SuppressWarnings({"AliDeprecation", "deprecation"})
     private static final NamespacedKey LEGACY_SHOP_NAMESPACED_KEY = new NamespacedKey("quickshop", "shopsign");
@@ -118,6 +122,19 @@ public class ContainerShop implements Shop, Reloadable {
 
     @NotNull
     private Benefit benefit;
+    /* Cached inventory counters, STALE_COUNTER means a full rescan is required */
+    @EqualsAndHashCode.Exclude
+    private int cachedStock = STALE_COUNTER;
+    /* Bumped on any change affects the authorize results, invalidates the memoized results */
+    @EqualsAndHashCode.Exclude
+    private volatile long permissionVersion;
+    @EqualsAndHashCode.Exclude
+    private int cachedSpace = STALE_COUNTER;
+    @EqualsAndHashCode.Exclude
+    private volatile ItemFingerprint itemFingerprint;
+    /* Increased when anything on the sign may changed, except the stock and space */
+    @EqualsAndHashCode.Exclude
+    private volatile long signContentVersion;
 
     ContainerShop(@NotNull ContainerShop s) {
         Util.ensureThread(false);
@@ -284,6 +301,7 @@ public class ContainerShop implements Shop, Reloadable {
             Objects.requireNonNull(inv).addItem(item);
             remains -= stackSize;
         }
+        invalidateInventoryCounters();
         this.setSignText();
     }
 
@@ -343,11 +361,13 @@ public class ContainerShop implements Shop, Reloadable {
                     .amount(amount)
                     .build();
             if (!transaction.failSafeCommit()) {
+                invalidateInventoryCounters();
                 if (plugin.getSentryErrorReporter() != null) {
                     plugin.getSentryErrorReporter().ignoreThrow();
                 }
                 throw new IllegalStateException("Failed to commit transaction! Economy Error Response:" + transaction.getLastError());
             }
+            adjustInventoryCounters(amount);
         }
         //Update sign
         this.setSignText(plugin.text().findRelativeLanguages(buyer));
@@ -418,6 +438,7 @@ public class ContainerShop implements Shop, Reloadable {
     public void clearStaffs() {
         Util.ensureThread(false);
         this.playersCanAuthorize(BuiltInShopPermissionGroup.STAFF).forEach(this.playerGroup::remove);
+        this.permissionVersion++;
         setDirty();
     }
 
@@ -611,6 +632,8 @@ public class ContainerShop implements Shop, Reloadable {
      */
     @Override
     public @NotNull ItemStack getItem() {
+        // The caller may change the returned stack, the fingerprint will be created again on next matching
+        this.itemFingerprint = null;
         return item;
     }
 
@@ -624,6 +647,9 @@ public class ContainerShop implements Shop, Reloadable {
         }
         this.item = item;
         this.originalItem = item;
+        this.itemFingerprint = null;
+        invalidateInventoryCounters();
+        ((SimpleShopManager) plugin.getShopManager()).notifyShopItemChanged(this);
         notifyDisplayItemChange();
         setDirty();
         refresh();
@@ -671,7 +697,11 @@ public class ContainerShop implements Shop, Reloadable {
         if (this.owner.equals(owner)) {
             return;
         }
+        UUID oldOwner = this.owner;
         this.owner = owner;
+        this.signContentVersion++;
+        this.permissionVersion++;
+        ((SimpleShopManager) plugin.getShopManager()).notifyShopOwnerChanged(this, oldOwner);
         setSignText(plugin.getTextManager().findRelativeLanguages(owner));
     }
 
@@ -747,9 +777,13 @@ public class ContainerShop implements Shop, Reloadable {
             Log.debug("Failed to calc RemainingSpace for shop " + this + ": Inventory null.");
             return 0;
         }
+        if (cachedSpace != STALE_COUNTER && isInventoryTracked()) {
+            return cachedSpace;
+        }
         int space = Util.countSpace(this.getInventory(), this);
+        cachedSpace = space;
         new ShopInventoryCalculateEvent(this, space, -1).callEvent();
-        Log.debug("Space count is: " + space);
+        Log.debug("Space count is: {}", space);
         return space;
     }
 
@@ -768,11 +802,64 @@ public class ContainerShop implements Shop, Reloadable {
             Log.debug("Failed to calc RemainingStock for shop " + this + ": Inventory null.");
             return 0;
         }
+        if (cachedStock != STALE_COUNTER && isInventoryTracked()) {
+            return cachedStock;
+        }
         int stock = Util.countItems(this.getInventory(), this);
+        cachedStock = stock;
         new ShopInventoryCalculateEvent(this, -1, stock).callEvent();
         return stock;
     }
 
+    /**
+     * Checks if the changes of shop inventory can be tracked by the inventory events, so the counters can be cached.
+     * The plugin inventories are modified without any event, they are always rescanned.
+     *
+     * @return true if the inventory changes tracked
+     */
+    private boolean isInventoryTracked() {
+        InventoryWrapper inventory = this.getInventory();
+        return inventory != null && inventory.getInventoryType() == InventoryWrapperType.BUKKIT;
+    }
+
+    /**
+     * Marks the cached stock and space counters as stale, next query will rescan the inventory.
+     * Call this after the shop inventory modified outside the shop transactions.
+     */
+    public void invalidateInventoryCounters() {
+        this.cachedStock = STALE_COUNTER;
+        this.cachedSpace = STALE_COUNTER;
+        // Shops on the same double chest sharing the inventory
+        if (attachedShop != null) {
+            attachedShop.cachedStock = STALE_COUNTER;
+            attachedShop.cachedSpace = STALE_COUNTER;
+        }
+    }
+
+    /**
+     * Adjusts the cached counters after a committed transaction on shop inventory
+     *
+     * @param itemDelta The amount of items moved into (positive) or out of (negative) the inventory
+     */
+    private void adjustInventoryCounters(int itemDelta) {
+        if (attachedShop != null) {
+            // The attached shop may trading another item, let it rescan
+            attachedShop.cachedStock = STALE_COUNTER;
+            attachedShop.cachedSpace = STALE_COUNTER;
+        }
+        // The counters are counted in shop bundles (items / item amount)
+        int bundleSize = item.getAmount();
+        if (cachedStock == STALE_COUNTER || cachedSpace == STALE_COUNTER || bundleSize <= 0 || itemDelta % bundleSize != 0) {
+            invalidateInventoryCounters();
+            return;
+        }
+        int stockDelta = itemDelta / bundleSize;
+        cachedStock = Math.max(0, cachedStock + stockDelta);
+        cachedSpace = Math.max(0, cachedSpace - stockDelta);
+        // Keep the listeners (e.g. external cache) updated as the rescan does
+        new ShopInventoryCalculateEvent(this, cachedSpace, cachedStock).callEvent();
+    }
+
     /**
      * WARNING: This UUID will changed after plugin reload, shop reload or server restart DO NOT USE
      * IT TO STORE DATA!
@@ -795,6 +882,7 @@ public class ContainerShop implements Shop, Reloadable {
             throw new IllegalStateException("Cannot set shop id once it fully created.");
         }
         this.shopId = newId;
+        ((SimpleShopManager) plugin.getShopManager()).notifyShopIdAssigned(this);
     }
 
     /**
@@ -1196,6 +1284,7 @@ public class ContainerShop implements Shop, Reloadable {
         }
         Util.ensureThread(false);
         this.unlimited = unlimited;
+        invalidateInventoryCounters();
         setDirty();
         this.setSignText();
     }
@@ -1225,6 +1314,14 @@ public class ContainerShop implements Shop, Reloadable {
         if (item == null) {
             return false;
         }
+        if (plugin.getItemMatcher() instanceof QuickShopItemMatcherImpl matcher) {
+            ItemFingerprint fingerprint = this.itemFingerprint;
+            if (fingerprint == null) {
+                fingerprint = matcher.fingerprint(this.item);
+                this.itemFingerprint = fingerprint;
+            }
+            return matcher.matches(fingerprint, this.item, item);
+        }
         ItemStack givenItem = item.clone();
         givenItem.setAmount(1);
         ItemStack shopItem = this.item.clone();
@@ -1254,12 +1351,12 @@ public class ContainerShop implements Shop, Reloadable {
             Log.debug("Dupe load request, canceled.");
             return;
         }
-        Map<Location, Shop> shopsInChunk = plugin.getShopManager().getShops(getLocation().getChunk());
-        if (shopsInChunk == null || !shopsInChunk.containsValue(this)) {
+        if (plugin.getShopManager().getShop(getLocation(), true) != this) {
             throw new IllegalStateException("Shop must register into ShopManager before loading.");
         }
         try {
             inventoryWrapper = locateInventory(symbolLink);
+            invalidateInventoryCounters();
         } catch (Exception e) {
             plugin.getLogger().warning("Failed to load shop: " + symbolLink + ": " + e.getClass().getName() + ": " + e.getMessage());
             if (plugin.getConfig().getBoolean("debug.delete-corrupt-shops")) {
@@ -1277,7 +1374,11 @@ public class ContainerShop implements Shop, Reloadable {
         this.isLoaded = true;
         //Shop manager done this already
         plugin.getShopManager().getLoadedShops().add(this);
+        ((SimpleShopManager) plugin.getShopManager()).notifyShopLoadStateChanged(this, true);
         plugin.getShopContainerWatcher().scheduleCheck(this);
+        if (plugin.getSignUpdateWatcher() != null) {
+            plugin.getSignUpdateWatcher().onShopLoaded(this);
+        }
         checkDisplay();
     }
 
@@ -1299,6 +1400,7 @@ public class ContainerShop implements Shop, Reloadable {
         }
         this.isLoaded = false;
         plugin.getShopManager().getLoadedShops().remove(this);
+        ((SimpleShopManager) plugin.getShopManager()).notifyShopLoadStateChanged(this, false);
         new ShopUnloadEvent(this).callEvent();
     }
 
@@ -1350,15 +1452,25 @@ public class ContainerShop implements Shop, Reloadable {
     @Override
     public boolean playerAuthorize(@NotNull UUID player, @NotNull Plugin namespace, @NotNull String permission) {
         if (player.equals(getOwner())) {
-            Log.permission("Check permission " + namespace.getName().toLowerCase(Locale.ROOT) + "." + permission + " for " + player + " -> " + "true");
+            Log.permission(() -> "Check permission " + namespace.getName().toLowerCase(Locale.ROOT) + "." + permission + " for " + player + " -> " + "true");
             return true;
         }
+        SimpleShopPermissionManager permissionManager = plugin.getShopPermissionManager();
+        int permissionId = permissionManager.getPermissionId(namespace, permission);
+        long shopPermissionVer = this.permissionVersion;
+        Boolean cached = permissionManager.getCachedAuthorize(runtimeRandomUniqueId, shopPermissionVer, player, permissionId);
+        if (cached != null) {
+            return cached;
+        }
+        long version = permissionManager.getVersion();
         String group = getPlayerGroup(player);
-        boolean r = plugin.getShopPermissionManager().hasPermission(group, namespace, permission);
+        boolean r = permissionManager.hasPermission(group, namespace, permission);
         ShopAuthorizeCalculateEvent event = new ShopAuthorizeCalculateEvent(this, player, namespace, permission, r);
         event.callEvent();
-        Log.permission("Check permission " + namespace.getName().toLowerCase(Locale.ROOT) + "." + permission + ": " + player + " -> " + event.getResult());
-        return event.getResult();
+        boolean result = event.getResult();
+        permissionManager.cacheAuthorize(runtimeRandomUniqueId, shopPermissionVer, player, permissionId, version, result);
+        Log.permission(() -> "Check permission " + namespace.getName().toLowerCase(Locale.ROOT) + "." + permission + ": " + player + " -> " + result);
+        return result;
 
     }
 
@@ -1461,6 +1573,7 @@ public class ContainerShop implements Shop, Reloadable {
             Objects.requireNonNull(inv).removeItem(item);
             remains -= stackSize;
         }
+        invalidateInventoryCounters();
         this.setSignText();
     }
 
@@ -1526,11 +1639,13 @@ public class ContainerShop implements Shop, Reloadable {
                     .amount(amount)
                     .build();
             if (!transactionTake.failSafeCommit()) {
+                invalidateInventoryCounters();
                 if (plugin.getSentryErrorReporter() != null) {
                     plugin.getSentryErrorReporter().ignoreThrow();
                 }
                 throw new IllegalStateException("Failed to commit transaction! Economy Error Response:" + transactionTake.getLastError());
             }
+            adjustInventoryCounters(-amount);
             this.setSignText(plugin.getTextManager().findRelativeLanguages(seller));
             if (attachedShop != null) {
                 attachedShop.setSignText(plugin.getTextManager().findRelativeLanguages(seller));
@@ -1541,6 +1656,17 @@ public class ContainerShop implements Shop, Reloadable {
     @Override
     public void setDirty() {
         this.dirty = true;
+        this.signContentVersion++;
+    }
+
+    /**
+     * Gets the version of sign contents, the rendered sign text can be reused while the version
+     * and the remaining stock/space not changed.
+     *
+     * @return The sign content version
+     */
+    public long getSignContentVersion() {
+        return signContentVersion;
     }
 
     /**
@@ -1563,6 +1689,7 @@ public class ContainerShop implements Shop, Reloadable {
         }
         this.inventoryWrapper = wrapper;
         this.inventoryWrapperProvider = provider;
+        invalidateInventoryCounters();
         this.symbolLink = manager.mklink(wrapper);
         setDirty();
         Log.debug("Inventory changed: " + this.symbolLink + ", wrapper provider:" + inventoryWrapperProvider);
@@ -1580,6 +1707,7 @@ public class ContainerShop implements Shop, Reloadable {
         } else {
             this.playerGroup.put(player, group);
         }
+        this.permissionVersion++;
         setDirty();
     }
 
@@ -1591,6 +1719,7 @@ public class ContainerShop implements Shop, Reloadable {
         new ShopPlayerGroupSetEvent(this, player, getPlayerGroup(player), group.getNamespacedNode()).callEvent();
         if (group == BuiltInShopPermissionGroup.EVERYONE) {
             this.playerGroup.remove(player);
+            this.permissionVersion++;
         } else {
             setPlayerGroup(player, group.getNamespacedNode());
         }
@@ -1618,6 +1747,7 @@ public class ContainerShop implements Shop, Reloadable {
     public void setSignText(@NotNull List<Component> lines) {
         Util.ensureThread(false);
         Log.debug("Globally sign text setting...");
+        this.signContentVersion++;
         List<Sign> signs = this.getSigns();
         for (Sign sign : signs) {
             for (int i = 0; i < lines.size(); i++) {
@@ -1689,6 +1819,46 @@ public class ContainerShop implements Shop, Reloadable {
                 });
     }
 
+    /**
+     * Prepares the shop for a batched database update, the caller must call {@link #completeBatchUpdate(Throwable)}
+     * after the returned data record saved.
+     *
+     * @return The data record to save, or null if the shop shouldn't be saved now
+     */
+    @Nullable
+    public SimpleDataRecord beginBatchUpdate() {
+        // Warning! This method can be run in async thread.
+        if (updating) {
+            return null;
+        }
+        if (this.shopId == -1) {
+            Log.debug("Skip shop database update because it not fully setup!");
+            return null;
+        }
+        ShopUpdateEvent shopUpdateEvent = new ShopUpdateEvent(this);
+        if (Util.fireCancellableEvent(shopUpdateEvent)) {
+            Log.debug("The Shop update action was canceled by a plugin.");
+            return null;
+        }
+        updating = true;
+        return createDataRecord();
+    }
+
+    /**
+     * Completes the batched database update started by {@link #beginBatchUpdate()}
+     *
+     * @param throwable The error if failed to save, null if success
+     */
+    public void completeBatchUpdate(@Nullable Throwable throwable) {
+        updating = false;
+        if (throwable == null) {
+            this.dirty = false;
+        } else {
+            plugin.getLogger().log(Level.WARNING,
+                    "Could not update a shop in the database! Changes will revert after a reboot!", throwable);
+        }
+    }
+
     /**
      * Updates the attachedShop variable to reflect the currently attached shop, if any.
      * Also updates the left shop status.
@@ -1840,6 +2010,10 @@ public class ContainerShop implements Shop, Reloadable {
         } else {
             this.item.setAmount(this.originalItem.getAmount());
         }
+        // Matcher settings may changed
+        this.itemFingerprint = null;
+        this.signContentVersion++;
+        invalidateInventoryCounters();
         return Reloadable.super.reloadModule();
     }
 
@@ -7,34 +7,43 @@ import com.ghostchu.quickshop.api.database.bean.ShopRecord;
 import com.ghostchu.quickshop.api.economy.Benefit;
 import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.api.shop.ShopType;
+import com.ghostchu.quickshop.common.util.QuickExecutor;
 import com.ghostchu.quickshop.common.util.Timer;
+import com.ghostchu.quickshop.database.SimpleDatabaseHelperV2;
 import com.ghostchu.quickshop.economy.SimpleBenefit;
+import com.ghostchu.quickshop.shop.index.ShopSpatialIndex;
 import com.ghostchu.quickshop.util.JsonUtil;
 import com.ghostchu.quickshop.util.MsgUtil;
 import com.ghostchu.quickshop.util.Util;
 import com.ghostchu.quickshop.util.logger.Log;
+import com.google.common.collect.Lists;
 import com.google.common.reflect.TypeToken;
 import lombok.Getter;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitRunnable;
 import org.enginehub.squirrelid.Profile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Type;
 import java.sql.ResultSet;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -43,6 +52,7 @@ import java.util.logging.Logger;
  */
 public class ShopLoader {
 
+    private static final int LOAD_BATCH_SIZE = 500;
     private final QuickShop plugin;
     /* This may contains broken shop, must use null check before load it. */
     private int errors;
@@ -56,119 +66,228 @@ public class ShopLoader {
         this.plugin = plugin;
     }
 
+    /**
+     * Load all shops, only for the startup.
+     * <p>
+     * The server thread isn't ticking while the plugin enabling, so it waits for the batches and loads them
+     * at once, the shops must be ready before the players join. Use {@link #loadShopsAsync(String)} after startup.
+     *
+     * @see #loadShopsAsync(String)
+     */
     public void loadShops() {
-        loadShops(null);
+        LoadingTask loading = new LoadingTask(null);
+        try {
+            while (!loading.isDone()) {
+                loading.publish(loading.deserialized.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            plugin.getLogger().log(Level.WARNING, "Interrupted while loading shops, some shops may not be loaded.", e);
+        }
+        loading.finish();
     }
 
     /**
-     * Load all shops in the specified world
+     * Load all shops in the specified world, without blocking the server thread.
+     * <p>
+     * Rows are streamed from database in batches on the database executor, each batch will be
+     * deserialized on the common executor, and only the Bukkit related work will be done on the server thread,
+     * by a task limited to shop.hydrate-tick-budget-ms per tick.
+     * Shops in chunks that not loaded yet are kept as cold shops and will be hydrated when their chunk
+     * loaded or when someone asks for them, see {@link SimpleShopManager#hydrateChunk(String, int, int)}.
      *
      * @param worldName The world name, null if load all shops
+     * @return The future completes on the server thread after all shops loaded
      */
-    public void loadShops(@Nullable String worldName) {
-        List<Shop> pendingLoading = new CopyOnWriteArrayList<>();
-        boolean deleteCorruptShops = plugin.getConfig().getBoolean("debug.delete-corrupt-shops", false);
-        plugin.getLogger().info("Loading shops from database...");
-        Timer dbFetchTimer = new Timer(true);
-        List<ShopRecord> records = plugin.getDatabaseHelper().listShops(deleteCorruptShops);
-        plugin.getLogger().info("Used " + dbFetchTimer.stopAndGetTimePassed() + "ms to fetch " + records.size() + " shops from database.");
-        plugin.getLogger().info("Loading shops into memory...");
-        Timer shopTotalTimer = new Timer(true);
-        AtomicInteger successCounter = new AtomicInteger(0);
-        for (ShopRecord shopRecord : records) {
-            Timer singleShopLoadingTimer = new Timer(true);
-            InfoRecord infoRecord = shopRecord.getInfoRecord();
-            DataRecord dataRecord = shopRecord.getDataRecord();
-            // World check
-            if (worldName != null) {
-                if (!worldName.equals(infoRecord.getWorld())) {
-                    Log.timing("Single shop loading: worldName skipped", singleShopLoadingTimer);
-                    continue;
+    @NotNull
+    public CompletableFuture<Void> loadShopsAsync(@Nullable String worldName) {
+        LoadingTask loading = new LoadingTask(worldName);
+        long budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, plugin.getConfig().getInt("shop.hydrate-tick-budget-ms", 5)));
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                long deadline = System.nanoTime() + budgetNanos;
+                List<LoadingShop> batch;
+                while ((batch = loading.deserialized.poll()) != null) {
+                    loading.publish(batch);
+                    if (System.nanoTime() >= deadline) {
+                        return;
+                    }
+                }
+                if (loading.isDone()) {
+                    cancel();
+                    loading.finish();
                 }
             }
-            if (dataRecord.getInventorySymbolLink() != null
-                    && !dataRecord.getInventoryWrapper().isEmpty()
-                    && plugin.getInventoryWrapperRegistry().get(dataRecord.getInventoryWrapper()) == null) {
-                Log.debug("InventoryWrapperProvider not exists! Shop won't be loaded!");
-                Log.timing("Single shop loading: InventoryWrapperProvider skipped", singleShopLoadingTimer);
-                continue;
-            }
-            String world = infoRecord.getWorld();
-            // Check if world loaded.
-            if (Bukkit.getWorld(world) == null) {
-                Log.timing("Single shop loading: Bukkit world not exists", singleShopLoadingTimer);
-                continue;
+        }.runTaskTimer(plugin, 1, 1);
+        return loading.future;
+    }
+
+    @NotNull
+    private Map<String, LongSet> snapshotLoadedChunks() {
+        Map<String, LongSet> loadedChunks = new HashMap<>();
+        for (World world : Bukkit.getWorlds()) {
+            LongSet chunks = new LongOpenHashSet();
+            for (Chunk chunk : world.getLoadedChunks()) {
+                chunks.add(ShopSpatialIndex.chunkKey(chunk.getX(), chunk.getZ()));
             }
-            int x = infoRecord.getX();
-            int y = infoRecord.getY();
-            int z = infoRecord.getZ();
-            Shop shop;
-            DataRawDatabaseInfo rawInfo = new DataRawDatabaseInfo(shopRecord.getDataRecord());
+            loadedChunks.put(world.getName(), chunks);
+        }
+        return loadedChunks;
+    }
+
+    private boolean loadColdShop(@NotNull ShopRecord shopRecord, boolean deleteCorruptShops, @NotNull List<Shop> pendingLoading) {
+        InfoRecord infoRecord = shopRecord.getInfoRecord();
+        World world = Bukkit.getWorld(infoRecord.getWorld());
+        if (world == null) {
+            return false;
+        }
+        // The chunk may be loaded after the snapshot taken, hydrate it now since no ChunkLoadEvent will come
+        if (world.isChunkLoaded(infoRecord.getX() >> 4, infoRecord.getZ() >> 4)) {
+            return loadShop(deserialize(shopRecord), deleteCorruptShops, pendingLoading) != null;
+        }
+        ((SimpleShopManager) plugin.getShopManager()).addColdShop(shopRecord);
+        return true;
+    }
+
+    /**
+     * Hydrates a cold shop into a ContainerShop and loads it into the ShopManager
+     *
+     * @param shopRecord The cold shop record
+     * @return The hydrated shop, null if the shop failed to load
+     */
+    @Nullable
+    Shop hydrateShop(@NotNull ShopRecord shopRecord) {
+        Util.ensureThread(false);
+        boolean deleteCorruptShops = plugin.getConfig().getBoolean("debug.delete-corrupt-shops", false);
+        return loadShop(deserialize(shopRecord), deleteCorruptShops, null);
+    }
+
+    private int streamShopRecords(boolean deleteCorruptShops, @NotNull Consumer<List<ShopRecord>> consumer) {
+        if (plugin.getDatabaseHelper() instanceof SimpleDatabaseHelperV2 databaseHelper) {
             try {
-                shop = new ContainerShop(plugin,
-                        infoRecord.getShopId(),
-                        new Location(Bukkit.getWorld(world), x, y, z),
-                        rawInfo.getPrice(),
-                        rawInfo.getItem(),
-                        rawInfo.getOwner(),
-                        rawInfo.isUnlimited(),
-                        rawInfo.getType(),
-                        rawInfo.getExtra(),
-                        rawInfo.getCurrency(),
-                        rawInfo.isHologram(),
-                        rawInfo.getTaxAccount(),
-                        rawInfo.getInvWrapper(),
-                        rawInfo.getInvSymbolLink(),
-                        rawInfo.getName(),
-                        rawInfo.getPermissions(),
-                        rawInfo.getBenefits());
-            } catch (Exception e) {
-                if (e instanceof IllegalStateException) {
-                    plugin.getLogger().log(Level.WARNING, "Failed to load the shop, skipping...", e);
+                return databaseHelper.streamShops(LOAD_BATCH_SIZE, consumer);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }
+        List<ShopRecord> records = plugin.getDatabaseHelper().listShops(deleteCorruptShops);
+        Lists.partition(records, LOAD_BATCH_SIZE).forEach(consumer);
+        return records.size();
+    }
+
+    @NotNull
+    private List<LoadingShop> deserializeBatch(@NotNull List<ShopRecord> batch, @Nullable String worldName, @NotNull Map<String, LongSet> loadedChunks, @NotNull AtomicLong deserializeTime) {
+        long begin = System.nanoTime();
+        List<LoadingShop> result = new ArrayList<>(batch.size());
+        try {
+            for (ShopRecord shopRecord : batch) {
+                // World check
+                if (worldName != null && !worldName.equals(shopRecord.getInfoRecord().getWorld())) {
+                    continue;
                 }
-                exceptionHandler(e, null);
-                if (deleteCorruptShops && plugin.getShopBackupUtil().isBreakingAllowed()) {
-                    plugin.getLogger().warning(MsgUtil.fillArgs("Deleting shop at world={0} x={1} y={2} z={3} caused by corrupted.", world, String.valueOf(x), String.valueOf(y), String.valueOf(z)));
-                    plugin.getDatabaseHelper().removeShopMap(world, x, y, z);
+                InfoRecord infoRecord = shopRecord.getInfoRecord();
+                LongSet chunks = loadedChunks.get(infoRecord.getWorld());
+                if (chunks == null || !chunks.contains(ShopSpatialIndex.chunkKey(infoRecord.getX() >> 4, infoRecord.getZ() >> 4))) {
+                    result.add(new LoadingShop(shopRecord, null, null));
+                    continue;
                 }
-                Log.timing("Single shop loading: Shop loading exception", singleShopLoadingTimer);
-                continue;
+                result.add(deserialize(shopRecord));
             }
-            Location shopLocation = shop.getLocation();
-            // Dirty check
-            if (rawInfo.isNeedUpdate()) {
-                shop.setDirty();
+        } finally {
+            deserializeTime.addAndGet(System.nanoTime() - begin);
+        }
+        return result;
+    }
+
+    @NotNull
+    private LoadingShop deserialize(@NotNull ShopRecord shopRecord) {
+        try {
+            return new LoadingShop(shopRecord, new DataRawDatabaseInfo(shopRecord.getDataRecord()), null);
+        } catch (Exception e) {
+            return new LoadingShop(shopRecord, null, e);
+        }
+    }
+
+    @Nullable
+    private Shop loadShop(@NotNull LoadingShop loadingShop, boolean deleteCorruptShops, @Nullable List<Shop> pendingLoading) {
+        Timer singleShopLoadingTimer = new Timer(true);
+        InfoRecord infoRecord = loadingShop.shopRecord().getInfoRecord();
+        DataRecord dataRecord = loadingShop.shopRecord().getDataRecord();
+        if (dataRecord.getInventorySymbolLink() != null
+                && !dataRecord.getInventoryWrapper().isEmpty()
+                && plugin.getInventoryWrapperRegistry().get(dataRecord.getInventoryWrapper()) == null) {
+            Log.debug("InventoryWrapperProvider not exists! Shop won't be loaded!");
+            Log.timing("Single shop loading: InventoryWrapperProvider skipped", singleShopLoadingTimer);
+            return null;
+        }
+        String world = infoRecord.getWorld();
+        // Check if world loaded.
+        World bukkitWorld = Bukkit.getWorld(world);
+        if (bukkitWorld == null) {
+            Log.timing("Single shop loading: Bukkit world not exists", singleShopLoadingTimer);
+            return null;
+        }
+        int x = infoRecord.getX();
+        int y = infoRecord.getY();
+        int z = infoRecord.getZ();
+        Shop shop;
+        DataRawDatabaseInfo rawInfo = loadingShop.rawInfo();
+        try {
+            if (loadingShop.exception() != null) {
+                throw loadingShop.exception();
             }
-            // Null check
-            if (shopNullCheck(shop)) {
-                Log.timing("Single shop loading: Shop null check failed", singleShopLoadingTimer);
-                continue;
+            shop = new ContainerShop(plugin,
+                    infoRecord.getShopId(),
+                    new Location(bukkitWorld, x, y, z),
+                    rawInfo.getPrice(),
+                    rawInfo.getItem(),
+                    rawInfo.getOwner(),
+                    rawInfo.isUnlimited(),
+                    rawInfo.getType(),
+                    rawInfo.getExtra(),
+                    rawInfo.getCurrency(),
+                    rawInfo.isHologram(),
+                    rawInfo.getTaxAccount(),
+                    rawInfo.getInvWrapper(),
+                    rawInfo.getInvSymbolLink(),
+                    rawInfo.getName(),
+                    rawInfo.getPermissions(),
+                    rawInfo.getBenefits());
+        } catch (Exception e) {
+            if (e instanceof IllegalStateException) {
+                plugin.getLogger().log(Level.WARNING, "Failed to load the shop, skipping...", e);
             }
-            // Load to RAM
-            plugin.getShopManager().loadShop(shopLocation.getWorld().getName(), shop);
-            if (Util.isLoaded(shopLocation)) {
-                // Load to World
-                if (!Util.canBeShop(shopLocation.getBlock())) {
-                    plugin.getShopManager().removeShop(shop); // Remove from Mem
-                } else {
-                    pendingLoading.add(shop);
-                }
+            exceptionHandler(e, null);
+            if (deleteCorruptShops && plugin.getShopBackupUtil().isBreakingAllowed()) {
+                plugin.getLogger().warning(MsgUtil.fillArgs("Deleting shop at world={0} x={1} y={2} z={3} caused by corrupted.", world, String.valueOf(x), String.valueOf(y), String.valueOf(z)));
+                plugin.getDatabaseHelper().removeShopMap(world, x, y, z);
             }
-            successCounter.incrementAndGet();
+            Log.timing("Single shop loading: Shop loading exception", singleShopLoadingTimer);
+            return null;
         }
-
-        plugin.getLogger().info("Done. Used " + shopTotalTimer.stopAndGetTimePassed() + "ms to load " + successCounter.get() + " shops into memory.");
-
-        Bukkit.getScheduler().runTaskLater(plugin, () -> {
-            for (Shop shop : pendingLoading) {
-                try {
-                    shop.onLoad();
-                } catch (Exception exception) {
-                    exceptionHandler(exception, shop.getLocation());
-                }
+        Location shopLocation = shop.getLocation();
+        // Dirty check
+        if (rawInfo.isNeedUpdate()) {
+            shop.setDirty();
+        }
+        // Null check
+        if (shopNullCheck(shop)) {
+            Log.timing("Single shop loading: Shop null check failed", singleShopLoadingTimer);
+            return null;
+        }
+        // Load to RAM
+        plugin.getShopManager().loadShop(shopLocation.getWorld().getName(), shop);
+        if (Util.isLoaded(shopLocation)) {
+            // Load to World
+            if (!Util.canBeShop(shopLocation.getBlock())) {
+                plugin.getShopManager().removeShop(shop); // Remove from Mem
+                return null;
+            } else if (pendingLoading != null) {
+                pendingLoading.add(shop);
             }
-            Log.debug("All pending shops now loaded (schedule).");
-        }, 1);
+        }
+        return shop;
     }
 
     private void exceptionHandler(@NotNull Exception ex, @Nullable Location shopLocation) {
@@ -223,6 +342,111 @@ public class ShopLoader {
         return false;
     }
 
+    /**
+     * A run of shop loading, the batches are published by the server thread in the order they deserialized.
+     */
+    private class LoadingTask {
+        /* Published by the fetcher after all batches submitted */
+        private static final List<LoadingShop> FETCH_COMPLETED = new ArrayList<>(0);
+        private final boolean deleteCorruptShops = plugin.getConfig().getBoolean("debug.delete-corrupt-shops", false);
+        private final List<Shop> pendingLoading = new ArrayList<>();
+        private final Timer shopTotalTimer = new Timer(true);
+        private final BlockingQueue<List<LoadingShop>> deserialized = new LinkedBlockingQueue<>();
+        private final AtomicInteger submittedBatches = new AtomicInteger(0);
+        private final AtomicLong fetchTime = new AtomicLong(0);
+        private final AtomicLong deserializeTime = new AtomicLong(0);
+        private final CompletableFuture<Integer> fetchFuture;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        /* Server thread only */
+        private long publishTime;
+        private int successCount;
+        private int coldCount;
+        private int publishedBatches;
+        private boolean fetchCompleted;
+
+        private LoadingTask(@Nullable String worldName) {
+            plugin.getLogger().info("Loading shops from database...");
+            Map<String, LongSet> loadedChunks = snapshotLoadedChunks();
+            this.fetchFuture = CompletableFuture.supplyAsync(() -> {
+                Timer dbFetchTimer = new Timer(true);
+                int rows = streamShopRecords(deleteCorruptShops, batch -> {
+                    QuickExecutor.getCommonExecutor().execute(() -> {
+                        // Always publish a result, the loading only done after all submitted batches published
+                        List<LoadingShop> result = Collections.emptyList();
+                        try {
+                            result = deserializeBatch(batch, worldName, loadedChunks, deserializeTime);
+                        } catch (Throwable throwable) {
+                            plugin.getLogger().log(Level.WARNING, "Failed to deserialize a batch of " + batch.size() + " shops, these shops will not be loaded.", throwable);
+                        } finally {
+                            deserialized.add(result);
+                        }
+                    });
+                    submittedBatches.incrementAndGet();
+                });
+                fetchTime.set(dbFetchTimer.stopAndGetTimePassed());
+                return rows;
+            }, QuickExecutor.getDatabaseExecutor());
+            this.fetchFuture.whenComplete((rows, error) -> deserialized.add(FETCH_COMPLETED));
+        }
+
+        private boolean isDone() {
+            return fetchCompleted && publishedBatches >= submittedBatches.get();
+        }
+
+        private void publish(@NotNull List<LoadingShop> batch) {
+            if (batch == FETCH_COMPLETED) {
+                fetchCompleted = true;
+                return;
+            }
+            publishedBatches++;
+            Timer publishTimer = new Timer(true);
+            for (LoadingShop loadingShop : batch) {
+                if (loadingShop.isCold()) {
+                    if (loadColdShop(loadingShop.shopRecord(), deleteCorruptShops, pendingLoading)) {
+                        coldCount++;
+                    }
+                    continue;
+                }
+                if (loadShop(loadingShop, deleteCorruptShops, pendingLoading) != null) {
+                    successCount++;
+                }
+            }
+            publishTime += publishTimer.stopAndGetTimePassed();
+        }
+
+        private void finish() {
+            int fetched = 0;
+            try {
+                fetched = fetchFuture.getNow(0);
+            } catch (CompletionException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to fetch shops from database, some shops may not be loaded.", e.getCause());
+            }
+            plugin.getLogger().info("Used " + fetchTime.get() + "ms to fetch " + fetched + " shops from database, "
+                    + TimeUnit.NANOSECONDS.toMillis(deserializeTime.get()) + "ms (cpu) to deserialize and "
+                    + publishTime + "ms to load them on server thread.");
+            plugin.getLogger().info("Done. Used " + shopTotalTimer.stopAndGetTimePassed() + "ms to load " + successCount + " shops into memory, "
+                    + coldCount + " shops in unloaded chunks will be loaded on demand.");
+            Bukkit.getScheduler().runTaskLater(plugin, () -> {
+                for (Shop shop : pendingLoading) {
+                    try {
+                        shop.onLoad();
+                    } catch (Exception exception) {
+                        exceptionHandler(exception, shop.getLocation());
+                    }
+                }
+                Log.debug("All pending shops now loaded (schedule).");
+                future.complete(null);
+            }, 1);
+        }
+    }
+
+    private record LoadingShop(@NotNull ShopRecord shopRecord, @Nullable DataRawDatabaseInfo rawInfo,
+                               @Nullable Exception exception) {
+        private boolean isCold() {
+            return rawInfo == null && exception == null;
+        }
+    }
+
     @Getter
     @Setter
     public static class DataRawDatabaseInfo {
@@ -1,7 +1,7 @@
 package com.ghostchu.quickshop.shop;
 
 import com.ghostchu.quickshop.QuickShop;
-import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.api.shop.ShopSummary;
 import com.ghostchu.quickshop.common.util.CommonUtil;
 import com.ghostchu.quickshop.database.DatabaseIOUtil;
 import com.ghostchu.quickshop.database.SimpleDatabaseHelperV2;
@@ -18,6 +18,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 
@@ -57,13 +58,14 @@ public class ShopPurger {
 
         }
         plugin.getLogger().info("[Shop Purger] Scanning and removing shops....");
-        List<Shop> pendingRemovalShops = new ArrayList<>();
+        List<ShopSummary> pendingRemovalShops = new ArrayList<>();
         int days = plugin.getConfig().getInt("purge.days", 360);
         boolean deleteBanned = plugin.getConfig().getBoolean("purge.banned");
         boolean skipOp = plugin.getConfig().getBoolean("purge.skip-op");
         boolean returnCreationFee = plugin.getConfig().getBoolean("purge.return-create-fee");
-        for (Shop shop : plugin.getShopManager().getAllShops()) {
-            OfflinePlayer player = Bukkit.getOfflinePlayer(shop.getOwner());
+        // Filter by the summaries, only the shops need to purge will be hydrated
+        for (ShopSummary shop : plugin.getShopManager().getShopSummaries()) {
+            OfflinePlayer player = Bukkit.getOfflinePlayer(shop.owner());
             if (!player.hasPlayedBefore()) {
                 Log.debug("Shop " + shop + " detection skipped: Owner never played before.");
                 continue;
@@ -90,26 +92,31 @@ public class ShopPurger {
             pendingRemovalShops.add(shop);
         }
         if (!pendingRemovalShops.isEmpty()) {
-            plugin.getLogger().info("[Shop Purger] Found " + pendingRemovalShops.size() + " need to removed, will remove in the next tick.");
-            plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-                for (Shop shop : pendingRemovalShops) {
-                    shop.delete(false);
-                    if (returnCreationFee) {
-                        SimpleEconomyTransaction transaction =
-                                SimpleEconomyTransaction.builder()
-                                        .amount(plugin.getConfig().getDouble("shop.cost"))
-                                        .core(plugin.getEconomy())
-                                        .currency(shop.getCurrency())
-                                        .world(shop.getLocation().getWorld())
-                                        .to(shop.getOwner())
-                                        .build();
-                        transaction.failSafeCommit();
-                    }
-                    plugin.getLogger().info("[Shop Purger] Shop " + shop + " has been purged.");
+            plugin.getLogger().info("[Shop Purger] Found " + pendingRemovalShops.size() + " need to removed, will remove them across the next ticks.");
+            AtomicInteger purged = new AtomicInteger();
+            plugin.getShopManager().hydrateLazily(pendingRemovalShops, shop -> {
+                shop.delete(false);
+                if (returnCreationFee) {
+                    SimpleEconomyTransaction transaction =
+                            SimpleEconomyTransaction.builder()
+                                    .amount(plugin.getConfig().getDouble("shop.cost"))
+                                    .core(plugin.getEconomy())
+                                    .currency(shop.getCurrency())
+                                    .world(shop.getLocation().getWorld())
+                                    .to(shop.getOwner())
+                                    .build();
+                    transaction.failSafeCommit();
+                }
+                purged.incrementAndGet();
+                plugin.getLogger().info("[Shop Purger] Shop " + shop + " has been purged.");
+            }).whenComplete((v, e) -> {
+                if (e != null) {
+                    plugin.getLogger().log(Level.WARNING, "[Shop Purger] Task failed after " + purged.get() + " shops purged.", e);
+                } else {
+                    plugin.getLogger().info("[Shop Purger] Task completed, " + purged.get() + " shops was purged");
                 }
-                plugin.getLogger().info("[Shop Purger] Task completed, " + pendingRemovalShops.size() + " shops was purged");
                 executing = false;
-            }, 1L);
+            });
         } else {
             plugin.getLogger().info("[Shop Purger] Task completed, No shops need to purge.");
             executing = false;
@@ -18,6 +18,7 @@ import java.util.ArrayList;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 public class SimpleInventoryTransaction implements InventoryTransaction {
@@ -141,7 +142,7 @@ public class SimpleInventoryTransaction implements InventoryTransaction {
      */
     @Override
     public boolean failSafeCommit() {
-        Log.transaction("Transaction begin: FailSafe Commit --> " + from + " => " + to + "; Amount: " + amount + " Item: " + Util.serialize(item));
+        Log.transaction(describeBegin("FailSafe"));
         boolean result = commit();
         if (!result) {
             Log.transaction(Level.WARNING, "Fail-safe commit failed, starting rollback: " + lastError);
@@ -172,7 +173,7 @@ public class SimpleInventoryTransaction implements InventoryTransaction {
      */
     @Override
     public boolean commit(@NotNull TransactionCallback callback) {
-        Log.transaction("Transaction begin: Regular Commit --> " + from + " => " + to + "; Amount: " + amount + " Item: " + Util.serialize(item));
+        Log.transaction(describeBegin("Regular"));
         if (!callback.onCommit(this)) {
             this.lastError = "Plugin cancelled this transaction.";
             return false;
@@ -191,6 +192,21 @@ public class SimpleInventoryTransaction implements InventoryTransaction {
         return true;
     }
 
+    /**
+     * Creates the transaction begin message, the item only be serialized when the log record read
+     *
+     * @param commitType The commit type
+     * @return The message supplier
+     */
+    @NotNull
+    private Supplier<String> describeBegin(@NotNull String commitType) {
+        InventoryWrapper from = this.from;
+        InventoryWrapper to = this.to;
+        ItemStack item = this.item;
+        int amount = this.amount;
+        return () -> "Transaction begin: " + commitType + " Commit --> " + from + " => " + to + "; Amount: " + amount + " Item: " + Util.serialize(item);
+    }
+
     private boolean executeOperation(@NotNull Operation operation) {
         try {
             processingStack.push(operation); // Item is special, economy fail won't do anything but item does.
@@ -1,6 +1,8 @@
 package com.ghostchu.quickshop.shop;
 
 import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.api.database.bean.InfoRecord;
+import com.ghostchu.quickshop.api.database.bean.ShopRecord;
 import com.ghostchu.quickshop.api.economy.AbstractEconomy;
 import com.ghostchu.quickshop.api.event.*;
 import com.ghostchu.quickshop.api.inventory.InventoryWrapper;
@@ -10,8 +12,14 @@ import com.ghostchu.quickshop.api.shop.permission.BuiltInShopPermission;
 import com.ghostchu.quickshop.common.util.CalculateUtil;
 import com.ghostchu.quickshop.common.util.CommonUtil;
 import com.ghostchu.quickshop.common.util.RomanNumber;
+import com.ghostchu.quickshop.common.util.Timer;
 import com.ghostchu.quickshop.economy.SimpleBenefit;
 import com.ghostchu.quickshop.economy.SimpleEconomyTransaction;
+import com.ghostchu.quickshop.shop.index.ColdShopIndex;
+import com.ghostchu.quickshop.shop.index.ShopCounters;
+import com.ghostchu.quickshop.shop.index.ShopPresenceMap;
+import com.ghostchu.quickshop.shop.index.ShopSearchIndex;
+import com.ghostchu.quickshop.shop.index.ShopSpatialIndex;
 import com.ghostchu.quickshop.shop.inventory.BukkitInventoryWrapper;
 import com.ghostchu.quickshop.util.ChatSheetPrinter;
 import com.ghostchu.quickshop.util.MsgUtil;
@@ -24,10 +32,14 @@ import com.ghostchu.simplereloadlib.ReloadStatus;
 import com.ghostchu.simplereloadlib.Reloadable;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import io.papermc.lib.PaperLib;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import lombok.Getter;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.event.ClickEvent;
@@ -47,9 +59,11 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.PotionMeta;
+import org.bukkit.plugin.IllegalPluginAccessException;
 import org.bukkit.potion.PotionData;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
+import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -59,16 +73,32 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 /**
  * Manage a lot of shops.
  */
 public class SimpleShopManager implements ShopManager, Reloadable {
-
-    private final Map<String, Map<ShopChunk, Map<Location, Shop>>> shops = Maps.newConcurrentMap();
+    // Max seconds an async caller waits for the cold shops hydrated by server thread
+    private static final int HYDRATE_WAIT_SECONDS = 30;
+
+    private final ShopSpatialIndex shops = new ShopSpatialIndex();
+    /* Shops in unloaded chunks, kept as raw database records until someone needs them */
+    private final ColdShopIndex coldShops = new ColdShopIndex();
+    /* Chunks contain any hydrated or cold shop, for fast negative lookups from the nature events */
+    private final ShopPresenceMap presence = new ShopPresenceMap();
+    /* Hydrated shops searchable by /qs find */
+    @Getter
+    private final ShopSearchIndex searchIndex = new ShopSearchIndex();
+    /* Live counters for placeholders and statistics, including the cold shops */
+    private final ShopCounters counters = new ShopCounters();
 
     private final Set<Shop> loadedShops = Sets.newConcurrentHashSet();
+    /* Secondary indexes, kept in sync with the shops map in addShop/removeShop */
+    private final Long2ObjectMap<Shop> shopIdIndex = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
+    /* Owner -> (RuntimeRandomUniqueId -> Shop), keyed by runtime id since Shop#hashCode changes with its fields */
+    private final Map<UUID, Map<UUID, Shop>> ownerIndex = Maps.newConcurrentMap();
 
     private final InteractiveManager interactiveManager;
 
@@ -437,23 +467,114 @@ public class SimpleShopManager implements ShopManager, Reloadable {
      */
     @Override
     public void addShop(@NotNull String world, @NotNull Shop shop) {
-        Map<ShopChunk, Map<Location, Shop>> inWorld =
-                this.getShops()
-                        .computeIfAbsent(world, k -> new MapMaker().initialCapacity(3).makeMap());
-        // There's no world storage yet. We need to create that map.
-        // Put it in the data universe
-        // Calculate the chunks coordinates. These are 1,2,3 for each chunk, NOT
-        // location rounded to the nearest 16.
-        int x = (int) Math.floor((shop.getLocation().getBlockX()) / 16.0);
-        int z = (int) Math.floor((shop.getLocation().getBlockZ()) / 16.0);
-        // Get the chunk set from the world info
-        ShopChunk shopChunk = new SimpleShopChunk(world, x, z);
-        Map<Location, Shop> inChunk =
-                inWorld.computeIfAbsent(shopChunk, k -> new MapMaker().initialCapacity(1).makeMap());
-        // That chunk data hasn't been created yet - Create it!
-        // Put it in the world
-        // Put the shop in its location in the chunk list.
-        inChunk.put(shop.getLocation(), shop);
+        Shop previous = shops.put(world, shop);
+        if (previous == shop) {
+            indexShop(shop);
+            return;
+        }
+        if (previous != null) {
+            unindexShop(previous);
+            counters.registered(world, previous.getOwner(), -1);
+        } else {
+            presence.add(world, shop.getLocation().getBlockX() >> 4, shop.getLocation().getBlockZ() >> 4);
+        }
+        indexShop(shop);
+        counters.registered(world, shop.getOwner(), 1);
+    }
+
+    private void indexShop(@NotNull Shop shop) {
+        if (shop.getShopId() != -1) {
+            shopIdIndex.put(shop.getShopId(), shop);
+        }
+        ownerIndex.computeIfAbsent(shop.getOwner(), k -> Maps.newConcurrentMap())
+                .put(shop.getRuntimeRandomUniqueId(), shop);
+        searchIndex.put(shop);
+    }
+
+    private void unindexShop(@NotNull Shop shop) {
+        searchIndex.remove(shop);
+        if (shop.getShopId() != -1) {
+            synchronized (shopIdIndex) {
+                if (shopIdIndex.get(shop.getShopId()) == shop) {
+                    shopIdIndex.remove(shop.getShopId());
+                }
+            }
+        }
+        removeFromOwnerIndex(shop, shop.getOwner());
+    }
+
+    private boolean removeFromOwnerIndex(@NotNull Shop shop, @NotNull UUID owner) {
+        Map<UUID, Shop> owned = ownerIndex.get(owner);
+        if (owned == null || owned.remove(shop.getRuntimeRandomUniqueId()) == null) {
+            return false;
+        }
+        if (owned.isEmpty()) {
+            ownerIndex.remove(owner, owned);
+        }
+        return true;
+    }
+
+    /**
+     * Called by the shop after its owner changed, moves the shop to new owner's bucket in owner index.
+     *
+     * @param shop     The shop
+     * @param oldOwner The owner before the change
+     */
+    public void notifyShopOwnerChanged(@NotNull Shop shop, @NotNull UUID oldOwner) {
+        if (removeFromOwnerIndex(shop, oldOwner)) {
+            ownerIndex.computeIfAbsent(shop.getOwner(), k -> Maps.newConcurrentMap())
+                    .put(shop.getRuntimeRandomUniqueId(), shop);
+            counters.ownerChanged(oldOwner, shop.getOwner(), shop.isLoaded());
+        }
+    }
+
+    /**
+     * Called by the shop after its item changed, the shop will be indexed again for searching.
+     *
+     * @param shop The shop
+     */
+    public void notifyShopItemChanged(@NotNull Shop shop) {
+        searchIndex.invalidate(shop);
+    }
+
+    /**
+     * Called by the shop after it loaded or unloaded, updates the loaded shops counters.
+     *
+     * @param shop   The shop
+     * @param loaded true if the shop loaded, false if unloaded
+     */
+    public void notifyShopLoadStateChanged(@NotNull Shop shop, boolean loaded) {
+        World world = shop.getLocation().getWorld();
+        if (world == null) {
+            return;
+        }
+        counters.loaded(world.getName(), shop.getOwner(), loaded ? 1 : -1);
+    }
+
+    /**
+     * Gets the live shop counters, the counters including the cold shops.
+     *
+     * @return The shop counters
+     */
+    @NotNull
+    public ShopCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * Called by the shop after the database assigned an id to it, so it can be found by {@link #getShop(long)}.
+     *
+     * @param shop The shop
+     */
+    public void notifyShopIdAssigned(@NotNull Shop shop) {
+        if (shop.getShopId() == -1) {
+            return;
+        }
+        // Only shops still registered in memory should be indexed
+        Map<UUID, Shop> owned = ownerIndex.get(shop.getOwner());
+        if (owned != null && owned.get(shop.getRuntimeRandomUniqueId()) == shop) {
+            shopIdIndex.put(shop.getShopId(), shop);
+        }
     }
 
     @Override
@@ -461,6 +582,224 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         shopRuntimeUUIDCaching.put(shop.getRuntimeRandomUniqueId(), shop);
     }
 
+    /**
+     * Adds a cold shop, the shop will be hydrated when its chunk loaded or when it requested by API.
+     *
+     * @param shopRecord The raw shop record from database
+     */
+    public void addColdShop(@NotNull ShopRecord shopRecord) {
+        ShopRecord previous = coldShops.put(shopRecord);
+        if (previous != null) {
+            countColdShop(previous, -1);
+            searchIndex.removeCold(previous);
+        } else {
+            InfoRecord info = shopRecord.getInfoRecord();
+            presence.add(info.getWorld(), info.getX() >> 4, info.getZ() >> 4);
+        }
+        countColdShop(shopRecord, 1);
+        searchIndex.putCold(shopRecord);
+    }
+
+    private void countColdShop(@NotNull ShopRecord shopRecord, int delta) {
+        counters.registered(shopRecord.getInfoRecord().getWorld(), shopRecord.getDataRecord().getOwner(), delta);
+    }
+
+    /**
+     * Hydrates all cold shops in specific chunk, called when the chunk loaded.
+     *
+     * @param world  The world name
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     */
+    public void hydrateChunk(@NotNull String world, int chunkX, int chunkZ) {
+        if (coldShops.isEmpty()) {
+            return;
+        }
+        hydrate(coldShops.getChunk(world, chunkX, chunkZ));
+    }
+
+    /**
+     * Gets the hydrated shops only, the cold shops never dirty so this is enough for saving.
+     *
+     * @return The hydrated shops
+     */
+    @NotNull
+    public List<Shop> getHydratedShops() {
+        return shops.values();
+    }
+
+    /**
+     * Checks if any shop still not hydrated.
+     *
+     * @return true if there are cold shops
+     */
+    public boolean hasColdShops() {
+        return !coldShops.isEmpty();
+    }
+
+    /**
+     * Gets the amount of all shops, including the cold shops, without hydrating them.
+     *
+     * @return The amount of shops
+     */
+    @Override
+    public int getShopCount() {
+        return shops.size() + coldShops.size();
+    }
+
+    /**
+     * Gets the summaries of all shops, including the cold shops, without hydrating them.
+     *
+     * @return The shop summaries
+     */
+    @Override
+    @NotNull
+    public List<ShopSummary> getShopSummaries() {
+        // Cold shops first, so the shop hydrated in between is found in both snapshots instead of neither
+        List<ShopRecord> coldRecords = coldShops.values();
+        List<Shop> hydrated = shops.values();
+        List<ShopSummary> summaries = new ArrayList<>(coldRecords.size() + hydrated.size());
+        LongSet coldIds = new LongOpenHashSet(coldRecords.size());
+        for (ShopRecord shopRecord : coldRecords) {
+            summaries.add(ShopSummary.of(shopRecord));
+            coldIds.add(shopRecord.getInfoRecord().getShopId());
+        }
+        for (Shop shop : hydrated) {
+            World world = shop.getLocation().getWorld();
+            if (world == null || (shop.getShopId() != -1 && coldIds.contains(shop.getShopId()))) {
+                continue;
+            }
+            summaries.add(ShopSummary.of(world.getName(), shop));
+        }
+        return summaries;
+    }
+
+    /**
+     * Gets the shop of the summary, hydrates the chunk of it if the shop still cold.
+     * It's not thread-safe, please use that in main-thread
+     *
+     * @param summary The shop summary
+     * @return The shop, or null if the shop already removed
+     */
+    @Nullable
+    public Shop resolve(@NotNull ShopSummary summary) {
+        Util.ensureThread(false);
+        hydrateChunk(summary.world(), summary.chunkX(), summary.chunkZ());
+        Shop shop = shops.get(summary.world(), summary.x(), summary.y(), summary.z());
+        if (shop == null || (summary.shopId() != -1 && shop.getShopId() != summary.shopId())) {
+            return null;
+        }
+        return shop;
+    }
+
+    /**
+     * Gets the shop of the cold shop record, hydrates the chunk of it if the shop still cold.
+     * It's not thread-safe, please use that in main-thread
+     *
+     * @param shopRecord The raw shop record
+     * @return The shop, or null if the shop already removed
+     */
+    @Nullable
+    public Shop resolve(@NotNull ShopRecord shopRecord) {
+        return resolve(ShopSummary.of(shopRecord));
+    }
+
+    /**
+     * Gets the shops of the summaries in main thread, the cold shops are hydrated chunk by chunk
+     * and spread across ticks by the hydration tick budget.
+     *
+     * @param summaries The shop summaries
+     * @param consumer  Called in main thread for every shop still exists
+     * @return The future completed after all summaries visited
+     */
+    @Override
+    @NotNull
+    public CompletableFuture<Void> hydrateLazily(@NotNull Collection<ShopSummary> summaries, @NotNull Consumer<Shop> consumer) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Queue<List<ShopSummary>> batches = new ArrayDeque<>(groupByChunk(summaries));
+        if (batches.isEmpty()) {
+            future.complete(null);
+            return future;
+        }
+        long budget = TimeUnit.MILLISECONDS.toNanos(Math.max(1, plugin.getConfig().getInt("shop.hydrate-tick-budget-ms", 5)));
+        new HydrateTask(batches, consumer, future, budget).runTaskTimer(plugin, 0, 1);
+        return future;
+    }
+
+    @NotNull
+    private static Collection<List<ShopSummary>> groupByChunk(@NotNull Collection<ShopSummary> summaries) {
+        Map<String, Long2ObjectMap<List<ShopSummary>>> worlds = new LinkedHashMap<>();
+        List<List<ShopSummary>> batches = new ArrayList<>();
+        for (ShopSummary summary : summaries) {
+            Long2ObjectMap<List<ShopSummary>> chunks = worlds.computeIfAbsent(summary.world(), k -> new Long2ObjectOpenHashMap<>());
+            long chunkKey = ShopSpatialIndex.chunkKey(summary.chunkX(), summary.chunkZ());
+            List<ShopSummary> batch = chunks.get(chunkKey);
+            if (batch == null) {
+                batch = new ArrayList<>(4);
+                chunks.put(chunkKey, batch);
+                batches.add(batch);
+            }
+            batch.add(summary);
+        }
+        return batches;
+    }
+
+    @Nullable
+    private Shop hydrate(@NotNull ShopRecord shopRecord) {
+        List<Shop> hydrated = hydrate(Collections.singletonList(shopRecord));
+        return hydrated.isEmpty() ? null : hydrated.get(0);
+    }
+
+    @NotNull
+    private List<Shop> hydrate(@NotNull List<ShopRecord> shopRecords) {
+        if (shopRecords.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (!Bukkit.isPrimaryThread()) {
+            // ContainerShop only can be created on server thread, spread the hydration across ticks and wait for it,
+            // the hydration keeps going after timed out, the shops will be there for the next call
+            List<ShopSummary> summaries = new ArrayList<>(shopRecords.size());
+            shopRecords.forEach(shopRecord -> summaries.add(ShopSummary.of(shopRecord)));
+            List<Shop> hydrated = Collections.synchronizedList(new ArrayList<>(shopRecords.size()));
+            try {
+                hydrateLazily(summaries, hydrated::add).get(HYDRATE_WAIT_SECONDS, TimeUnit.SECONDS);
+                return hydrated;
+            } catch (TimeoutException e) {
+                plugin.getLogger().warning("Timed out waiting " + shopRecords.size() + " shops hydrated from server thread, is the server thread busy?");
+                return Collections.emptyList();
+            } catch (ExecutionException | IllegalStateException | IllegalPluginAccessException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to hydrate " + shopRecords.size() + " shops from server thread.", e);
+                return Collections.emptyList();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Collections.emptyList();
+            }
+        }
+        Timer timer = new Timer(true);
+        List<Shop> hydrated = new ArrayList<>(shopRecords.size());
+        for (ShopRecord shopRecord : shopRecords) {
+            InfoRecord info = shopRecord.getInfoRecord();
+            if (!coldShops.remove(shopRecord)) {
+                // Hydrated by someone else
+                Shop shop = shops.get(info.getWorld(), info.getX(), info.getY(), info.getZ());
+                if (shop != null) {
+                    hydrated.add(shop);
+                }
+                continue;
+            }
+            // Will be counted and indexed again when the shop registered
+            countColdShop(shopRecord, -1);
+            searchIndex.removeCold(shopRecord);
+            presence.remove(info.getWorld(), info.getX() >> 4, info.getZ() >> 4);
+            Shop shop = plugin.getShopLoader().hydrateShop(shopRecord);
+            if (shop != null) {
+                hydrated.add(shop);
+            }
+        }
+        Log.timing("Hydrate " + shopRecords.size() + " cold shops", timer);
+        return hydrated;
+    }
+
     /**
      * Removes all shops from memory and the world. Does not delete them from the database. Call
      * this on plugin disable ONLY.
@@ -471,10 +810,15 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         plugin.getLogger().info("Unloading loaded shops...");
         getLoadedShops().forEach(Shop::onUnload);
         plugin.getLogger().info("Saving shops, please allow up to 30 seconds for flush changes into database...");
-        CompletableFuture<?> saveTask = CompletableFuture.allOf(
-                plugin.getShopManager().getAllShops().stream().filter(Shop::isDirty)
-                        .map(Shop::update)
-                        .toArray(CompletableFuture[]::new));
+        CompletableFuture<?> saveTask;
+        if (plugin.getShopSaveWatcher() != null) {
+            saveTask = plugin.getShopSaveWatcher().flush();
+        } else {
+            saveTask = CompletableFuture.allOf(
+                    getHydratedShops().stream().filter(Shop::isDirty)
+                            .map(Shop::update)
+                            .toArray(CompletableFuture[]::new));
+        }
         try {
             if (Util.parsePackageProperly("unlimitedWait").asBoolean()) {
                 saveTask.get();
@@ -488,6 +832,12 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         }
         this.interactiveManager.reset();
         this.shops.clear();
+        this.coldShops.clear();
+        this.presence.clear();
+        this.searchIndex.clear();
+        this.counters.clearRegistered();
+        this.shopIdIndex.clear();
+        this.ownerIndex.clear();
     }
 
     /**
@@ -718,18 +1068,18 @@ public class SimpleShopManager implements ShopManager, Reloadable {
      * Returns all shops in the whole database, include unloaded.
      *
      * <p>Make sure you have caching this, because this need a while to get all shops
+     * <p>All cold shops will be hydrated. Called from main thread they are hydrated at once, called from async
+     * thread they are hydrated chunk by chunk across ticks and only the shops hydrated in time are returned.
+     * Use {@link #getShopSummaries()} if the shops only need to be filtered.
      *
      * @return All shop in the database
      */
     @Override
     public @NotNull List<Shop> getAllShops() {
-        final List<Shop> shopsCollected = new ArrayList<>();
-        for (final Map<ShopChunk, Map<Location, Shop>> shopMapData : getShops().values()) {
-            for (final Map<Location, Shop> shopData : shopMapData.values()) {
-                shopsCollected.addAll(shopData.values());
-            }
+        if (!coldShops.isEmpty()) {
+            hydrate(coldShops.values());
         }
-        return shopsCollected;
+        return shops.values();
     }
 
     /**
@@ -752,13 +1102,14 @@ public class SimpleShopManager implements ShopManager, Reloadable {
      */
     @Override
     public @NotNull List<Shop> getPlayerAllShops(@NotNull UUID playerUUID) {
-        final List<Shop> playerShops = new ArrayList<>(10);
-        for (final Shop shop : getAllShops()) {
-            if (shop.getOwner().equals(playerUUID)) {
-                playerShops.add(shop);
-            }
+        if (!coldShops.isEmpty()) {
+            hydrate(coldShops.getByOwner(playerUUID));
+        }
+        Map<UUID, Shop> owned = ownerIndex.get(playerUUID);
+        if (owned == null) {
+            return new ArrayList<>(0);
         }
-        return playerShops;
+        return new ArrayList<>(owned.values());
     }
 
     @Override
@@ -774,12 +1125,14 @@ public class SimpleShopManager implements ShopManager, Reloadable {
      */
     @Override
     public @Nullable Shop getShop(long shopId) {
-        for (Shop shop : getAllShops()) {
-            if (shop.getShopId() == shopId) {
-                return shop;
+        Shop shop = shopIdIndex.get(shopId);
+        if (shop == null && !coldShops.isEmpty()) {
+            ShopRecord shopRecord = coldShops.getById(shopId);
+            if (shopRecord != null) {
+                shop = hydrate(shopRecord);
             }
         }
-        return null;
+        return shop;
     }
 
     /**
@@ -805,18 +1158,19 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         if (!skipShopableChecking && !Util.isShoppables(loc.getBlock().getType())) {
             return null;
         }
-        final Map<Location, Shop> inChunk = getShops(loc.getChunk());
-        if (inChunk == null) {
+        World world = loc.getWorld();
+        if (world == null) {
             return null;
         }
-        loc = loc.clone();
-        // Fix double chest XYZ issue
-        loc.setX(loc.getBlockX());
-        loc.setY(loc.getBlockY());
-        loc.setZ(loc.getBlockZ());
-        // We can do this because WorldListener updates the world reference so
-        // the world in loc is the same as world in inChunk.get(loc)
-        return inChunk.get(loc);
+        // Block coordinates also fix the double chest XYZ issue
+        Shop shop = shops.get(world.getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+        if (shop == null && !coldShops.isEmpty()) {
+            ShopRecord shopRecord = coldShops.get(world.getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+            if (shopRecord != null) {
+                shop = hydrate(shopRecord);
+            }
+        }
+        return shop;
     }
 
     @Override
@@ -892,12 +1246,18 @@ public class SimpleShopManager implements ShopManager, Reloadable {
 
     /**
      * Returns a map of World - Chunk - Shop
+     * <p>
+     * This is a read-only snapshot built lazily from the shop index, cached until shops changed.
+     * All cold shops will be hydrated same as {@link #getAllShops()}.
      *
      * @return a map of World - Chunk - Shop
      */
     @Override
     public @NotNull Map<String, Map<ShopChunk, Map<Location, Shop>>> getShops() {
-        return this.shops;
+        if (!coldShops.isEmpty()) {
+            hydrate(coldShops.values());
+        }
+        return this.shops.getView();
     }
 
     /**
@@ -914,11 +1274,8 @@ public class SimpleShopManager implements ShopManager, Reloadable {
 
     @Override
     public @Nullable Map<Location, Shop> getShops(@NotNull String world, int chunkX, int chunkZ) {
-        final Map<ShopChunk, Map<Location, Shop>> inWorld = this.getShops(world);
-        if (inWorld == null) {
-            return null;
-        }
-        return inWorld.get(new SimpleShopChunk(world, chunkX, chunkZ));
+        hydrateChunk(world, chunkX, chunkZ);
+        return this.shops.getChunkView(world, chunkX, chunkZ);
     }
 
     /**
@@ -929,7 +1286,35 @@ public class SimpleShopManager implements ShopManager, Reloadable {
      */
     @Override
     public @Nullable Map<ShopChunk, Map<Location, Shop>> getShops(@NotNull String world) {
-        return this.shops.get(world);
+        if (!coldShops.isEmpty()) {
+            hydrate(coldShops.getWorld(world));
+        }
+        return this.shops.getWorldView(world);
+    }
+
+    @Override
+    public @NotNull List<Shop> getShopsInRegion(@NotNull String world, int minX, int minZ, int maxX, int maxZ) {
+        if (!coldShops.isEmpty()) {
+            hydrate(coldShops.getRegion(world, minX, minZ, maxX, maxZ));
+        }
+        return shops.getRegion(world, minX, minZ, maxX, maxZ);
+    }
+
+    @Override
+    public @NotNull List<Shop> getShopsInChunks(@NotNull Collection<? extends ShopChunk> chunks) {
+        Map<String, LongSet> visited = new HashMap<>();
+        List<Shop> collected = new ArrayList<>();
+        for (ShopChunk chunk : chunks) {
+            if (!visited.computeIfAbsent(chunk.getWorld(), k -> new LongOpenHashSet()).add(ShopSpatialIndex.chunkKey(chunk.getX(), chunk.getZ()))) {
+                continue;
+            }
+            hydrateChunk(chunk.getWorld(), chunk.getX(), chunk.getZ());
+            Map<Location, Shop> inChunk = shops.getChunkView(chunk.getWorld(), chunk.getX(), chunk.getZ());
+            if (inChunk != null) {
+                collected.addAll(inChunk.values());
+            }
+        }
+        return collected;
     }
 
     /**
@@ -940,13 +1325,16 @@ public class SimpleShopManager implements ShopManager, Reloadable {
      */
     @Override
     public @NotNull List<Shop> getShopsInWorld(@NotNull World world) {
+        if (!coldShops.isEmpty()) {
+            hydrate(coldShops.getWorld(world.getName()));
+        }
         final List<Shop> worldShops = new ArrayList<>();
-        for (final Shop shop : getAllShops()) {
+        shops.forEachInWorld(world.getName(), shop -> {
             Location location = shop.getLocation();
             if (location.isWorldLoaded() && Objects.equals(location.getWorld(), world)) {
                 worldShops.add(shop);
             }
-        }
+        });
         return worldShops;
     }
 
@@ -1032,15 +1420,17 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         Util.ensureThread(false);
         if (plugin.isLimit()) {
             int owned = 0;
+            Map<UUID, Shop> playerShops = ownerIndex.getOrDefault(p.getUniqueId(), Collections.emptyMap());
             if (useOldCanBuildAlgorithm) {
-                owned = getPlayerAllShops(p.getUniqueId()).size();
+                owned = playerShops.size();
             } else {
-                for (final Shop shop : getPlayerAllShops(p.getUniqueId())) {
+                for (final Shop shop : playerShops.values()) {
                     if (!shop.isUnlimited()) {
                         owned++;
                     }
                 }
             }
+            owned += coldShops.countByOwner(p.getUniqueId(), useOldCanBuildAlgorithm);
             int max = plugin.getShopLimit(p);
             Log.debug("CanBuildShop check for " + p.getName() + " owned: " + owned + "; max: " + max);
             return owned + 1 > max;
@@ -1101,15 +1491,38 @@ public class SimpleShopManager implements ShopManager, Reloadable {
     public void removeShop(@NotNull Shop shop) {
         Location loc = shop.getLocation();
         String world = Objects.requireNonNull(loc.getWorld()).getName();
-        Map<ShopChunk, Map<Location, Shop>> inWorld = this.getShops().get(world);
-        int x = (int) Math.floor((loc.getBlockX()) / 16.0);
-        int z = (int) Math.floor((loc.getBlockZ()) / 16.0);
-        ShopChunk shopChunk = new SimpleShopChunk(world, x, z);
-        Map<Location, Shop> inChunk = inWorld.get(shopChunk);
-        if (inChunk == null) {
-            return;
+        Shop removed = shops.remove(world, loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+        if (removed != null) {
+            unindexShop(removed);
+            counters.registered(world, removed.getOwner(), -1);
+            presence.remove(world, loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
         }
-        inChunk.remove(loc);
+        if (plugin.getSignUpdateWatcher() != null) {
+            plugin.getSignUpdateWatcher().cancelSignUpdate(loc);
+        }
+    }
+
+    /**
+     * Checks if any shop (including the cold shops) may be found from the block or the blocks next to it,
+     * without touching the world or the shop indexes. Designed for the high frequency nature events.
+     *
+     * @param loc The block location
+     * @return false if definitely no shops around
+     */
+    public boolean isShopNearby(@NotNull Location loc) {
+        World world = loc.getWorld();
+        return world != null && presence.mayHaveShopNear(world.getName(), loc.getBlockX(), loc.getBlockZ());
+    }
+
+    /**
+     * Checks if any shop (including the cold shops) may be found from the block or the blocks next to it.
+     *
+     * @param block The block
+     * @return false if definitely no shops around
+     * @see #isShopNearby(Location)
+     */
+    public boolean isShopNearby(@NotNull Block block) {
+        return presence.mayHaveShopNear(block.getWorld().getName(), block.getX(), block.getZ());
     }
 
     /**
@@ -1647,16 +2060,24 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         return amount;
     }
 
+    /**
+     * Iterates the shops chunk by chunk, the cold shops are hydrated when the iteration reached their chunk.
+     * <p>
+     * Created from async thread, the cold shops are hydrated across ticks before the iteration, because the
+     * hydration needs the server thread.
+     */
     public class ShopIterator implements Iterator<Shop> {
 
-        private final Iterator<Map<ShopChunk, Map<Location, Shop>>> worlds;
-
-        private Iterator<Map<Location, Shop>> chunks;
+        private final Iterator<List<ShopSummary>> chunks;
 
-        private Iterator<Shop> shops;
+        private Iterator<Shop> chunkShops = Collections.emptyIterator();
 
         public ShopIterator() {
-            worlds = getShops().values().iterator();
+            List<ShopSummary> summaries = getShopSummaries();
+            if (!Bukkit.isPrimaryThread() && !coldShops.isEmpty()) {
+                hydrate(coldShops.values());
+            }
+            chunks = groupByChunk(summaries).iterator();
         }
 
         /**
@@ -1664,18 +2085,11 @@ public class SimpleShopManager implements ShopManager, Reloadable {
          */
         @Override
         public boolean hasNext() {
-            if (shops == null || !shops.hasNext()) {
-                if (chunks == null || !chunks.hasNext()) {
-                    if (!worlds.hasNext()) {
-                        return false;
-                    } else {
-                        chunks = worlds.next().values().iterator();
-                        return hasNext();
-                    }
-                } else {
-                    shops = chunks.next().values().iterator();
-                    return hasNext();
+            while (!chunkShops.hasNext()) {
+                if (!chunks.hasNext()) {
+                    return false;
                 }
+                chunkShops = resolveChunk(chunks.next()).iterator();
             }
             return true;
         }
@@ -1685,19 +2099,63 @@ public class SimpleShopManager implements ShopManager, Reloadable {
          */
         @Override
         public @NotNull Shop next() {
-            if (shops == null || !shops.hasNext()) {
-                if (chunks == null || !chunks.hasNext()) {
-                    if (!worlds.hasNext()) {
-                        throw new NoSuchElementException("No more shops to iterate over!");
-                    }
-                    chunks = worlds.next().values().iterator();
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more shops to iterate over!");
+            }
+            return chunkShops.next();
+        }
+
+        @NotNull
+        private List<Shop> resolveChunk(@NotNull List<ShopSummary> summaries) {
+            ShopSummary first = summaries.get(0);
+            hydrateChunk(first.world(), first.chunkX(), first.chunkZ());
+            List<Shop> resolved = new ArrayList<>(summaries.size());
+            for (ShopSummary summary : summaries) {
+                Shop shop = shops.get(summary.world(), summary.x(), summary.y(), summary.z());
+                if (shop != null) {
+                    resolved.add(shop);
                 }
-                shops = chunks.next().values().iterator();
             }
-            if (!shops.hasNext()) {
-                return this.next(); // Skip to the next one (Empty iterator?)
+            return resolved;
+        }
+    }
+
+    private class HydrateTask extends BukkitRunnable {
+        private final Queue<List<ShopSummary>> batches;
+        private final Consumer<Shop> consumer;
+        private final CompletableFuture<Void> future;
+        private final long budgetNanos;
+
+        private HydrateTask(@NotNull Queue<List<ShopSummary>> batches, @NotNull Consumer<Shop> consumer, @NotNull CompletableFuture<Void> future, long budgetNanos) {
+            this.batches = batches;
+            this.consumer = consumer;
+            this.future = future;
+            this.budgetNanos = budgetNanos;
+        }
+
+        @Override
+        public void run() {
+            long deadline = System.nanoTime() + budgetNanos;
+            List<ShopSummary> batch;
+            try {
+                while ((batch = batches.poll()) != null) {
+                    for (ShopSummary summary : batch) {
+                        Shop shop = resolve(summary);
+                        if (shop != null) {
+                            consumer.accept(shop);
+                        }
+                    }
+                    if (System.nanoTime() >= deadline) {
+                        return;
+                    }
+                }
+            } catch (Throwable e) {
+                cancel();
+                future.completeExceptionally(e);
+                return;
             }
-            return shops.next();
+            cancel();
+            future.complete(null);
         }
     }
 
@@ -8,22 +8,46 @@ import com.ghostchu.quickshop.common.util.CommonUtil;
 import com.ghostchu.quickshop.util.logger.Log;
 import com.ghostchu.simplereloadlib.ReloadResult;
 import com.ghostchu.simplereloadlib.Reloadable;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.MapMaker;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
+/**
+ * Shop permission manager, the permission nodes are interned to integer ids and the groups are stored as bitsets.
+ * <p>
+ * The authorize results of shops are memoized per (shop, player, permission) here, the memo is invalidated when
+ * the permission settings changed, when the shop permissions changed (by its permission version) or when
+ * {@link #invalidateAuthorizeCache()} called. Stored group bitsets are never modified, they are replaced on write.
+ */
 public class SimpleShopPermissionManager implements ShopPermissionManager, Reloadable {
-    private final Map<String, Set<String>> permissionMapping = new MapMaker().makeMap();
+    private final Map<String, BitSet> permissionMapping = new MapMaker().makeMap();
+    private final Map<String, Integer> permissionIds = new ConcurrentHashMap<>();
+    private final List<String> permissionNames = new CopyOnWriteArrayList<>();
+    /* Plugin -> (raw permission -> id), avoids building the namespaced node for every check */
+    private final Map<Plugin, Map<String, Integer>> namespacedIds = new MapMaker().weakKeys().makeMap();
+    private final Set<Plugin> authorizeCacheBypass = ConcurrentHashMap.newKeySet();
+    /* Plugin -> bypassed permission ids, the union is published to bypassedPermissionIds */
+    private final Map<Plugin, Set<Integer>> scopedAuthorizeCacheBypass = new ConcurrentHashMap<>();
+    private volatile BitSet bypassedPermissionIds = new BitSet();
+    private final AtomicLong version = new AtomicLong();
     private final QuickShop plugin;
+    @Nullable
+    private volatile Cache<AuthorizeKey, Decision> authorizeCache;
 
     public SimpleShopPermissionManager(@NotNull QuickShop plugin) {
         this.plugin = plugin;
@@ -39,9 +63,9 @@ public class SimpleShopPermissionManager implements ShopPermissionManager, Reloa
 
     @Override
     public @NotNull List<String> getGroupPermissions(@NotNull String group) {
-        Set<String> set = this.permissionMapping.get(group);
-        if (set == null) return Collections.emptyList();
-        return ImmutableList.copyOf(set);
+        BitSet bits = this.permissionMapping.get(group);
+        if (bits == null) return Collections.emptyList();
+        return bits.stream().mapToObj(permissionNames::get).collect(ImmutableList.toImmutableList());
     }
 
     @Override
@@ -56,22 +80,57 @@ public class SimpleShopPermissionManager implements ShopPermissionManager, Reloa
 
     @Override
     public boolean hasPermission(@NotNull String group, @NotNull Plugin namespace, @NotNull String permission) {
-        if (!permissionMapping.containsKey(group)) {
+        BitSet bits = permissionMapping.get(group);
+        if (bits == null) {
             return false;
         }
-        String fullPermissionPath = namespace.getName().toLowerCase(Locale.ROOT) + "." + permission;
-        boolean result = permissionMapping.get(group).contains(fullPermissionPath);
-        Log.permission("Check permission " + fullPermissionPath + " for group " + group + ": " + result);
+        boolean result = bits.get(getPermissionId(namespace, permission));
+        Log.permission(() -> "Check permission " + namespace.getName().toLowerCase(Locale.ROOT) + "." + permission + " for group " + group + ": " + result);
         return result;
     }
 
+    /**
+     * Gets the interned id of the permission node, the unknown nodes will be interned too.
+     *
+     * @param namespace  Plugin instance for namespace.
+     * @param permission Permission name.
+     * @return The permission id
+     */
+    public int getPermissionId(@NotNull Plugin namespace, @NotNull String permission) {
+        return namespacedIds.computeIfAbsent(namespace, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(permission, k -> intern(namespace.getName().toLowerCase(Locale.ROOT) + "." + permission));
+    }
+
+    private int intern(@NotNull String fullPermissionPath) {
+        Integer id = permissionIds.get(fullPermissionPath);
+        if (id != null) {
+            return id;
+        }
+        synchronized (permissionNames) {
+            return permissionIds.computeIfAbsent(fullPermissionPath, k -> {
+                permissionNames.add(k);
+                return permissionNames.size() - 1;
+            });
+        }
+    }
+
+    @NotNull
+    private BitSet toBits(@NotNull Collection<String> permissions) {
+        BitSet bits = new BitSet();
+        for (String permission : permissions) {
+            bits.set(intern(permission));
+        }
+        return bits;
+    }
+
     @Override
     public void registerGroup(@NotNull String group, @NotNull Collection<String> permissions) {
         if (permissionMapping.containsKey(group)) {
             throw new IllegalArgumentException("Group " + group + " already exists.");
         }
         Log.permission("Register group " + group);
-        permissionMapping.put(group, new CopyOnWriteArraySet<>(permissions));
+        permissionMapping.put(group, toBits(permissions));
+        invalidateAuthorizeCache();
     }
 
     @Override
@@ -79,9 +138,14 @@ public class SimpleShopPermissionManager implements ShopPermissionManager, Reloa
         if (!permissionMapping.containsKey(group)) {
             throw new IllegalArgumentException("Group " + group + " does not exist.");
         }
-        String fullPermissionPath = namespace.getName().toLowerCase(Locale.ROOT) + "." + permission;
-        Log.permission("Register permission " + fullPermissionPath + " to group " + group);
-        permissionMapping.get(group).add(fullPermissionPath);
+        int id = getPermissionId(namespace, permission);
+        Log.permission(() -> "Register permission " + permissionNames.get(id) + " to group " + group);
+        permissionMapping.computeIfPresent(group, (k, bits) -> {
+            BitSet copy = (BitSet) bits.clone();
+            copy.set(id);
+            return copy;
+        });
+        invalidateAuthorizeCache();
     }
 
     @Override
@@ -91,6 +155,7 @@ public class SimpleShopPermissionManager implements ShopPermissionManager, Reloa
         }
         Log.permission("Unregister group " + group);
         permissionMapping.remove(group);
+        invalidateAuthorizeCache();
     }
 
     @Override
@@ -98,9 +163,127 @@ public class SimpleShopPermissionManager implements ShopPermissionManager, Reloa
         if (!permissionMapping.containsKey(group)) {
             return;
         }
-        String fullPermissionPath = namespace.getName().toLowerCase(Locale.ROOT) + "." + permission;
-        Log.permission("Unregister permission " + fullPermissionPath + " from group " + group);
-        permissionMapping.get(group).remove(fullPermissionPath);
+        int id = getPermissionId(namespace, permission);
+        Log.permission(() -> "Unregister permission " + permissionNames.get(id) + " from group " + group);
+        permissionMapping.computeIfPresent(group, (k, bits) -> {
+            BitSet copy = (BitSet) bits.clone();
+            copy.clear(id);
+            return copy;
+        });
+        invalidateAuthorizeCache();
+    }
+
+    @Override
+    public void invalidateAuthorizeCache() {
+        version.incrementAndGet();
+        Cache<AuthorizeKey, Decision> cache = this.authorizeCache;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    @Override
+    public void setAuthorizeCacheBypass(@NotNull Plugin plugin, boolean bypass) {
+        if (bypass) {
+            authorizeCacheBypass.add(plugin);
+        } else {
+            authorizeCacheBypass.remove(plugin);
+            scopedAuthorizeCacheBypass.remove(plugin);
+            rebuildBypassedPermissionIds();
+        }
+        invalidateAuthorizeCache();
+    }
+
+    @Override
+    public void setAuthorizeCacheBypass(@NotNull Plugin plugin, @NotNull Plugin namespace, @NotNull String permission, boolean bypass) {
+        int id = getPermissionId(namespace, permission);
+        if (bypass) {
+            scopedAuthorizeCacheBypass.computeIfAbsent(plugin, k -> ConcurrentHashMap.newKeySet()).add(id);
+        } else {
+            scopedAuthorizeCacheBypass.computeIfPresent(plugin, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+        rebuildBypassedPermissionIds();
+        invalidateAuthorizeCache();
+    }
+
+    private synchronized void rebuildBypassedPermissionIds() {
+        BitSet bits = new BitSet();
+        scopedAuthorizeCacheBypass.values().forEach(ids -> ids.forEach(bits::set));
+        this.bypassedPermissionIds = bits;
+    }
+
+    private boolean isAuthorizeCacheBypassed(int permissionId) {
+        return !authorizeCacheBypass.isEmpty() || bypassedPermissionIds.get(permissionId);
+    }
+
+    /**
+     * Gets the memoized authorize result
+     *
+     * @param shopRuntimeId     The shop runtime random unique id
+     * @param shopPermissionVer The shop permission version
+     * @param player            The player
+     * @param permissionId      The permission id
+     * @return The result, or null if not cached, caching disabled or bypassed for the permission
+     */
+    @Nullable
+    public Boolean getCachedAuthorize(@NotNull UUID shopRuntimeId, long shopPermissionVer, @NotNull UUID player, int permissionId) {
+        Cache<AuthorizeKey, Decision> cache = this.authorizeCache;
+        if (cache == null || isAuthorizeCacheBypassed(permissionId)) {
+            return null;
+        }
+        Decision decision = cache.getIfPresent(new AuthorizeKey(shopRuntimeId, player, permissionId));
+        if (decision == null || decision.version() != version.get() || decision.shopPermissionVer() != shopPermissionVer) {
+            return null;
+        }
+        return decision.result();
+    }
+
+    /**
+     * Memoizes the authorize result, the version must be taken before the result calculated.
+     *
+     * @param shopRuntimeId     The shop runtime random unique id
+     * @param shopPermissionVer The shop permission version
+     * @param player            The player
+     * @param permissionId      The permission id
+     * @param version           The permission manager version, see {@link #getVersion()}
+     * @param result            The result
+     */
+    public void cacheAuthorize(@NotNull UUID shopRuntimeId, long shopPermissionVer, @NotNull UUID player, int permissionId, long version, boolean result) {
+        Cache<AuthorizeKey, Decision> cache = this.authorizeCache;
+        if (cache == null || isAuthorizeCacheBypassed(permissionId)) {
+            return;
+        }
+        cache.put(new AuthorizeKey(shopRuntimeId, player, permissionId), new Decision(result, version, shopPermissionVer));
+    }
+
+    /**
+     * Gets the version of the permission settings, changes on any group, permission or region change.
+     *
+     * @return The version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    private void initAuthorizeCache() {
+        int ttl = plugin.getConfig().getInt("shop.authorize-cache-ttl", 10);
+        if (ttl <= 0) {
+            this.authorizeCache = null;
+            return;
+        }
+        this.authorizeCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                .maximumSize(65536)
+                .build();
+    }
+
+    private record AuthorizeKey(UUID shop, UUID player, int permission) {
+    }
+
+    private record Decision(boolean result, long version, long shopPermissionVer) {
     }
 
     private void initDefaultConfiguration(@NotNull File file) {
@@ -141,10 +324,12 @@ public class SimpleShopPermissionManager implements ShopPermissionManager, Reloa
         yamlConfiguration.getKeys(true).forEach(group -> {
             if (yamlConfiguration.isList(group)) {
                 List<String> perms = yamlConfiguration.getStringList(group);
-                this.permissionMapping.put(group, new HashSet<>(perms));
+                this.permissionMapping.put(group, toBits(perms));
                 Log.permission("Permission loaded for group " + group + ": " + CommonUtil.list2String(perms));
             }
         });
+        initAuthorizeCache();
+        invalidateAuthorizeCache();
     }
 
     @Override
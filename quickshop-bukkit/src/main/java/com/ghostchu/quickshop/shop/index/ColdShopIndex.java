@@ -0,0 +1,272 @@
+package com.ghostchu.quickshop.shop.index;
+
+import com.ghostchu.quickshop.api.database.bean.InfoRecord;
+import com.ghostchu.quickshop.api.database.bean.ShopRecord;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongRBTreeSet;
+import it.unimi.dsi.fastutil.longs.LongSortedSet;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Index for "cold" shops, the shops that loaded from database but not hydrated into ContainerShop yet.
+ * <p>
+ * Only the raw database record is kept here, the ItemStack, extra and permissions will be deserialized
+ * when the shop is hydrated. Records are indexed by World - Chunk - Block, by shop id and by owner.
+ * Same as {@link ShopSpatialIndex}, each world keeps its chunks sorted by x then z for the region queries.
+ */
+public class ColdShopIndex {
+    private final Map<String, Long2ObjectMap<Int2ObjectMap<ShopRecord>>> worlds = new Object2ObjectOpenHashMap<>();
+    private final Map<String, LongSortedSet> sortedChunks = new Object2ObjectOpenHashMap<>();
+    private final Long2ObjectMap<ShopRecord> byId = new Long2ObjectOpenHashMap<>();
+    private final Map<UUID, List<ShopRecord>> byOwner = new HashMap<>();
+    private volatile int size;
+
+    /**
+     * Puts a record into the index, replacing the record at same position
+     *
+     * @param record The shop record
+     * @return The replaced record, or null if no cold shop there
+     */
+    @Nullable
+    public synchronized ShopRecord put(@NotNull ShopRecord record) {
+        InfoRecord info = record.getInfoRecord();
+        Long2ObjectMap<Int2ObjectMap<ShopRecord>> chunks = worlds.computeIfAbsent(info.getWorld(), k -> new Long2ObjectOpenHashMap<>());
+        long chunkKey = ShopSpatialIndex.chunkKey(info.getX() >> 4, info.getZ() >> 4);
+        Int2ObjectMap<ShopRecord> chunk = chunks.get(chunkKey);
+        if (chunk == null) {
+            chunk = new Int2ObjectOpenHashMap<>(4);
+            chunks.put(chunkKey, chunk);
+            sortedChunks.computeIfAbsent(info.getWorld(), k -> new LongRBTreeSet())
+                    .add(ShopSpatialIndex.sortKey(info.getX() >> 4, info.getZ() >> 4));
+        }
+        ShopRecord previous = chunk.put(ShopSpatialIndex.blockKey(info.getX(), info.getY(), info.getZ()), record);
+        if (previous != null) {
+            unindex(previous);
+        } else {
+            size++;
+        }
+        byId.put(info.getShopId(), record);
+        byOwner.computeIfAbsent(record.getDataRecord().getOwner(), k -> new ArrayList<>(1)).add(record);
+        return previous;
+    }
+
+    /**
+     * Removes the record from the index
+     *
+     * @param record The shop record
+     * @return true if the record was in the index, false if someone else already removed it
+     */
+    public synchronized boolean remove(@NotNull ShopRecord record) {
+        InfoRecord info = record.getInfoRecord();
+        Long2ObjectMap<Int2ObjectMap<ShopRecord>> chunks = worlds.get(info.getWorld());
+        if (chunks == null) {
+            return false;
+        }
+        long chunkKey = ShopSpatialIndex.chunkKey(info.getX() >> 4, info.getZ() >> 4);
+        Int2ObjectMap<ShopRecord> chunk = chunks.get(chunkKey);
+        if (chunk == null) {
+            return false;
+        }
+        int blockKey = ShopSpatialIndex.blockKey(info.getX(), info.getY(), info.getZ());
+        if (chunk.get(blockKey) != record) {
+            return false;
+        }
+        chunk.remove(blockKey);
+        if (chunk.isEmpty()) {
+            chunks.remove(chunkKey);
+            LongSortedSet sorted = sortedChunks.get(info.getWorld());
+            if (sorted != null) {
+                sorted.remove(ShopSpatialIndex.sortKey(info.getX() >> 4, info.getZ() >> 4));
+            }
+        }
+        if (chunks.isEmpty()) {
+            worlds.remove(info.getWorld());
+            sortedChunks.remove(info.getWorld());
+        }
+        unindex(record);
+        size--;
+        return true;
+    }
+
+    private void unindex(@NotNull ShopRecord record) {
+        long shopId = record.getInfoRecord().getShopId();
+        if (byId.get(shopId) == record) {
+            byId.remove(shopId);
+        }
+        UUID owner = record.getDataRecord().getOwner();
+        List<ShopRecord> owned = byOwner.get(owner);
+        if (owned != null) {
+            owned.removeIf(r -> r == record);
+            if (owned.isEmpty()) {
+                byOwner.remove(owner);
+            }
+        }
+    }
+
+    /**
+     * Gets the record at given position
+     *
+     * @param world The world name
+     * @param x     block x
+     * @param y     block y
+     * @param z     block z
+     * @return The record, or null if no cold shop there
+     */
+    @Nullable
+    public synchronized ShopRecord get(@NotNull String world, int x, int y, int z) {
+        Long2ObjectMap<Int2ObjectMap<ShopRecord>> chunks = worlds.get(world);
+        if (chunks == null) {
+            return null;
+        }
+        Int2ObjectMap<ShopRecord> chunk = chunks.get(ShopSpatialIndex.chunkKey(x >> 4, z >> 4));
+        if (chunk == null) {
+            return null;
+        }
+        return chunk.get(ShopSpatialIndex.blockKey(x, y, z));
+    }
+
+    @Nullable
+    public synchronized ShopRecord getById(long shopId) {
+        return byId.get(shopId);
+    }
+
+    @NotNull
+    public synchronized List<ShopRecord> getByOwner(@NotNull UUID owner) {
+        List<ShopRecord> owned = byOwner.get(owner);
+        return owned == null ? Collections.emptyList() : new ArrayList<>(owned);
+    }
+
+    /**
+     * Counts the cold shops owned by specific player
+     *
+     * @param owner            The owner
+     * @param includeUnlimited Should unlimited shops be counted
+     * @return The amount of cold shops
+     */
+    public synchronized int countByOwner(@NotNull UUID owner, boolean includeUnlimited) {
+        List<ShopRecord> owned = byOwner.get(owner);
+        if (owned == null) {
+            return 0;
+        }
+        if (includeUnlimited) {
+            return owned.size();
+        }
+        int count = 0;
+        for (ShopRecord record : owned) {
+            if (!record.getDataRecord().isUnlimited()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @NotNull
+    public synchronized List<ShopRecord> getChunk(@NotNull String world, int chunkX, int chunkZ) {
+        Long2ObjectMap<Int2ObjectMap<ShopRecord>> chunks = worlds.get(world);
+        if (chunks == null) {
+            return Collections.emptyList();
+        }
+        Int2ObjectMap<ShopRecord> chunk = chunks.get(ShopSpatialIndex.chunkKey(chunkX, chunkZ));
+        return chunk == null ? Collections.emptyList() : new ArrayList<>(chunk.values());
+    }
+
+    /**
+     * Collects the records inside the region, all heights included
+     *
+     * @param world The world name
+     * @param minX  min block x, inclusive
+     * @param minZ  min block z, inclusive
+     * @param maxX  max block x, inclusive
+     * @param maxZ  max block z, inclusive
+     * @return The records inside the region
+     */
+    @NotNull
+    public synchronized List<ShopRecord> getRegion(@NotNull String world, int minX, int minZ, int maxX, int maxZ) {
+        Long2ObjectMap<Int2ObjectMap<ShopRecord>> chunks = worlds.get(world);
+        LongSortedSet sorted = sortedChunks.get(world);
+        if (chunks == null || sorted == null) {
+            return Collections.emptyList();
+        }
+        int minChunkX = minX >> 4;
+        int minChunkZ = minZ >> 4;
+        int maxChunkX = maxX >> 4;
+        int maxChunkZ = maxZ >> 4;
+        List<ShopRecord> collected = new ArrayList<>();
+        LongIterator it = sorted.tailSet(ShopSpatialIndex.sortKey(minChunkX, Integer.MIN_VALUE)).iterator();
+        while (it.hasNext()) {
+            long sortKey = it.nextLong();
+            int chunkX = (int) (sortKey >> 32);
+            if (chunkX > maxChunkX) {
+                break;
+            }
+            int chunkZ = (int) sortKey ^ Integer.MIN_VALUE;
+            if (chunkZ < minChunkZ || chunkZ > maxChunkZ) {
+                continue;
+            }
+            Int2ObjectMap<ShopRecord> chunk = chunks.get(ShopSpatialIndex.chunkKey(chunkX, chunkZ));
+            if (chunk == null) {
+                continue;
+            }
+            for (ShopRecord record : chunk.values()) {
+                InfoRecord info = record.getInfoRecord();
+                if (info.getX() >= minX && info.getX() <= maxX && info.getZ() >= minZ && info.getZ() <= maxZ) {
+                    collected.add(record);
+                }
+            }
+        }
+        return collected;
+    }
+
+    @NotNull
+    public synchronized List<ShopRecord> getWorld(@NotNull String world) {
+        Long2ObjectMap<Int2ObjectMap<ShopRecord>> chunks = worlds.get(world);
+        if (chunks == null) {
+            return Collections.emptyList();
+        }
+        List<ShopRecord> collected = new ArrayList<>();
+        for (Int2ObjectMap<ShopRecord> chunk : chunks.values()) {
+            collected.addAll(chunk.values());
+        }
+        return collected;
+    }
+
+    @NotNull
+    public synchronized List<ShopRecord> values() {
+        List<ShopRecord> collected = new ArrayList<>(size);
+        for (Long2ObjectMap<Int2ObjectMap<ShopRecord>> chunks : worlds.values()) {
+            for (Int2ObjectMap<ShopRecord> chunk : chunks.values()) {
+                collected.addAll(chunk.values());
+            }
+        }
+        return collected;
+    }
+
+    /**
+     * Gets the amount of cold shops, this method is lock-free.
+     *
+     * @return cold shops amount
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized void clear() {
+        worlds.clear();
+        sortedChunks.clear();
+        byId.clear();
+        byOwner.clear();
+        size = 0;
+    }
+}
@@ -0,0 +1,78 @@
+package com.ghostchu.quickshop.shop.index;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live shop counters by world and by owner, for both registered (including cold) shops and loaded shops.
+ * <p>
+ * Maintained by the ShopManager when shops registered, removed, loaded or unloaded, so the lookups are O(1)
+ * and can be read from any thread.
+ */
+public class ShopCounters {
+    private final Map<String, Integer> totalByWorld = new ConcurrentHashMap<>();
+    private final Map<String, Integer> loadedByWorld = new ConcurrentHashMap<>();
+    private final Map<UUID, Integer> totalByOwner = new ConcurrentHashMap<>();
+    private final Map<UUID, Integer> loadedByOwner = new ConcurrentHashMap<>();
+
+    public void registered(@NotNull String world, @NotNull UUID owner, int delta) {
+        adjust(totalByWorld, world, delta);
+        adjust(totalByOwner, owner, delta);
+    }
+
+    public void loaded(@NotNull String world, @NotNull UUID owner, int delta) {
+        adjust(loadedByWorld, world, delta);
+        adjust(loadedByOwner, owner, delta);
+    }
+
+    /**
+     * Moves the counters from old owner to new owner
+     *
+     * @param oldOwner The owner before the change
+     * @param newOwner The owner after the change
+     * @param loaded   Whether the shop is loaded
+     */
+    public void ownerChanged(@NotNull UUID oldOwner, @NotNull UUID newOwner, boolean loaded) {
+        adjust(totalByOwner, oldOwner, -1);
+        adjust(totalByOwner, newOwner, 1);
+        if (loaded) {
+            adjust(loadedByOwner, oldOwner, -1);
+            adjust(loadedByOwner, newOwner, 1);
+        }
+    }
+
+    public int getTotal(@NotNull String world) {
+        return totalByWorld.getOrDefault(world, 0);
+    }
+
+    public int getLoaded(@NotNull String world) {
+        return loadedByWorld.getOrDefault(world, 0);
+    }
+
+    public int getTotal(@NotNull UUID owner) {
+        return totalByOwner.getOrDefault(owner, 0);
+    }
+
+    public int getLoaded(@NotNull UUID owner) {
+        return loadedByOwner.getOrDefault(owner, 0);
+    }
+
+    /**
+     * Resets the registered counters, the loaded counters are kept since the shops unload by themselves.
+     */
+    public void clearRegistered() {
+        totalByWorld.clear();
+        totalByOwner.clear();
+    }
+
+    private static <K> void adjust(@NotNull Map<K, Integer> counters, @NotNull K key, int delta) {
+        // Drop the zero entries, so the maps won't grow with the worlds and owners ever seen
+        counters.compute(key, (k, v) -> {
+            int value = (v == null ? 0 : v) + delta;
+            return value <= 0 ? null : value;
+        });
+    }
+}
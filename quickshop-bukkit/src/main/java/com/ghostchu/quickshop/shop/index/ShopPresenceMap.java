@@ -0,0 +1,179 @@
+package com.ghostchu.quickshop.shop.index;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Per-world chunk bitmap of the shops presence, including both hydrated and cold shops.
+ * <p>
+ * Chunks are grouped into 32x32 regions, each region is a 1024 bits bitmap, so a negative lookup
+ * is one region probe and a bit test. The shop amount of each chunk is counted to clear the bit
+ * when the last shop in chunk removed. Writes are rare and locked, reads use an optimistic read first.
+ */
+public class ShopPresenceMap {
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+    private static final int REGION_WORDS = (1 << (REGION_SHIFT * 2)) / Long.SIZE;
+    private final Map<String, WorldPresence> worlds = new Object2ObjectOpenHashMap<>();
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Counts a shop in the specific chunk
+     *
+     * @param world  The world name
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     */
+    public void add(@NotNull String world, int chunkX, int chunkZ) {
+        long stamp = lock.writeLock();
+        try {
+            WorldPresence presence = worlds.computeIfAbsent(world, k -> new WorldPresence());
+            if (presence.counts.addTo(ShopSpatialIndex.chunkKey(chunkX, chunkZ), 1) == 0) {
+                presence.set(chunkX, chunkZ, true);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Uncounts a shop in the specific chunk
+     *
+     * @param world  The world name
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     */
+    public void remove(@NotNull String world, int chunkX, int chunkZ) {
+        long stamp = lock.writeLock();
+        try {
+            WorldPresence presence = worlds.get(world);
+            if (presence == null) {
+                return;
+            }
+            long key = ShopSpatialIndex.chunkKey(chunkX, chunkZ);
+            int count = presence.counts.get(key);
+            if (count > 1) {
+                presence.counts.put(key, count - 1);
+                return;
+            }
+            if (count == 1) {
+                presence.counts.remove(key);
+                presence.set(chunkX, chunkZ, false);
+            }
+            if (presence.counts.isEmpty()) {
+                worlds.remove(world);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Checks if there any shops in the chunks around the block, the chunks within one block reach
+     * (the attached sign or double chest half) are checked.
+     *
+     * @param world The world name
+     * @param x     block x
+     * @param z     block z
+     * @return false if no shops can be found from this block
+     */
+    public boolean mayHaveShopNear(@NotNull String world, int x, int z) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                boolean present = test(world, x, z);
+                if (lock.validate(stamp)) {
+                    return present;
+                }
+            } catch (RuntimeException ignored) {
+                // Raced with a rehash, retry with read lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return test(world, x, z);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private boolean test(@NotNull String world, int x, int z) {
+        WorldPresence presence = worlds.get(world);
+        if (presence == null) {
+            return false;
+        }
+        int minChunkX = (x - 1) >> 4;
+        int maxChunkX = (x + 1) >> 4;
+        int minChunkZ = (z - 1) >> 4;
+        int maxChunkZ = (z + 1) >> 4;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                if (presence.get(chunkX, chunkZ)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all presence marks
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            worlds.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static class WorldPresence {
+        private final Long2ObjectMap<long[]> regions = new Long2ObjectOpenHashMap<>();
+        private final Long2IntMap counts = new Long2IntOpenHashMap();
+
+        private boolean get(int chunkX, int chunkZ) {
+            long[] bits = regions.get(ShopSpatialIndex.chunkKey(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT));
+            if (bits == null) {
+                return false;
+            }
+            int bit = bitIndex(chunkX, chunkZ);
+            return (bits[bit >>> 6] & (1L << bit)) != 0;
+        }
+
+        private void set(int chunkX, int chunkZ, boolean present) {
+            long regionKey = ShopSpatialIndex.chunkKey(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT);
+            long[] bits = regions.get(regionKey);
+            if (bits == null) {
+                if (!present) {
+                    return;
+                }
+                bits = new long[REGION_WORDS];
+                regions.put(regionKey, bits);
+            }
+            int bit = bitIndex(chunkX, chunkZ);
+            if (present) {
+                bits[bit >>> 6] |= 1L << bit;
+                return;
+            }
+            bits[bit >>> 6] &= ~(1L << bit);
+            for (long word : bits) {
+                if (word != 0) {
+                    return;
+                }
+            }
+            regions.remove(regionKey);
+        }
+
+        private static int bitIndex(int chunkX, int chunkZ) {
+            return ((chunkZ & REGION_MASK) << REGION_SHIFT) | (chunkX & REGION_MASK);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.ghostchu.quickshop.shop.index;
+
+import com.ghostchu.quickshop.api.database.bean.InfoRecord;
+import com.ghostchu.quickshop.api.database.bean.ShopRecord;
+import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.common.util.QuickExecutor;
+import com.ghostchu.quickshop.util.Util;
+import com.ghostchu.quickshop.util.logger.Log;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Search index for /qs find, contains a per-world spatial grid and a trigram inverted index of the
+ * normalized item names and materials.
+ * <p>
+ * The mutators never block, they copy the searchable fields of the shop on the calling thread (the server thread)
+ * and queue the change. The queued changes are applied to the postings one by one before searching, or in background
+ * when too many changes queued, so the index is never rebuilt as a whole.
+ * <p>
+ * The cold shops are indexed from their raw records, the records are immutable so the item is deserialized
+ * off-thread when the change applied, and they can be searched without hydrating them.
+ */
+public class ShopSearchIndex {
+    private static final int CELL_SHIFT = 4;
+    private static final int DRAIN_THRESHOLD = 4096;
+    private final Queue<Runnable> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final Object indexLock = new Object();
+    /* Only accessed under indexLock */
+    private final List<Document> docs = new ArrayList<>();
+    private final IntArrayList freeSlots = new IntArrayList();
+    private final Map<UUID, Integer> hotSlots = new HashMap<>();
+    private final Long2IntMap coldSlots = new Long2IntOpenHashMap();
+    private final Map<String, Long2ObjectMap<IntSet>> grids = new HashMap<>();
+    private final Long2ObjectMap<IntSet> trigrams = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * Adds the shop to index, or refreshes it after the item changed
+     *
+     * @param shop The shop
+     */
+    public void put(@NotNull Shop shop) {
+        Document document = Document.of(shop);
+        UUID key = shop.getRuntimeRandomUniqueId();
+        if (document == null) {
+            submit(() -> removeHot(key));
+            return;
+        }
+        submit(() -> {
+            removeHot(key);
+            hotSlots.put(key, add(document));
+        });
+    }
+
+    /**
+     * Removes the shop from index
+     *
+     * @param shop The shop
+     */
+    public void remove(@NotNull Shop shop) {
+        UUID key = shop.getRuntimeRandomUniqueId();
+        submit(() -> removeHot(key));
+    }
+
+    /**
+     * Indexes the shop again, should be called after the shop item changed
+     *
+     * @param shop The shop
+     */
+    public void invalidate(@NotNull Shop shop) {
+        Document document = Document.of(shop);
+        UUID key = shop.getRuntimeRandomUniqueId();
+        submit(() -> {
+            // Only refresh the indexed shops, the removed shop must not come back
+            if (removeHot(key) && document != null) {
+                hotSlots.put(key, add(document));
+            }
+        });
+    }
+
+    /**
+     * Adds the cold shop to index
+     *
+     * @param shopRecord The raw record of cold shop
+     */
+    public void putCold(@NotNull ShopRecord shopRecord) {
+        long shopId = shopRecord.getInfoRecord().getShopId();
+        submit(() -> {
+            removeCold(shopId, null);
+            Document document = Document.of(shopRecord);
+            if (document != null) {
+                coldSlots.put(shopId, add(document));
+            }
+        });
+    }
+
+    /**
+     * Removes the cold shop from index, should be called after the shop hydrated or replaced
+     *
+     * @param shopRecord The raw record of cold shop
+     */
+    public void removeCold(@NotNull ShopRecord shopRecord) {
+        long shopId = shopRecord.getInfoRecord().getShopId();
+        submit(() -> removeCold(shopId, shopRecord));
+    }
+
+    public void clear() {
+        submit(() -> {
+            docs.clear();
+            freeSlots.clear();
+            hotSlots.clear();
+            coldSlots.clear();
+            grids.clear();
+            trigrams.clear();
+        });
+    }
+
+    /**
+     * Searches the shops off-thread
+     *
+     * @param query The query
+     * @return The matched shops, sorted by distance from near to far
+     */
+    @NotNull
+    public CompletableFuture<List<Result>> search(@NotNull Query query) {
+        return CompletableFuture.supplyAsync(() -> {
+            synchronized (indexLock) {
+                applyPendingChanges();
+                return searchIndexed(query);
+            }
+        }, QuickExecutor.getCommonExecutor());
+    }
+
+    private void submit(@NotNull Runnable change) {
+        pendingChanges.add(change);
+        if (pendingCount.incrementAndGet() >= DRAIN_THRESHOLD && draining.compareAndSet(false, true)) {
+            // Nobody searched for a while, apply them in background so the queue won't grow forever
+            QuickExecutor.getCommonExecutor().execute(() -> {
+                try {
+                    synchronized (indexLock) {
+                        applyPendingChanges();
+                    }
+                } finally {
+                    draining.set(false);
+                }
+            });
+        }
+    }
+
+    /* Under indexLock */
+    private void applyPendingChanges() {
+        Runnable change;
+        while ((change = pendingChanges.poll()) != null) {
+            pendingCount.decrementAndGet();
+            try {
+                change.run();
+            } catch (RuntimeException e) {
+                Log.debug("Failed to apply the change to shop search index: " + e.getMessage());
+            }
+        }
+    }
+
+    /* Under indexLock */
+    private boolean removeHot(@NotNull UUID key) {
+        Integer slot = hotSlots.remove(key);
+        if (slot == null) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    /* Under indexLock */
+    private void removeCold(long shopId, @Nullable ShopRecord expected) {
+        if (!coldSlots.containsKey(shopId)) {
+            return;
+        }
+        int slot = coldSlots.get(shopId);
+        if (expected != null && docs.get(slot).shopRecord != expected) {
+            return;
+        }
+        coldSlots.remove(shopId);
+        removeSlot(slot);
+    }
+
+    /* Under indexLock */
+    private int add(@NotNull Document document) {
+        int slot;
+        if (freeSlots.isEmpty()) {
+            slot = docs.size();
+            docs.add(document);
+        } else {
+            slot = freeSlots.popInt();
+            docs.set(slot, document);
+        }
+        grids.computeIfAbsent(document.world, k -> new Long2ObjectOpenHashMap<>())
+                .computeIfAbsent(cellKey(document), k -> new IntOpenHashSet(4))
+                .add(slot);
+        for (long trigram : document.trigrams()) {
+            trigrams.computeIfAbsent(trigram, k -> new IntOpenHashSet(8)).add(slot);
+        }
+        return slot;
+    }
+
+    /* Under indexLock */
+    private void removeSlot(int slot) {
+        Document document = docs.set(slot, null);
+        freeSlots.add(slot);
+        Long2ObjectMap<IntSet> grid = grids.get(document.world);
+        if (grid != null) {
+            long cellKey = cellKey(document);
+            IntSet cell = grid.get(cellKey);
+            if (cell != null && cell.remove(slot) && cell.isEmpty()) {
+                grid.remove(cellKey);
+                if (grid.isEmpty()) {
+                    grids.remove(document.world);
+                }
+            }
+        }
+        for (long trigram : document.trigrams()) {
+            IntSet posting = trigrams.get(trigram);
+            if (posting != null && posting.remove(slot) && posting.isEmpty()) {
+                trigrams.remove(trigram);
+            }
+        }
+    }
+
+    private static long cellKey(@NotNull Document document) {
+        return ShopSpatialIndex.chunkKey(document.x >> CELL_SHIFT, document.z >> CELL_SHIFT);
+    }
+
+    /* Under indexLock */
+    @NotNull
+    private List<Result> searchIndexed(@NotNull Query query) {
+        Long2ObjectMap<IntSet> grid = grids.get(query.world());
+        if (grid == null) {
+            return Collections.emptyList();
+        }
+        // Candidates in range
+        List<IntSet> cells = new ArrayList<>();
+        int inRange = 0;
+        int minCellX = (int) Math.floor(query.x() - query.maxDistance()) >> CELL_SHIFT;
+        int maxCellX = (int) Math.floor(query.x() + query.maxDistance()) >> CELL_SHIFT;
+        int minCellZ = (int) Math.floor(query.z() - query.maxDistance()) >> CELL_SHIFT;
+        int maxCellZ = (int) Math.floor(query.z() + query.maxDistance()) >> CELL_SHIFT;
+        if ((long) (maxCellX - minCellX + 1) * (maxCellZ - minCellZ + 1) > grid.size()) {
+            // The range covers more cells than the world has, visit the cells directly
+            for (Long2ObjectMap.Entry<IntSet> entry : grid.long2ObjectEntrySet()) {
+                int cellX = ShopSpatialIndex.chunkX(entry.getLongKey());
+                int cellZ = ShopSpatialIndex.chunkZ(entry.getLongKey());
+                if (cellX >= minCellX && cellX <= maxCellX && cellZ >= minCellZ && cellZ <= maxCellZ) {
+                    cells.add(entry.getValue());
+                    inRange += entry.getValue().size();
+                }
+            }
+        } else {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                    IntSet cell = grid.get(ShopSpatialIndex.chunkKey(cellX, cellZ));
+                    if (cell != null) {
+                        cells.add(cell);
+                        inRange += cell.size();
+                    }
+                }
+            }
+        }
+        // Candidates contain the text, only usable when the unmatched shops not required
+        IntSet textCandidates = null;
+        if (!query.includeUnmatched() && query.text().length() >= 3) {
+            for (int i = 0; i + 3 <= query.text().length(); i++) {
+                IntSet posting = trigrams.get(trigram(query.text(), i));
+                if (posting == null) {
+                    return Collections.emptyList();
+                }
+                if (textCandidates == null || posting.size() < textCandidates.size()) {
+                    textCandidates = posting;
+                }
+            }
+        }
+        double maxDistanceSquared = query.maxDistance() * query.maxDistance();
+        List<Result> results = new ArrayList<>();
+        if (textCandidates != null && textCandidates.size() < inRange) {
+            for (int slot : textCandidates) {
+                collect(docs.get(slot), query, maxDistanceSquared, results);
+            }
+        } else {
+            for (IntSet cell : cells) {
+                for (int slot : cell) {
+                    collect(docs.get(slot), query, maxDistanceSquared, results);
+                }
+            }
+        }
+        results.sort(Comparator.comparingDouble(Result::distance));
+        return results;
+    }
+
+    private static void collect(@NotNull Document doc, @NotNull Query query, double maxDistanceSquared, @NotNull List<Result> results) {
+        if (!doc.world.equals(query.world())) {
+            return;
+        }
+        double distanceSquared = doc.distanceSquared(query);
+        if (distanceSquared > maxDistanceSquared) {
+            return;
+        }
+        boolean textMatched = doc.matches(query.text());
+        if (!textMatched && !query.includeUnmatched()) {
+            return;
+        }
+        results.add(new Result(doc.shop, doc.shopRecord, doc.item, Math.sqrt(distanceSquared), textMatched));
+    }
+
+    private static void collectTrigrams(@NotNull String text, @NotNull LongSet collector) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            collector.add(trigram(text, i));
+        }
+    }
+
+    private static long trigram(@NotNull String text, int offset) {
+        return ((long) text.charAt(offset) << 32) | ((long) text.charAt(offset + 1) << 16) | text.charAt(offset + 2);
+    }
+
+    /**
+     * The search query
+     *
+     * @param world            The world name
+     * @param x                The center x
+     * @param y                The center y
+     * @param z                The center z
+     * @param maxDistance      The max distance from center
+     * @param text             The lowercase text should be contained in the item name or material
+     * @param includeUnmatched Whether to return the shops in range not matching the text too, for the callers
+     *                         matching the items by themselves on the server thread (e.g. the ItemMarker)
+     */
+    public record Query(@NotNull String world, double x, double y, double z, double maxDistance,
+                        @NotNull String text, boolean includeUnmatched) {
+    }
+
+    /**
+     * The search result
+     *
+     * @param shop        The shop, null if the shop was cold when indexed
+     * @param shopRecord  The raw record of cold shop, null if the shop was hydrated when indexed
+     * @param item        The copy of the shop item when indexed, must not be modified
+     * @param distance    The distance from query center
+     * @param textMatched Whether the item name or material contains the text
+     */
+    public record Result(@Nullable Shop shop, @Nullable ShopRecord shopRecord, @NotNull ItemStack item, double distance,
+                         boolean textMatched) {
+    }
+
+    private record Document(Shop shop, ShopRecord shopRecord, ItemStack item, String world, int x, int y, int z,
+                            String name, String material) {
+        @Nullable
+        private static Document of(@NotNull Shop shop) {
+            Location location = shop.getLocation();
+            World world = location.getWorld();
+            if (world == null) {
+                return null;
+            }
+            // Copied on the calling thread, the live shop item is never read off-thread
+            ItemStack item = shop.getItem().clone();
+            return of(shop, null, item, world.getName(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        }
+
+        @Nullable
+        private static Document of(@NotNull ShopRecord shopRecord) {
+            ItemStack item;
+            try {
+                item = Util.deserialize(shopRecord.getDataRecord().getItem());
+            } catch (Exception e) {
+                Log.debug("Failed to deserialize the item of cold shop " + shopRecord.getInfoRecord().getShopId() + ", skipped from search index.");
+                return null;
+            }
+            if (item == null) {
+                return null;
+            }
+            InfoRecord info = shopRecord.getInfoRecord();
+            return of(null, shopRecord, item, info.getWorld(), info.getX(), info.getY(), info.getZ());
+        }
+
+        @NotNull
+        private static Document of(@Nullable Shop shop, @Nullable ShopRecord shopRecord, @NotNull ItemStack item,
+                                   @NotNull String world, int x, int y, int z) {
+            String name = ChatColor.stripColor(LegacyComponentSerializer.legacySection().serialize(Util.getItemStackName(item))).toLowerCase();
+            return new Document(shop, shopRecord, item, world, x, y, z, name, item.getType().name().toLowerCase());
+        }
+
+        @NotNull
+        private LongSet trigrams() {
+            LongSet collector = new LongOpenHashSet();
+            collectTrigrams(name, collector);
+            collectTrigrams(material, collector);
+            return collector;
+        }
+
+        private boolean matches(@NotNull String text) {
+            return name.contains(text) || material.contains(text);
+        }
+
+        private double distanceSquared(@NotNull Query query) {
+            double dx = x - query.x();
+            double dy = y - query.y();
+            double dz = z - query.z();
+            return dx * dx + dy * dy + dz * dz;
+        }
+    }
+}
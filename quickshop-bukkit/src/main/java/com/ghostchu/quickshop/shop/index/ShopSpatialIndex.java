@@ -0,0 +1,482 @@
+package com.ghostchu.quickshop.shop.index;
+
+import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.api.shop.ShopChunk;
+import com.ghostchu.quickshop.shop.SimpleShopChunk;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongRBTreeSet;
+import it.unimi.dsi.fastutil.longs.LongSortedSet;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.bukkit.Location;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Primitive World - Chunk - Block index for shops.
+ * <p>
+ * Chunk coordinates are packed into a long and block positions inside the chunk into an int,
+ * so {@link #get(String, int, int, int)} can lookup a shop without allocating any key objects.
+ * Writes happen on the server thread, reads may come from any thread and use an optimistic read first.
+ * <p>
+ * The nested Map views used by the legacy ShopManager API are built lazily and cached until the
+ * index changes, they are read-only snapshots.
+ * <p>
+ * Each world also keeps its chunks sorted by x then z, so the region queries only visit the chunks
+ * contain shops in the x range, instead of probing every chunk coordinate in the region.
+ */
+public class ShopSpatialIndex {
+    private final Map<String, WorldBucket> worlds = new Object2ObjectOpenHashMap<>();
+    private final StampedLock lock = new StampedLock();
+    private int size;
+    private long modCount;
+    @Nullable
+    private volatile Map<String, Map<ShopChunk, Map<Location, Shop>>> view;
+    private long viewModCount = -1;
+
+    /**
+     * Packs chunk coordinates into a long key.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return packed key
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX & 0xFFFFFFFFL) | (((long) chunkZ & 0xFFFFFFFFL) << 32);
+    }
+
+    public static int chunkX(long chunkKey) {
+        return (int) chunkKey;
+    }
+
+    public static int chunkZ(long chunkKey) {
+        return (int) (chunkKey >>> 32);
+    }
+
+    /**
+     * Packs chunk coordinates into a long key which sorted by chunk x then chunk z.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return sortable key
+     */
+    static long sortKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | ((chunkZ ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Packs block coordinates into an int key that is unique inside the chunk.
+     *
+     * @param x block x
+     * @param y block y
+     * @param z block z
+     * @return packed key
+     */
+    public static int blockKey(int x, int y, int z) {
+        return (y << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    /**
+     * Puts a shop into the index
+     *
+     * @param world The world name
+     * @param shop  The shop
+     * @return The shop previously indexed at this position, or null
+     */
+    @Nullable
+    public Shop put(@NotNull String world, @NotNull Shop shop) {
+        Location loc = shop.getLocation();
+        int x = loc.getBlockX();
+        int y = loc.getBlockY();
+        int z = loc.getBlockZ();
+        long stamp = lock.writeLock();
+        try {
+            WorldBucket worldBucket = worlds.computeIfAbsent(world, WorldBucket::new);
+            long key = chunkKey(x >> 4, z >> 4);
+            ChunkBucket chunkBucket = worldBucket.chunks.get(key);
+            if (chunkBucket == null) {
+                chunkBucket = new ChunkBucket(world, x >> 4, z >> 4);
+                worldBucket.chunks.put(key, chunkBucket);
+                worldBucket.sorted.add(sortKey(x >> 4, z >> 4));
+            }
+            Shop previous = chunkBucket.shops.put(blockKey(x, y, z), shop);
+            if (previous == null) {
+                size++;
+            }
+            chunkBucket.view = null;
+            worldBucket.view = null;
+            modCount++;
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the shop at given position from the index
+     *
+     * @param world The world name
+     * @param x     block x
+     * @param y     block y
+     * @param z     block z
+     * @return The removed shop, or null if nothing there
+     */
+    @Nullable
+    public Shop remove(@NotNull String world, int x, int y, int z) {
+        long stamp = lock.writeLock();
+        try {
+            WorldBucket worldBucket = worlds.get(world);
+            if (worldBucket == null) {
+                return null;
+            }
+            long key = chunkKey(x >> 4, z >> 4);
+            ChunkBucket chunkBucket = worldBucket.chunks.get(key);
+            if (chunkBucket == null) {
+                return null;
+            }
+            Shop removed = chunkBucket.shops.remove(blockKey(x, y, z));
+            if (removed == null) {
+                return null;
+            }
+            size--;
+            if (chunkBucket.shops.isEmpty()) {
+                worldBucket.chunks.remove(key);
+                worldBucket.sorted.remove(sortKey(x >> 4, z >> 4));
+            }
+            if (worldBucket.chunks.isEmpty()) {
+                worlds.remove(world);
+            }
+            chunkBucket.view = null;
+            worldBucket.view = null;
+            modCount++;
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Gets the shop at given position, no objects will be allocated.
+     *
+     * @param world The world name
+     * @param x     block x
+     * @param y     block y
+     * @param z     block z
+     * @return The shop, or null if no shop there
+     */
+    @Nullable
+    public Shop get(@NotNull String world, int x, int y, int z) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                Shop shop = lookup(world, x, y, z);
+                if (lock.validate(stamp)) {
+                    return shop;
+                }
+            } catch (RuntimeException ignored) {
+                // Raced with a rehash, retry with read lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return lookup(world, x, y, z);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Nullable
+    private Shop lookup(@NotNull String world, int x, int y, int z) {
+        WorldBucket worldBucket = worlds.get(world);
+        if (worldBucket == null) {
+            return null;
+        }
+        ChunkBucket chunkBucket = worldBucket.chunks.get(chunkKey(x >> 4, z >> 4));
+        if (chunkBucket == null) {
+            return null;
+        }
+        return chunkBucket.shops.get(blockKey(x, y, z));
+    }
+
+    /**
+     * Checks if there any shops in the specific chunk.
+     *
+     * @param world  The world name
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return true if any shop in this chunk
+     */
+    public boolean hasShops(@NotNull String world, int chunkX, int chunkZ) {
+        long stamp = lock.readLock();
+        try {
+            WorldBucket worldBucket = worlds.get(world);
+            return worldBucket != null && worldBucket.chunks.containsKey(chunkKey(chunkX, chunkZ));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets a read-only view of shops in the specific chunk
+     *
+     * @param world  The world name
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return Location - Shop map, or null if no shops in this chunk
+     */
+    @Nullable
+    public Map<Location, Shop> getChunkView(@NotNull String world, int chunkX, int chunkZ) {
+        long stamp = lock.readLock();
+        try {
+            WorldBucket worldBucket = worlds.get(world);
+            if (worldBucket == null) {
+                return null;
+            }
+            ChunkBucket chunkBucket = worldBucket.chunks.get(chunkKey(chunkX, chunkZ));
+            if (chunkBucket == null) {
+                return null;
+            }
+            return chunkBucket.view();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Collects the shops inside the region, all heights included. Only the chunks contain shops are visited.
+     *
+     * @param world The world name
+     * @param minX  min block x, inclusive
+     * @param minZ  min block z, inclusive
+     * @param maxX  max block x, inclusive
+     * @param maxZ  max block z, inclusive
+     * @return A new list contains the shops inside the region
+     */
+    @NotNull
+    public List<Shop> getRegion(@NotNull String world, int minX, int minZ, int maxX, int maxZ) {
+        List<Shop> collected = new ArrayList<>();
+        int minChunkX = minX >> 4;
+        int minChunkZ = minZ >> 4;
+        int maxChunkX = maxX >> 4;
+        int maxChunkZ = maxZ >> 4;
+        long stamp = lock.readLock();
+        try {
+            WorldBucket worldBucket = worlds.get(world);
+            if (worldBucket == null) {
+                return collected;
+            }
+            LongIterator it = worldBucket.sorted.tailSet(sortKey(minChunkX, Integer.MIN_VALUE)).iterator();
+            while (it.hasNext()) {
+                long sortKey = it.nextLong();
+                int chunkX = (int) (sortKey >> 32);
+                if (chunkX > maxChunkX) {
+                    break;
+                }
+                int chunkZ = (int) sortKey ^ Integer.MIN_VALUE;
+                if (chunkZ < minChunkZ || chunkZ > maxChunkZ) {
+                    continue;
+                }
+                ChunkBucket chunkBucket = worldBucket.chunks.get(chunkKey(chunkX, chunkZ));
+                boolean inside = chunkX > minChunkX && chunkX < maxChunkX && chunkZ > minChunkZ && chunkZ < maxChunkZ;
+                for (Shop shop : chunkBucket.shops.values()) {
+                    if (inside) {
+                        collected.add(shop);
+                        continue;
+                    }
+                    Location loc = shop.getLocation();
+                    if (loc.getBlockX() >= minX && loc.getBlockX() <= maxX && loc.getBlockZ() >= minZ && loc.getBlockZ() <= maxZ) {
+                        collected.add(shop);
+                    }
+                }
+            }
+            return collected;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets a read-only view of shops in the specific world
+     *
+     * @param world The world name
+     * @return Chunk - Location - Shop map, or null if no shops in this world
+     */
+    @Nullable
+    public Map<ShopChunk, Map<Location, Shop>> getWorldView(@NotNull String world) {
+        long stamp = lock.readLock();
+        try {
+            WorldBucket worldBucket = worlds.get(world);
+            if (worldBucket == null) {
+                return null;
+            }
+            return worldBucket.view();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets a read-only view of whole index
+     *
+     * @return World - Chunk - Location - Shop map
+     */
+    @NotNull
+    public Map<String, Map<ShopChunk, Map<Location, Shop>>> getView() {
+        long stamp = lock.readLock();
+        try {
+            Map<String, Map<ShopChunk, Map<Location, Shop>>> cached = this.view;
+            if (cached != null && viewModCount == modCount) {
+                return cached;
+            }
+            Map<String, Map<ShopChunk, Map<Location, Shop>>> built = new HashMap<>(worlds.size());
+            for (Map.Entry<String, WorldBucket> entry : worlds.entrySet()) {
+                built.put(entry.getKey(), entry.getValue().view());
+            }
+            cached = Collections.unmodifiableMap(built);
+            // Benign race between readers, both of them built same snapshot
+            this.view = cached;
+            this.viewModCount = modCount;
+            return cached;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Visits all shops in the specific world
+     *
+     * @param world    The world name
+     * @param consumer The visitor
+     */
+    public void forEachInWorld(@NotNull String world, @NotNull Consumer<Shop> consumer) {
+        List<Shop> collected;
+        long stamp = lock.readLock();
+        try {
+            WorldBucket worldBucket = worlds.get(world);
+            if (worldBucket == null) {
+                return;
+            }
+            collected = new ArrayList<>();
+            for (ChunkBucket chunkBucket : worldBucket.chunks.values()) {
+                collected.addAll(chunkBucket.shops.values());
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        // Call the consumer outside the lock, so it allowed to modify the index
+        collected.forEach(consumer);
+    }
+
+    /**
+     * Collects all shops in this index
+     *
+     * @return A new list contains all shops
+     */
+    @NotNull
+    public List<Shop> values() {
+        long stamp = lock.readLock();
+        try {
+            List<Shop> collected = new ArrayList<>(size);
+            for (WorldBucket worldBucket : worlds.values()) {
+                for (ChunkBucket chunkBucket : worldBucket.chunks.values()) {
+                    collected.addAll(chunkBucket.shops.values());
+                }
+            }
+            return collected;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets the amount of shops in this index
+     *
+     * @return shops amount
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Removes all shops from index
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            worlds.clear();
+            size = 0;
+            modCount++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static class WorldBucket {
+        private final String world;
+        private final Long2ObjectMap<ChunkBucket> chunks = new Long2ObjectOpenHashMap<>();
+        private final LongSortedSet sorted = new LongRBTreeSet();
+        @Nullable
+        private volatile Map<ShopChunk, Map<Location, Shop>> view;
+
+        private WorldBucket(@NotNull String world) {
+            this.world = world;
+        }
+
+        @NotNull
+        private Map<ShopChunk, Map<Location, Shop>> view() {
+            Map<ShopChunk, Map<Location, Shop>> cached = this.view;
+            if (cached != null) {
+                return cached;
+            }
+            Map<ShopChunk, Map<Location, Shop>> built = new HashMap<>(chunks.size());
+            for (ChunkBucket chunkBucket : chunks.values()) {
+                built.put(new SimpleShopChunk(world, chunkBucket.x, chunkBucket.z), chunkBucket.view());
+            }
+            cached = Collections.unmodifiableMap(built);
+            this.view = cached;
+            return cached;
+        }
+    }
+
+    private static class ChunkBucket {
+        private final String world;
+        private final int x;
+        private final int z;
+        private final Int2ObjectMap<Shop> shops = new Int2ObjectOpenHashMap<>(4);
+        @Nullable
+        private volatile Map<Location, Shop> view;
+
+        private ChunkBucket(@NotNull String world, int x, int z) {
+            this.world = world;
+            this.x = x;
+            this.z = z;
+        }
+
+        @NotNull
+        private Map<Location, Shop> view() {
+            Map<Location, Shop> cached = this.view;
+            if (cached != null) {
+                return cached;
+            }
+            Map<Location, Shop> built = new HashMap<>(shops.size());
+            for (Shop shop : shops.values()) {
+                built.put(shop.getLocation(), shop);
+            }
+            cached = Collections.unmodifiableMap(built);
+            this.view = cached;
+            return cached;
+        }
+    }
+}
@@ -55,6 +55,16 @@ public class BukkitInventoryWrapper implements InventoryWrapper {
         return this.manager;
     }
 
+    /**
+     * Gets the wrapped bukkit inventory
+     *
+     * @return The bukkit inventory
+     */
+    @NotNull
+    public Inventory getInventory() {
+        return inventory;
+    }
+
     @Override
     public InventoryHolder getHolder() {
         return inventory.getHolder();
@@ -1,6 +1,7 @@
 package com.ghostchu.quickshop.shop.operation;
 
 import com.ghostchu.quickshop.api.inventory.InventoryWrapper;
+import com.ghostchu.quickshop.api.inventory.InventoryWrapperType;
 import com.ghostchu.quickshop.api.operation.Operation;
 import com.ghostchu.quickshop.util.Util;
 import org.bukkit.inventory.ItemStack;
@@ -10,6 +11,9 @@ import java.util.Map;
 
 /**
  * Operation to add items
+ * <p>
+ * The bukkit inventories are changed through an {@link InventoryJournal}, so only the touched slots are
+ * recorded for rollback. The plugin provided inventories may handle the items by themselves, snapshot is used.
  */
 public class AddItemOperation implements Operation {
     private final ItemStack item;
@@ -18,6 +22,7 @@ public class AddItemOperation implements Operation {
     private final int itemMaxStackSize;
     private boolean committed;
     private boolean rollback;
+    private InventoryJournal journal;
     private ItemStack[] snapshot;
 
 
@@ -38,6 +43,10 @@ public class AddItemOperation implements Operation {
     @Override
     public boolean commit() {
         committed = true;
+        if (inv.getInventoryType() == InventoryWrapperType.BUKKIT) {
+            this.journal = new InventoryJournal(inv);
+            return journal.add(this.item, this.amount, itemMaxStackSize) == 0;
+        }
         this.snapshot = inv.createSnapshot();
         int remains = this.amount;
         int lastRemains = -1;
@@ -70,6 +79,9 @@ public class AddItemOperation implements Operation {
     @Override
     public boolean rollback() {
         rollback = true;
+        if (journal != null) {
+            return journal.rollback();
+        }
         return inv.restoreSnapshot(this.snapshot);
     }
 }
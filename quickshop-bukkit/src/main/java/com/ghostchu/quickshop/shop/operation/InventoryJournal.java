@@ -0,0 +1,130 @@
+package com.ghostchu.quickshop.shop.operation;
+
+import com.ghostchu.quickshop.api.inventory.InventoryWrapper;
+import com.ghostchu.quickshop.api.inventory.InventoryWrapperIterator;
+import com.ghostchu.quickshop.shop.inventory.BukkitInventoryWrapper;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Undo journal for the item operations, moves the items slot by slot and records the previous
+ * contents of the touched slots only, so the rollback puts these slots back instead of restoring
+ * a snapshot of the whole inventory.
+ * <p>
+ * It's not thread-safe, please use that in main-thread
+ */
+class InventoryJournal {
+    private final InventoryWrapper inv;
+    // Slot index -> contents before first touched, null value for the empty slot
+    private final Int2ObjectMap<ItemStack> previous = new Int2ObjectOpenHashMap<>();
+    private int lastTouched = -1;
+
+    InventoryJournal(@NotNull InventoryWrapper inv) {
+        this.inv = inv;
+    }
+
+    /**
+     * Adds the items, fills the similar stacks first and then the empty slots.
+     * The stacks are limited by the inventory max stack size too, same as {@link org.bukkit.inventory.Inventory#addItem(ItemStack...)}.
+     *
+     * @param item             The item to add
+     * @param amount           The amount to add
+     * @param itemMaxStackSize The max stack size of item
+     * @return The amount not fit
+     */
+    int add(@NotNull ItemStack item, int amount, int itemMaxStackSize) {
+        int maxStackSize = inv instanceof BukkitInventoryWrapper bukkitInventory
+                ? Math.min(itemMaxStackSize, bukkitInventory.getInventory().getMaxStackSize())
+                : itemMaxStackSize;
+        int remains = amount;
+        InventoryWrapperIterator it = inv.iterator();
+        for (int index = 0; remains > 0 && it.hasNext(); index++) {
+            ItemStack stack = it.next();
+            if (isEmpty(stack) || stack.getAmount() >= maxStackSize || !stack.isSimilar(item)) {
+                continue;
+            }
+            record(index, stack);
+            int added = Math.min(remains, maxStackSize - stack.getAmount());
+            stack.setAmount(stack.getAmount() + added);
+            it.setCurrent(stack);
+            remains -= added;
+        }
+        it = inv.iterator();
+        for (int index = 0; remains > 0 && it.hasNext(); index++) {
+            ItemStack stack = it.next();
+            if (!isEmpty(stack)) {
+                continue;
+            }
+            record(index, null);
+            ItemStack added = item.clone();
+            added.setAmount(Math.min(remains, maxStackSize));
+            it.setCurrent(added);
+            remains -= added.getAmount();
+        }
+        return remains;
+    }
+
+    /**
+     * Removes the items from the similar stacks
+     *
+     * @param item   The item to remove
+     * @param amount The amount to remove
+     * @return The amount not found
+     */
+    int remove(@NotNull ItemStack item, int amount) {
+        int remains = amount;
+        InventoryWrapperIterator it = inv.iterator();
+        for (int index = 0; remains > 0 && it.hasNext(); index++) {
+            ItemStack stack = it.next();
+            if (isEmpty(stack) || !stack.isSimilar(item)) {
+                continue;
+            }
+            record(index, stack);
+            int removed = Math.min(remains, stack.getAmount());
+            remains -= removed;
+            if (removed == stack.getAmount()) {
+                it.setCurrent(null);
+            } else {
+                stack.setAmount(stack.getAmount() - removed);
+                it.setCurrent(stack);
+            }
+        }
+        return remains;
+    }
+
+    /**
+     * Puts the previous contents back to the touched slots
+     *
+     * @return The result of rollback.
+     */
+    boolean rollback() {
+        InventoryWrapperIterator it = inv.iterator();
+        for (int index = 0; index <= lastTouched; index++) {
+            if (!it.hasNext()) {
+                return false;
+            }
+            it.next();
+            if (previous.containsKey(index)) {
+                ItemStack stack = previous.get(index);
+                it.setCurrent(stack == null ? null : stack.clone());
+            }
+        }
+        return true;
+    }
+
+    private void record(int index, @Nullable ItemStack stack) {
+        if (previous.containsKey(index)) {
+            return;
+        }
+        previous.put(index, stack == null ? null : stack.clone());
+        lastTouched = Math.max(lastTouched, index);
+    }
+
+    private static boolean isEmpty(@Nullable ItemStack stack) {
+        return stack == null || stack.getType() == Material.AIR || stack.getAmount() <= 0;
+    }
+}
@@ -1,6 +1,7 @@
 package com.ghostchu.quickshop.shop.operation;
 
 import com.ghostchu.quickshop.api.inventory.InventoryWrapper;
+import com.ghostchu.quickshop.api.inventory.InventoryWrapperType;
 import com.ghostchu.quickshop.api.operation.Operation;
 import com.ghostchu.quickshop.util.Util;
 import org.bukkit.inventory.ItemStack;
@@ -10,6 +11,8 @@ import java.util.Map;
 
 /**
  * Operation to remove items
+ * <p>
+ * Same as {@link AddItemOperation}, the bukkit inventories are journaled by slots and others use snapshot.
  */
 public class RemoveItemOperation implements Operation {
     private final ItemStack item;
@@ -18,6 +21,7 @@ public class RemoveItemOperation implements Operation {
     private final int itemMaxStackSize;
     private boolean committed;
     private boolean rollback;
+    private InventoryJournal journal;
     private ItemStack[] snapshot;
 
     /**
@@ -38,6 +42,10 @@ public class RemoveItemOperation implements Operation {
     @Override
     public boolean commit() {
         committed = true;
+        if (inv.getInventoryType() == InventoryWrapperType.BUKKIT) {
+            this.journal = new InventoryJournal(inv);
+            return journal.remove(item, amount) == 0;
+        }
         this.snapshot = inv.createSnapshot();
         int remains = amount;
         while (remains > 0) {
@@ -58,6 +66,9 @@ public class RemoveItemOperation implements Operation {
     @Override
     public boolean rollback() {
         rollback = true;
+        if (journal != null) {
+            return journal.rollback();
+        }
         return inv.restoreSnapshot(snapshot);
     }
 
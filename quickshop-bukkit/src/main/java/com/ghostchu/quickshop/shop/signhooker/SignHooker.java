@@ -8,9 +8,16 @@ import com.comphenix.protocol.events.PacketAdapter;
 import com.comphenix.protocol.events.PacketEvent;
 import com.comphenix.protocol.reflect.StructureModifier;
 import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.api.localization.text.ProxiedLocale;
 import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.shop.ContainerShop;
 import com.ghostchu.quickshop.util.Util;
 import com.ghostchu.quickshop.util.logger.Log;
+import com.ghostchu.simplereloadlib.ReloadResult;
+import com.ghostchu.simplereloadlib.ReloadStatus;
+import com.ghostchu.simplereloadlib.Reloadable;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -20,17 +27,30 @@ import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
-public class SignHooker {
+/**
+ * Sends the per-player shop sign text by packets.
+ * <p>
+ * Chunk packets are coalesced by chunk and flushed together, each shop sign rendered once per locale
+ * and the rendered lines are cached by shop, locale, sign content version and remaining stock/space.
+ */
+public class SignHooker implements Reloadable {
+    private static final int FLUSH_DELAY_TICKS = 2;
     private final QuickShop PLUGIN;
     private final ProtocolManager PROTOCOL_MANAGER = ProtocolLibrary.getProtocolManager();
+    private final Cache<RenderKey, List<Component>> renderCache = CacheBuilder.newBuilder()
+            .maximumSize(8192)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+    /* Chunks pending to send the signs, guarded by itself since the packets may sent from netty threads */
+    private final Map<PendingChunk, Set<Player>> pendingChunks = new HashMap<>();
     private PacketAdapter chunkAdapter;
 
     public SignHooker(QuickShop plugin) {
         PLUGIN = plugin;
+        PLUGIN.getReloadManager().register(this);
         registerListener();
     }
 
@@ -58,11 +78,7 @@ public class SignHooker {
                 //chunk z
                 int z = integerStructureModifier.read(1);
 
-                Map<Location, Shop> shops = PLUGIN.getShopManager().getShops(player.getWorld().getName(), x, z);
-                if (shops == null) {
-                    return;
-                }
-                Bukkit.getScheduler().runTaskLater(PLUGIN, () -> shops.forEach((loc, shop) -> updatePerPlayerShopSign(player, loc, shop)), 2);
+                schedule(new PendingChunk(player.getWorld().getName(), x, z), player);
             }
         };
 
@@ -70,7 +86,52 @@ public class SignHooker {
         Log.debug("SignHooker chunk adapter registered.");
     }
 
+    private void schedule(@NotNull PendingChunk chunk, @NotNull Player player) {
+        synchronized (pendingChunks) {
+            if (pendingChunks.isEmpty()) {
+                Bukkit.getScheduler().runTaskLater(PLUGIN, this::flushPendingChunks, FLUSH_DELAY_TICKS);
+            }
+            pendingChunks.computeIfAbsent(chunk, k -> new HashSet<>()).add(player);
+        }
+    }
+
+    private void flushPendingChunks() {
+        Map<PendingChunk, Set<Player>> flushing;
+        synchronized (pendingChunks) {
+            flushing = new HashMap<>(pendingChunks);
+            pendingChunks.clear();
+        }
+        for (Map.Entry<PendingChunk, Set<Player>> entry : flushing.entrySet()) {
+            PendingChunk chunk = entry.getKey();
+            Map<Location, Shop> shops = PLUGIN.getShopManager().getShops(chunk.world(), chunk.x(), chunk.z());
+            if (shops == null) {
+                continue;
+            }
+            List<Player> players = new ArrayList<>(entry.getValue().size());
+            for (Player player : entry.getValue()) {
+                if (player.isOnline() && player.getWorld().getName().equals(chunk.world())) {
+                    players.add(player);
+                }
+            }
+            if (players.isEmpty()) {
+                continue;
+            }
+            shops.forEach((loc, shop) -> updatePerPlayerShopSign(players, loc, shop));
+        }
+    }
+
     public void updatePerPlayerShopSign(Player player, Location location, Shop shop) {
+        updatePerPlayerShopSign(Collections.singletonList(player), location, shop);
+    }
+
+    /**
+     * Sends the shop sign text to players, the text rendered once for each locale.
+     *
+     * @param players  The players to send
+     * @param location The shop location
+     * @param shop     The shop
+     */
+    public void updatePerPlayerShopSign(@NotNull Collection<Player> players, @NotNull Location location, @NotNull Shop shop) {
         Util.ensureThread(false);
         if (!shop.isLoaded()) {
             return;
@@ -78,11 +139,40 @@ public class SignHooker {
         if (!Util.isLoaded(location)) {
             return;
         }
-        Log.debug("Updating per-player packet sign: Player=" + player.getName() + ", Location=" + location + ", Shop=" + shop.getShopId());
-        List<Component> lines = shop.getSignText(PLUGIN.getTextManager().findRelativeLanguages(player));
-        for (Sign sign : shop.getSigns()) {
-            PLUGIN.getPlatform().sendSignTextChange(player, sign, PLUGIN.getConfig().getBoolean("shop.sign-glowing"), lines);
+        List<Sign> signs = shop.getSigns();
+        if (signs.isEmpty()) {
+            return;
+        }
+        Log.debug("Updating per-player packet sign: Players=" + players.size() + ", Location=" + location + ", Shop=" + shop.getShopId());
+        boolean glowing = PLUGIN.getConfig().getBoolean("shop.sign-glowing");
+        Map<String, List<Component>> rendered = new HashMap<>(4);
+        for (Player player : players) {
+            ProxiedLocale locale = PLUGIN.getTextManager().findRelativeLanguages(player);
+            List<Component> lines = rendered.computeIfAbsent(locale.getLocale(), k -> render(shop, locale));
+            for (Sign sign : signs) {
+                PLUGIN.getPlatform().sendSignTextChange(player, sign, glowing, lines);
+            }
+        }
+    }
+
+    @NotNull
+    private List<Component> render(@NotNull Shop shop, @NotNull ProxiedLocale locale) {
+        if (!(shop instanceof ContainerShop containerShop)) {
+            return shop.getSignText(locale);
+        }
+        // Stock and space are cached by the shop, cheap to query
+        int remaining = switch (shop.getShopType()) {
+            case BUYING -> shop.getRemainingSpace();
+            case SELLING -> shop.getRemainingStock();
+            default -> 0;
+        };
+        RenderKey key = new RenderKey(shop.getRuntimeRandomUniqueId(), locale.getLocale(), containerShop.getSignContentVersion(), remaining);
+        List<Component> lines = renderCache.getIfPresent(key);
+        if (lines == null) {
+            lines = shop.getSignText(locale);
+            renderCache.put(key, lines);
         }
+        return lines;
     }
 
     public void unload() {
@@ -100,10 +190,32 @@ public class SignHooker {
             return;
         }
         Collection<Entity> nearbyPlayers = world.getNearbyEntities(shop.getLocation(), PLUGIN.getServer().getViewDistance() * 16, shop.getLocation().getWorld().getMaxHeight(), PLUGIN.getServer().getViewDistance() * 16);
+        List<Player> players = new ArrayList<>();
         for (Entity nearbyPlayer : nearbyPlayers) {
             if (nearbyPlayer instanceof Player player) {
-                updatePerPlayerShopSign(player, location, shop);
+                players.add(player);
             }
         }
+        if (!players.isEmpty()) {
+            updatePerPlayerShopSign(players, location, shop);
+        }
+    }
+
+    /**
+     * Callback for reloading
+     *
+     * @return Reloading success
+     */
+    @Override
+    public ReloadResult reloadModule() {
+        // Languages or sign settings may changed
+        renderCache.invalidateAll();
+        return ReloadResult.builder().status(ReloadStatus.SUCCESS).build();
+    }
+
+    private record PendingChunk(@NotNull String world, int x, int z) {
+    }
+
+    private record RenderKey(@NotNull UUID shop, @NotNull String locale, long version, int remaining) {
     }
 }
@@ -9,6 +9,7 @@ import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.api.shop.permission.BuiltInShopPermission;
 import com.ghostchu.quickshop.common.util.CommonUtil;
 import com.ghostchu.quickshop.common.util.RomanNumber;
+import com.ghostchu.quickshop.shop.SimpleShopManager;
 import com.ghostchu.quickshop.shop.display.AbstractDisplayItem;
 import com.ghostchu.quickshop.util.logger.Log;
 import io.papermc.lib.PaperLib;
@@ -634,15 +635,8 @@ public class Util {
      * @return The shops.
      */
     public static int getShopsInWorld(@NotNull String worldName) {
-        int cost = 0;
-        Iterator<Shop> iterator = plugin.getShopManager().getShopIterator();
-        while (iterator.hasNext()) {
-            Shop shop = iterator.next();
-            if (Objects.requireNonNull(shop.getLocation().getWorld()).getName().equals(worldName)) {
-                cost++;
-            }
-        }
-        return cost;
+        // The counters including the cold shops, no need to hydrate them
+        return ((SimpleShopManager) plugin.getShopManager()).getCounters().getTotal(worldName);
     }
 
     /**
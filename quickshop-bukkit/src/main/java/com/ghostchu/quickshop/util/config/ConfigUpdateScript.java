@@ -44,6 +44,41 @@ public class ConfigUpdateScript {
         getConfig().set("trying-fix-banlance-insuffient", null);
     }
 
+    @UpdateScript(version = 1012)
+    public void configurableExecutors() {
+        getConfig().set("executor.database-threads", 0);
+        getConfig().set("executor.common-threads", 0);
+        getConfig().set("executor.shop-save-threads", 0);
+        getConfig().set("executor.queue-capacity", 0);
+        getConfig().set("executor.virtual-threads", true);
+    }
+
+    @UpdateScript(version = 1013)
+    public void aggregatedOngoingFee() {
+        getConfig().set("shop.ongoing-fee.aggregate-by-owner", false);
+        getConfig().set("shop.ongoing-fee.tick-budget-ms", 5);
+    }
+
+    @UpdateScript(version = 1017)
+    public void hydrateTickBudget() {
+        getConfig().set("shop.hydrate-tick-budget-ms", 5);
+    }
+
+    @UpdateScript(version = 1016)
+    public void authorizeCacheTtl() {
+        getConfig().set("shop.authorize-cache-ttl", 10);
+    }
+
+    @UpdateScript(version = 1015)
+    public void displayCheckTickBudget() {
+        getConfig().set("shop.display-check-tick-budget-ms", 2);
+    }
+
+    @UpdateScript(version = 1014)
+    public void signUpdateTickBudget() {
+        getConfig().set("shop.sign-update-tick-budget-ms", 2);
+    }
+
     @UpdateScript(version = 1004)
     public void configurableDatabaseProperties() {
         getConfig().set("database.queue", null);
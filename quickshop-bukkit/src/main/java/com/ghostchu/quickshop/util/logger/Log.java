@@ -3,53 +3,100 @@ package com.ghostchu.quickshop.util.logger;
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.common.util.Timer;
 import com.ghostchu.quickshop.util.Util;
-import com.google.common.collect.EvictingQueue;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Queue;
-import java.util.Set;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
+/**
+ * In-memory debug logs, for the paste and dev mode.
+ * <p>
+ * Records are kept in a preallocated lock-free ring buffer, writers claim a slot by sequence and never block each other.
+ * The {@link Supplier} and parameterized ("{}" placeholders) overloads defer the message formatting until the record
+ * actually read, the parameterized ones only when all arguments are immutable, otherwise they are formatted at once
+ * so the records never hold the live objects. Caller capture can be switched per {@link Type} by the system property
+ * {@code com.ghostchu.quickshop.util.logger.Log.caller-types}, e.g. {@code DEBUG,TRANSACTION}, all types by default.
+ */
 public class Log {
-    private static final ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock();
-    private static final int BUFFER_SIZE = 500 * Type.values().length;
-    private static final Queue<Record> LOGGER_BUFFER = EvictingQueue.create(BUFFER_SIZE);
+    private static final int BUFFER_SIZE = Integer.highestOneBit(500 * Type.values().length - 1) << 1;
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+    private static final AtomicReferenceArray<Record> LOGGER_BUFFER = new AtomicReferenceArray<>(BUFFER_SIZE);
+    private static final AtomicLong WRITE_SEQUENCE = new AtomicLong(0);
     private static final boolean DISABLE_LOCATION_RECORDING;
+    private static final Set<Type> CALLER_CAPTURE_TYPES = EnumSet.allOf(Type.class);
 
     static {
         // Cannot replace with Util since it depend on this class
         DISABLE_LOCATION_RECORDING = Boolean.parseBoolean(System.getProperty("com.ghostchu.quickshop.util.logger."));
+        String callerTypes = System.getProperty("com.ghostchu.quickshop.util.logger.Log.caller-types");
+        if (callerTypes != null) {
+            CALLER_CAPTURE_TYPES.clear();
+            for (String type : StringUtils.split(callerTypes, ',')) {
+                try {
+                    CALLER_CAPTURE_TYPES.add(Type.valueOf(type.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Switches the caller capture for specific log type
+     *
+     * @param type    The log type
+     * @param capture Should capture the caller
+     */
+    public static void setCallerCapture(@NotNull Type type, boolean capture) {
+        synchronized (CALLER_CAPTURE_TYPES) {
+            if (capture) {
+                CALLER_CAPTURE_TYPES.add(type);
+            } else {
+                CALLER_CAPTURE_TYPES.remove(type);
+            }
+        }
+    }
+
+    public static boolean isCallerCapture(@NotNull Type type) {
+        return !DISABLE_LOCATION_RECORDING && CALLER_CAPTURE_TYPES.contains(type);
+    }
+
+    @Nullable
+    private static Caller captureCaller(@NotNull Type type, int steps) {
+        if (!isCallerCapture(type)) {
+            return null;
+        }
+        // One more frame for this method
+        return Caller.create(steps + 1);
+    }
+
+    private static void append(@NotNull Record recordEntry) {
+        long sequence = WRITE_SEQUENCE.getAndIncrement();
+        recordEntry.sequence = sequence;
+        LOGGER_BUFFER.set((int) (sequence & BUFFER_MASK), recordEntry);
+        debugStdOutputs(recordEntry);
+    }
+
+    private static void append(@NotNull Level level, @NotNull Type type, @NotNull Object message, @Nullable Object[] args, @Nullable Caller caller) {
+        append(new Record(level, type, message, args, isCallerCapture(type) ? caller : null));
     }
 
     public static void cron(@NotNull String message) {
-        cron(Level.INFO, message, Caller.create());
+        cron(Level.INFO, message, captureCaller(Type.CRON, 2));
     }
 
     @ApiStatus.Internal
     public static void cron(@NotNull Level level, @NotNull String message, @Nullable Caller caller) {
-        LOCK.writeLock().lock();
-        try {
-            Record recordEntry;
-            if (DISABLE_LOCATION_RECORDING) {
-                recordEntry = new Record(level, Type.CRON, message, null);
-            } else {
-                recordEntry = new Record(level, Type.CRON, message, caller);
-            }
-            LOGGER_BUFFER.offer(recordEntry);
-            debugStdOutputs(recordEntry);
-        } finally {
-            LOCK.writeLock().unlock();
-        }
-
+        append(level, Type.CRON, message, null, caller);
     }
 
     private static void debugStdOutputs(Record recordEntry) {
@@ -59,152 +106,182 @@ public class Log {
     }
 
     public static void cron(@NotNull Level level, @NotNull String message) {
-        cron(level, message, Caller.create());
+        cron(level, message, captureCaller(Type.CRON, 2));
     }
 
     public static void debug(@NotNull String message) {
-        debug(Level.INFO, message, Caller.create());
+        debug(Level.INFO, message, captureCaller(Type.DEBUG, 2));
     }
 
-    @ApiStatus.Internal
-    public static void debug(@NotNull Level level, @NotNull String message, @Nullable Caller caller) {
-        LOCK.writeLock().lock();
-        try {
-            Record recordEntry;
-            if (DISABLE_LOCATION_RECORDING) {
-                recordEntry = new Record(level, Type.DEBUG, message, null);
-            } else {
-                recordEntry = new Record(level, Type.DEBUG, message, caller);
+    /**
+     * Logs a debug message, the message only be created when the record read.
+     *
+     * @param message The message supplier
+     */
+    public static void debug(@NotNull Supplier<String> message) {
+        append(Level.INFO, Type.DEBUG, message, null, captureCaller(Type.DEBUG, 2));
+    }
+
+    /**
+     * Logs a debug message, the "{}" placeholders will be replaced by the arguments when the record read.
+     * The message is formatted at once if any argument is mutable, e.g. an ItemStack.
+     *
+     * @param format The message format
+     * @param args   The arguments
+     */
+    public static void debug(@NotNull String format, @Nullable Object... args) {
+        if (isImmutable(args)) {
+            append(Level.INFO, Type.DEBUG, format, args, captureCaller(Type.DEBUG, 2));
+        } else {
+            append(Level.INFO, Type.DEBUG, format(format, args), null, captureCaller(Type.DEBUG, 2));
+        }
+    }
+
+    private static boolean isImmutable(@Nullable Object[] args) {
+        if (args == null) {
+            return true;
+        }
+        for (Object arg : args) {
+            // Not Number, the atomic numbers are mutable
+            if (arg != null && !(arg instanceof String || arg instanceof Integer || arg instanceof Long || arg instanceof Double
+                    || arg instanceof Float || arg instanceof Short || arg instanceof Byte || arg instanceof Boolean
+                    || arg instanceof Character || arg instanceof Enum<?> || arg instanceof UUID)) {
+                return false;
             }
-            LOGGER_BUFFER.offer(recordEntry);
-            debugStdOutputs(recordEntry);
-        } finally {
-            LOCK.writeLock().unlock();
         }
+        return true;
+    }
+
+    @ApiStatus.Internal
+    public static void debug(@NotNull Level level, @NotNull String message, @Nullable Caller caller) {
+        append(level, Type.DEBUG, message, null, caller);
     }
 
     public static void debug(@NotNull Level level, @NotNull String message) {
-        debug(level, message, Caller.create());
+        debug(level, message, captureCaller(Type.DEBUG, 2));
     }
 
     @NotNull
-    public static List<Record> fetchLogs() {
-        LOCK.readLock().lock();
-        try {
-            return new ArrayList<>(LOGGER_BUFFER);
-        } finally {
-            LOCK.readLock().unlock();
+    private static List<Record> snapshot() {
+        long end = WRITE_SEQUENCE.get();
+        long start = Math.max(0, end - BUFFER_SIZE);
+        List<Record> records = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            Record recordEntry = LOGGER_BUFFER.get((int) (sequence & BUFFER_MASK));
+            // Slot not published yet or already overwritten by a newer record
+            if (recordEntry != null && recordEntry.sequence == sequence) {
+                records.add(recordEntry);
+            }
         }
+        return records;
+    }
+
+    @NotNull
+    public static List<Record> fetchLogs() {
+        return snapshot();
     }
 
     @NotNull
     public static List<Record> fetchLogs(@NotNull Type type) {
-        LOCK.readLock().lock();
-        try {
-            return LOGGER_BUFFER.stream().filter(recordEntry -> recordEntry.getType() == type).toList();
-        } finally {
-            LOCK.readLock().unlock();
-        }
+        return snapshot().stream().filter(recordEntry -> recordEntry.getType() == type).toList();
     }
 
     @NotNull
     public static List<Record> fetchLogsExclude(@NotNull Type... excludes) {
-        LOCK.readLock().lock();
-        try {
-            List<Record> records = new ArrayList<>();
-            for (Record recordEntry : LOGGER_BUFFER) {
-                if (ArrayUtils.contains(excludes, recordEntry.getType())) {
-                    continue;
-                }
-                records.add(recordEntry);
+        List<Record> records = new ArrayList<>();
+        for (Record recordEntry : snapshot()) {
+            if (ArrayUtils.contains(excludes, recordEntry.getType())) {
+                continue;
             }
-            return records;
-        } finally {
-            LOCK.readLock().unlock();
+            records.add(recordEntry);
         }
+        return records;
     }
 
     @NotNull
     public static List<Record> fetchLogsLevel(@NotNull Type type, @NotNull Level level) {
-        LOCK.readLock().lock();
-        try {
-            return LOGGER_BUFFER.stream().filter(recordEntry -> recordEntry.getType() == type && recordEntry.getLevel() == level).toList();
-        } finally {
-            LOCK.readLock().unlock();
-        }
+        return snapshot().stream().filter(recordEntry -> recordEntry.getType() == type && recordEntry.getLevel() == level).toList();
     }
 
     public static void permission(@NotNull String message) {
-        permission(Level.INFO, message, Caller.create(3));
+        permission(Level.INFO, message, captureCaller(Type.PERMISSION, 3));
+    }
+
+    /**
+     * Logs a permission message, the message only be created when the record read.
+     *
+     * @param message The message supplier
+     */
+    public static void permission(@NotNull Supplier<String> message) {
+        append(Level.INFO, Type.PERMISSION, message, null, captureCaller(Type.PERMISSION, 3));
     }
 
     @ApiStatus.Internal
     public static void permission(@NotNull Level level, @NotNull String message, @Nullable Caller caller) {
-        LOCK.writeLock().lock();
-        try {
-            Record recordEntry;
-            if (DISABLE_LOCATION_RECORDING) {
-                recordEntry = new Record(level, Type.PERMISSION, message, null);
-            } else {
-                recordEntry = new Record(level, Type.PERMISSION, message, caller);
-            }
-            LOGGER_BUFFER.offer(recordEntry);
-            debugStdOutputs(recordEntry);
-        } finally {
-            LOCK.writeLock().unlock();
-        }
-
+        append(level, Type.PERMISSION, message, null, caller);
     }
 
     public static void permission(@NotNull Level level, @NotNull String message) {
-        permission(level, message, Caller.create(3));
+        permission(level, message, captureCaller(Type.PERMISSION, 3));
     }
 
     public static void timing(@NotNull String operation, @NotNull Timer timer) {
-        timing(Level.INFO, operation, timer, Caller.create());
+        timing(Level.INFO, operation, timer, captureCaller(Type.TIMING, 2));
     }
 
     @ApiStatus.Internal
     public static void timing(@NotNull Level level, @NotNull String operation, @NotNull Timer timer, @Nullable Caller caller) {
-        LOCK.writeLock().lock();
-        try {
-            Record recordEntry;
-            if (DISABLE_LOCATION_RECORDING) {
-                recordEntry = new Record(level, Type.TIMING, operation + " (cost " + timer.getPassedTime() + " ms)", null);
-            } else {
-                recordEntry = new Record(level, Type.TIMING, operation + " (cost " + timer.getPassedTime() + " ms)", caller);
-            }
-            LOGGER_BUFFER.offer(recordEntry);
-            debugStdOutputs(recordEntry);
-        } finally {
-            LOCK.writeLock().unlock();
-        }
-
+        // The passed time must be taken now
+        append(level, Type.TIMING, "{} (cost {} ms)", new Object[]{operation, timer.getPassedTime()}, caller);
     }
 
     public static void transaction(@NotNull String message) {
-        transaction(Level.INFO, message, Caller.create());
+        transaction(Level.INFO, message, captureCaller(Type.TRANSACTION, 2));
     }
 
     @ApiStatus.Internal
     public static void transaction(@NotNull Level level, @NotNull String message, @Nullable Caller caller) {
-        LOCK.writeLock().lock();
-        try {
-            Record recordEntry;
-            if (DISABLE_LOCATION_RECORDING) {
-                recordEntry = new Record(level, Type.TRANSACTION, message, null);
-            } else {
-                recordEntry = new Record(level, Type.TRANSACTION, message, caller);
-            }
-            LOGGER_BUFFER.offer(recordEntry);
-            debugStdOutputs(recordEntry);
-        } finally {
-            LOCK.writeLock().unlock();
-        }
+        append(level, Type.TRANSACTION, message, null, caller);
     }
 
     public static void transaction(@NotNull Level level, @NotNull String message) {
-        transaction(level, message, Caller.create());
+        transaction(level, message, captureCaller(Type.TRANSACTION, 2));
+    }
+
+    /**
+     * Logs a transaction message, the message only be created when the record read.
+     *
+     * @param message The message supplier
+     */
+    public static void transaction(@NotNull Supplier<String> message) {
+        append(Level.INFO, Type.TRANSACTION, message, null, captureCaller(Type.TRANSACTION, 2));
+    }
+
+    /**
+     * Logs a transaction message, the message only be created when the record read.
+     *
+     * @param level   The log level
+     * @param message The message supplier
+     */
+    public static void transaction(@NotNull Level level, @NotNull Supplier<String> message) {
+        append(level, Type.TRANSACTION, message, null, captureCaller(Type.TRANSACTION, 2));
+    }
+
+    @NotNull
+    static String format(@NotNull String format, @Nullable Object[] args) {
+        if (args == null || args.length == 0) {
+            return format;
+        }
+        StringBuilder sb = new StringBuilder(format.length() + 16 * args.length);
+        int argIndex = 0;
+        int cursor = 0;
+        int placeholder;
+        while (argIndex < args.length && (placeholder = format.indexOf("{}", cursor)) != -1) {
+            sb.append(format, cursor, placeholder).append(args[argIndex++]);
+            cursor = placeholder + 2;
+        }
+        sb.append(format, cursor, format.length());
+        return sb.toString();
     }
 
     @Getter
@@ -215,20 +292,58 @@ public class Log {
         private final Level level;
         @NotNull
         private final Type type;
+        /* String, Supplier<String> or the format of args */
         @NotNull
-        private final String message;
+        @Getter(lombok.AccessLevel.NONE)
+        private final Object messageSource;
+        @Nullable
+        @Getter(lombok.AccessLevel.NONE)
+        private final Object[] args;
         @Nullable
         private final Caller caller;
+        @EqualsAndHashCode.Exclude
+        @Getter(lombok.AccessLevel.NONE)
+        private volatile long sequence = -1;
         @Nullable
+        @EqualsAndHashCode.Exclude
+        @Getter(lombok.AccessLevel.NONE)
+        private volatile String messageCache;
+        @Nullable
+        @EqualsAndHashCode.Exclude
         private String toStringCache;
 
         public Record(@NotNull Level level, @NotNull Type type, @NotNull String message, @Nullable Caller caller) {
+            this(level, type, message, null, caller);
+        }
+
+        Record(@NotNull Level level, @NotNull Type type, @NotNull Object messageSource, @Nullable Object[] args, @Nullable Caller caller) {
             this.level = level;
             this.type = type;
-            this.message = message;
+            this.messageSource = messageSource;
+            this.args = args;
             this.caller = caller;
         }
 
+        /**
+         * Gets the message, the lazy message will be formatted at first call.
+         *
+         * @return The message
+         */
+        @NotNull
+        public String getMessage() {
+            String message = messageCache;
+            if (message != null) {
+                return message;
+            }
+            if (messageSource instanceof Supplier<?> supplier) {
+                message = String.valueOf(supplier.get());
+            } else {
+                message = format(String.valueOf(messageSource), args);
+            }
+            messageCache = message;
+            return message;
+        }
+
         @Override
         public String toString() {
             if (toStringCache != null) {
@@ -288,8 +403,8 @@ public class Log {
 
         @NotNull
         public static Caller create(int steps) {
-            List<StackWalker.StackFrame> caller = STACK_WALKER.walk(frames -> frames.limit(steps + 1L).toList());
-            StackWalker.StackFrame frame = caller.get(steps);
+            // Only the target frame is materialized
+            StackWalker.StackFrame frame = STACK_WALKER.walk(frames -> frames.skip(steps).findFirst()).orElseThrow();
             String threadName = Thread.currentThread().getName();
             String className = frame.getClassName();
             String methodName = frame.getMethodName();
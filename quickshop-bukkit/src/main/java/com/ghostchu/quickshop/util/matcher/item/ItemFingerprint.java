@@ -0,0 +1,32 @@
+package com.ghostchu.quickshop.util.matcher.item;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Precomputed fingerprint of an item prototype, used to reject the obvious mismatches without cloning the ItemStack.
+ * <p>
+ * Amount is not a part of the fingerprint. Equal fingerprints doesn't mean the items are matched,
+ * the full comparison still required on fingerprint collisions.
+ *
+ * @param type            The item material
+ * @param hasMeta         Whether the item has item meta
+ * @param metaHash        The hash code of item meta, 0 if no meta
+ * @param customModelData The custom model data, null if not set
+ * @param shopId          The item shop id provided by platform, null if not set
+ */
+public record ItemFingerprint(@NotNull Material type, boolean hasMeta, int metaHash, @Nullable Integer customModelData,
+                              @Nullable String shopId) {
+
+    @NotNull
+    static ItemFingerprint of(@NotNull ItemStack stack, @Nullable String shopId) {
+        if (!stack.hasItemMeta()) {
+            return new ItemFingerprint(stack.getType(), false, 0, null, shopId);
+        }
+        ItemMeta meta = stack.getItemMeta();
+        return new ItemFingerprint(stack.getType(), true, meta.hashCode(), meta.hasCustomModelData() ? meta.getCustomModelData() : null, shopId);
+    }
+}
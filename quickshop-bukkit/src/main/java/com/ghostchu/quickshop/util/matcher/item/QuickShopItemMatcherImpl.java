@@ -28,6 +28,7 @@ public class QuickShopItemMatcherImpl implements ItemMatcher, Reloadable {
 
     private int workType;
 
+    private boolean customModelDataRequired;
 
     public QuickShopItemMatcherImpl(@NotNull QuickShop plugin) {
         this.plugin = plugin;
@@ -38,6 +39,7 @@ public class QuickShopItemMatcherImpl implements ItemMatcher, Reloadable {
     private void init() {
         itemMetaMatcher = new ItemMetaMatcher(plugin.getConfig().getConfigurationSection("matcher.item"), this);
         workType = plugin.getConfig().getInt("matcher.work-type");
+        customModelDataRequired = plugin.getConfig().getBoolean("matcher.item.custommodeldata");
     }
 
     public QuickShopItemMatcherImpl(QuickShop plugin, ItemMetaMatcher itemMetaMatcher, int workType) {
@@ -46,6 +48,52 @@ public class QuickShopItemMatcherImpl implements ItemMatcher, Reloadable {
         this.workType = workType;
     }
 
+    /**
+     * Creates the fingerprint of the item prototype, the caller should cache it until the prototype changed.
+     *
+     * @param requireStack The item prototype
+     * @return The fingerprint
+     */
+    @NotNull
+    public ItemFingerprint fingerprint(@NotNull ItemStack requireStack) {
+        return ItemFingerprint.of(requireStack, plugin.getPlatform().getItemShopId(requireStack));
+    }
+
+    /**
+     * Compares the item with a prototype which has a precomputed fingerprint.
+     * The obvious mismatches will be rejected by fingerprint, without cloning the ItemStacks.
+     *
+     * @param fingerprint  The fingerprint of requireStack
+     * @param requireStack The item prototype
+     * @param givenStack   The item to test
+     * @return true if the itemstacks match, same as {@link #matches(ItemStack, ItemStack)}
+     */
+    public boolean matches(@NotNull ItemFingerprint fingerprint, @NotNull ItemStack requireStack, @Nullable ItemStack givenStack) {
+        if (givenStack == null) {
+            return false;
+        }
+        if (fingerprint.shopId() != null && fingerprint.shopId().equals(plugin.getPlatform().getItemShopId(givenStack))) {
+            return true;
+        }
+        // All work types are comparing the type and the meta existence
+        if (fingerprint.type() != givenStack.getType() || fingerprint.hasMeta() != givenStack.hasItemMeta()) {
+            return false;
+        }
+        // getItemMeta() clones the meta, so the given meta only read once and only when the type and meta existence collided
+        if (fingerprint.hasMeta() && (workType != 0 || customModelDataRequired)) {
+            ItemMeta givenMeta = givenStack.getItemMeta();
+            // Work type 1 and 2 need the meta equals, so the hash codes must be same
+            if (workType != 0 && fingerprint.metaHash() != givenMeta.hashCode()) {
+                return false;
+            }
+            Integer givenCustomModelData = givenMeta.hasCustomModelData() ? givenMeta.getCustomModelData() : null;
+            if (!Objects.equals(fingerprint.customModelData(), givenCustomModelData)) {
+                return false;
+            }
+        }
+        return compare(requireStack, givenStack);
+    }
+
     /**
      * Gets the ItemMatcher provider name
      *
@@ -81,33 +129,33 @@ public class QuickShopItemMatcherImpl implements ItemMatcher, Reloadable {
         }
 
         if (requireStack == null || givenStack == null) {
-            Log.debug(
-                    "Match failed: A stack is null: "
-                            + "requireStack["
-                            + requireStack
-                            + "] givenStack["
-                            + givenStack
-                            + "]");
+            Log.debug("Match failed: A stack is null: requireStack[{}] givenStack[{}]", requireStack, givenStack);
             return false; // One of them is null (Can't be both, see above)
         }
 
         String shopIdOrigin = plugin.getPlatform().getItemShopId(requireStack);
         if (shopIdOrigin != null) {
-            Log.debug("ShopId compare -> Origin: " + shopIdOrigin + "  Given: " + plugin.getPlatform().getItemShopId(givenStack));
             String shopIdTester = plugin.getPlatform().getItemShopId(givenStack);
+            Log.debug("ShopId compare -> Origin: {}  Given: {}", shopIdOrigin, shopIdTester);
             if (shopIdOrigin.equals(shopIdTester)) {
                 return true;
             }
         }
+        return compare(requireStack, givenStack);
+    }
 
-        requireStack = requireStack.clone();
-        requireStack.setAmount(1);
-        givenStack = givenStack.clone();
-        givenStack.setAmount(1);
+    private boolean compare(@NotNull ItemStack requireStack, @NotNull ItemStack givenStack) {
         if (workType == 1) {
+            // isSimilar ignores the amount, no clone needed
             return requireStack.isSimilar(givenStack);
         }
         if (workType == 2) {
+            if (requireStack.getAmount() != givenStack.getAmount()) {
+                requireStack = requireStack.clone();
+                requireStack.setAmount(1);
+                givenStack = givenStack.clone();
+                givenStack.setAmount(1);
+            }
             return requireStack.equals(givenStack);
         }
 
@@ -175,7 +223,7 @@ public class QuickShopItemMatcherImpl implements ItemMatcher, Reloadable {
         return ReloadResult.builder().status(ReloadStatus.SUCCESS).build();
     }
 
-    private static class ItemMetaMatcher {
+    static class ItemMetaMatcher {
 
         private final List<Matcher> matcherList = new ArrayList<>();
 
@@ -492,7 +540,7 @@ public class QuickShopItemMatcherImpl implements ItemMatcher, Reloadable {
             if (meta1 != null && meta2 != null) {
                 for (Matcher matcher : matcherList) {
                     boolean result = matcher.match(meta1, meta2);
-                    Log.debug("Matcher: " + matcher.getClass().getName() + " Result: " + result);
+                    Log.debug("Matcher: {} Result: {}", matcher.getClass().getName(), result);
                     if (!result) {
                         return false;
                     }
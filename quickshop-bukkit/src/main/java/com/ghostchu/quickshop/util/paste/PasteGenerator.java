@@ -246,6 +246,8 @@ public class PasteGenerator {
         add(new ReplaceableModulesItem());
         add(new PluginsInfoItem());
         add(new CachePerformanceItem());
+        add(new ExecutorInfoItem());
+        add(new ShopSaveInfoItem());
         add(new ConfigCollectorItem());
         add(new DebugLogsItem());
         add(new TransactionLogsItem());
@@ -0,0 +1,45 @@
+package com.ghostchu.quickshop.util.paste.item;
+
+import com.ghostchu.quickshop.common.util.MonitoredExecutor;
+import com.ghostchu.quickshop.common.util.QuickExecutor;
+import com.ghostchu.quickshop.util.paste.util.HTMLTable;
+import org.jetbrains.annotations.NotNull;
+
+import java.text.NumberFormat;
+
+public class ExecutorInfoItem implements SubPasteItem {
+
+    @Override
+    public @NotNull String genBody() {
+        HTMLTable table = new HTMLTable(11);
+        table.setTableTitle("Name", "Virtual", "Active", "Pool Size", "Max Pool Size", "Queued", "Queue Capacity",
+                "Completed", "Overflowed", "Avg/Max Wait (ms)", "Avg Run (ms)");
+        for (MonitoredExecutor executor : QuickExecutor.getExecutors()) {
+            MonitoredExecutor.Stats stats = executor.getStats();
+            table.insert(stats.name(),
+                    String.valueOf(stats.virtual()),
+                    String.valueOf(stats.activeCount()),
+                    String.valueOf(stats.poolSize()),
+                    String.valueOf(stats.maxPoolSize()),
+                    String.valueOf(stats.queued()),
+                    String.valueOf(stats.queueCapacity()),
+                    String.valueOf(stats.completed()),
+                    String.valueOf(stats.rejected()),
+                    round(stats.avgWaitMillis()) + " / " + round(stats.maxWaitMillis()),
+                    round(stats.avgRunMillis()));
+        }
+        return table.render();
+    }
+
+    @Override
+    public @NotNull String getTitle() {
+        return "Executors";
+    }
+
+    @NotNull
+    private String round(double d) {
+        NumberFormat nf = NumberFormat.getNumberInstance();
+        nf.setMaximumFractionDigits(3);
+        return nf.format(d);
+    }
+}
@@ -0,0 +1,30 @@
+package com.ghostchu.quickshop.util.paste.item;
+
+import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.util.paste.util.HTMLTable;
+import com.ghostchu.quickshop.watcher.ShopDataSaveWatcher;
+import org.jetbrains.annotations.NotNull;
+
+public class ShopSaveInfoItem implements SubPasteItem {
+
+    @Override
+    public @NotNull String genBody() {
+        ShopDataSaveWatcher watcher = QuickShop.getInstance().getShopSaveWatcher();
+        if (watcher == null) {
+            return "<p>Shop save watcher not running.</p>";
+        }
+        ShopDataSaveWatcher.Stats stats = watcher.getStats();
+        HTMLTable table = new HTMLTable(2, true);
+        table.insert("Last Flush Shops", String.valueOf(stats.lastFlushShops()));
+        table.insert("Last Flush Batches", String.valueOf(stats.lastFlushBatches()));
+        table.insert("Last Flush Latency (ms)", String.valueOf(stats.lastFlushLatency()));
+        table.insert("Batched Shops", String.valueOf(stats.totalFlushedShops()));
+        table.insert("Fallback Shops", String.valueOf(stats.totalFallbackShops()));
+        return table.render();
+    }
+
+    @Override
+    public @NotNull String getTitle() {
+        return "Shop Save";
+    }
+}
@@ -4,19 +4,43 @@ import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.shop.ContainerShop;
 import com.ghostchu.quickshop.shop.display.AbstractDisplayItem;
+import com.ghostchu.quickshop.shop.index.ShopSpatialIndex;
 import com.ghostchu.simplereloadlib.ReloadResult;
 import com.ghostchu.simplereloadlib.ReloadStatus;
 import com.ghostchu.simplereloadlib.Reloadable;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spawns the display items near players and despawns the others.
+ * <p>
+ * Player positions are bucketed by chunk once per run, only the shop chunks within the despawn range
+ * of any player are visited, and the chunks no longer in range since last run get their displays removed.
+ * A full sweep over the loaded shops runs every {@link #FULL_SWEEP_INTERVAL} runs to catch the displays
+ * spawned outside of the visited chunks, e.g. by a chunk loaded far away from players.
+ */
 public class DisplayAutoDespawnWatcher extends BukkitRunnable implements Reloadable {
+    private static final int FULL_SWEEP_INTERVAL = 10;
     private final QuickShop plugin;
     private int range;
+    /* World name -> chunks in range of players at last run */
+    private Map<String, LongSet> lastActiveChunks = new HashMap<>();
+    private int runs;
 
     public DisplayAutoDespawnWatcher(@NotNull QuickShop plugin) {
         this.plugin = plugin;
@@ -41,32 +65,122 @@ public class DisplayAutoDespawnWatcher extends BukkitRunnable implements Reloada
 
     @Override
     public void run() {
-        for (Shop shop : plugin.getShopManager().getLoadedShops()) {
-            //Shop may be deleted or unloaded when iterating
-            if (shop.isDeleted() || !shop.isLoaded()) {
-                continue;
-            }
-            Location location = shop.getLocation();
-            World world = shop.getLocation().getWorld(); //Cache this, because it will took some time.
-            AbstractDisplayItem displayItem = ((ContainerShop) shop).getDisplayItem();
-            if (displayItem != null) {
-                // Check the range has player?
-                boolean anyPlayerInRegion = false;
-                for (Player player : Bukkit.getOnlinePlayers()) {
-                    if ((player.getWorld() == world) && (player.getLocation().distance(location) <= range)) {
-                        anyPlayerInRegion = true;
-                        break;
+        int chunkRange = (range + 15) >> 4;
+        double rangeSquared = (double) range * range;
+        // Snapshot player positions once, bucketed by world and chunk
+        Map<String, Long2ObjectMap<List<Location>>> players = new HashMap<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            Location location = player.getLocation();
+            players.computeIfAbsent(player.getWorld().getName(), k -> new Long2ObjectOpenHashMap<>())
+                    .computeIfAbsent(ShopSpatialIndex.chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4), k -> new ArrayList<>(1))
+                    .add(location);
+        }
+        Map<String, LongSet> activeChunks = new HashMap<>();
+        for (Map.Entry<String, Long2ObjectMap<List<Location>>> entry : players.entrySet()) {
+            LongSet chunks = new LongOpenHashSet();
+            for (long key : entry.getValue().keySet()) {
+                int chunkX = ShopSpatialIndex.chunkX(key);
+                int chunkZ = ShopSpatialIndex.chunkZ(key);
+                for (int x = chunkX - chunkRange; x <= chunkX + chunkRange; x++) {
+                    for (int z = chunkZ - chunkRange; z <= chunkZ + chunkRange; z++) {
+                        chunks.add(ShopSpatialIndex.chunkKey(x, z));
                     }
                 }
-                if (anyPlayerInRegion) {
-                    if (!displayItem.isSpawned()) {
-                        displayItem.spawn();
+            }
+            activeChunks.put(entry.getKey(), chunks);
+        }
+        // Players left these chunks, nobody in range anymore
+        for (Map.Entry<String, LongSet> entry : lastActiveChunks.entrySet()) {
+            LongSet active = activeChunks.getOrDefault(entry.getKey(), LongSets.EMPTY_SET);
+            for (long key : entry.getValue()) {
+                if (!active.contains(key)) {
+                    visitChunk(entry.getKey(), key, null, chunkRange, rangeSquared);
+                }
+            }
+        }
+        for (Map.Entry<String, LongSet> entry : activeChunks.entrySet()) {
+            Long2ObjectMap<List<Location>> worldPlayers = players.get(entry.getKey());
+            for (long key : entry.getValue()) {
+                visitChunk(entry.getKey(), key, worldPlayers, chunkRange, rangeSquared);
+            }
+        }
+        if (runs++ % FULL_SWEEP_INTERVAL == 0) {
+            fullSweep(activeChunks);
+        }
+        lastActiveChunks = activeChunks;
+    }
+
+    private void visitChunk(@NotNull String worldName, long chunkKey, @Nullable Long2ObjectMap<List<Location>> worldPlayers, int chunkRange, double rangeSquared) {
+        int chunkX = ShopSpatialIndex.chunkX(chunkKey);
+        int chunkZ = ShopSpatialIndex.chunkZ(chunkKey);
+        World world = Bukkit.getWorld(worldName);
+        // Shops in unloaded chunks never have display spawned
+        if (world == null || !world.isChunkLoaded(chunkX, chunkZ)) {
+            return;
+        }
+        Map<Location, Shop> shops = plugin.getShopManager().getShops(worldName, chunkX, chunkZ);
+        if (shops == null) {
+            return;
+        }
+        // Players may in range of this chunk
+        List<Location> candidates = new ArrayList<>();
+        if (worldPlayers != null) {
+            for (int x = chunkX - chunkRange; x <= chunkX + chunkRange; x++) {
+                for (int z = chunkZ - chunkRange; z <= chunkZ + chunkRange; z++) {
+                    List<Location> bucket = worldPlayers.get(ShopSpatialIndex.chunkKey(x, z));
+                    if (bucket != null) {
+                        candidates.addAll(bucket);
                     }
-                } else if (displayItem.isSpawned()) {
-                    displayItem.remove();
                 }
             }
         }
+        for (Shop shop : shops.values()) {
+            updateDisplay(shop, candidates, rangeSquared);
+        }
+    }
+
+    private void fullSweep(@NotNull Map<String, LongSet> activeChunks) {
+        for (Shop shop : plugin.getShopManager().getLoadedShops()) {
+            Location location = shop.getLocation();
+            World world = location.getWorld();
+            if (world == null) {
+                continue;
+            }
+            LongSet active = activeChunks.get(world.getName());
+            if (active == null || !active.contains(ShopSpatialIndex.chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4))) {
+                updateDisplay(shop, List.of(), 0);
+            }
+        }
+    }
+
+    private void updateDisplay(@NotNull Shop shop, @NotNull List<Location> candidates, double rangeSquared) {
+        //Shop may be deleted or unloaded when iterating
+        if (shop.isDeleted() || !shop.isLoaded()) {
+            return;
+        }
+        AbstractDisplayItem displayItem = ((ContainerShop) shop).getDisplayItem();
+        if (displayItem == null) {
+            return;
+        }
+        Location location = shop.getLocation();
+        // Check the range has player?
+        boolean anyPlayerInRegion = false;
+        for (Location player : candidates) {
+            double dx = player.getX() - location.getX();
+            double dy = player.getY() - location.getY();
+            double dz = player.getZ() - location.getZ();
+            if (dx * dx + dy * dy + dz * dz <= rangeSquared) {
+                anyPlayerInRegion = true;
+                break;
+            }
+        }
+        if (anyPlayerInRegion) {
+            if (!displayItem.isSpawned()) {
+                displayItem.spawn();
+            }
+        } else if (displayItem.isSpawned()) {
+            displayItem.remove();
+        }
     }
 
 }
@@ -0,0 +1,97 @@
+package com.ghostchu.quickshop.watcher;
+
+import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.api.shop.Shop;
+import org.bukkit.Location;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the shop display items in main thread.
+ * <p>
+ * The shops requested by events (item merge, pickup, block changes and chunk loading) are checked first.
+ * Then a round-robin sweep over the loaded shops runs as safety net, it spreads one full round across
+ * the configured display check ticks. Both share the per-tick time budget.
+ */
+public class DisplayCheckWatcher extends BukkitRunnable {
+    private final QuickShop plugin;
+    // Keyed by location since the shop hash code changes with its data
+    private final Map<Location, Shop> requested = new LinkedHashMap<>();
+    private final long budgetNanos;
+    private final int sweepTicks;
+    private List<Shop> sweep = new ArrayList<>();
+    private int sweepCursor;
+    private long ticks;
+    private long nextSweepAt;
+
+    /**
+     * Creates the watcher, it should be scheduled every tick
+     *
+     * @param plugin     The plugin instance
+     * @param sweepTicks The ticks of one full sweep round, 0 to disable the sweep
+     */
+    public DisplayCheckWatcher(@NotNull QuickShop plugin, int sweepTicks) {
+        this.plugin = plugin;
+        this.sweepTicks = sweepTicks;
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, plugin.getConfig().getInt("shop.display-check-tick-budget-ms", 2)));
+    }
+
+    /**
+     * Requests a display check for the shop in next ticks
+     *
+     * @param shop The shop
+     */
+    public void requestCheck(@NotNull Shop shop) {
+        requested.put(shop.getLocation(), shop);
+    }
+
+    @Override
+    public void run() {
+        ticks++;
+        long deadline = System.nanoTime() + budgetNanos;
+        Iterator<Shop> it = requested.values().iterator();
+        while (it.hasNext()) {
+            Shop shop = it.next();
+            it.remove();
+            check(shop);
+            if (System.nanoTime() >= deadline) {
+                return;
+            }
+        }
+        if (sweepTicks <= 0) {
+            return;
+        }
+        if (sweepCursor >= sweep.size()) {
+            if (ticks < nextSweepAt) {
+                return;
+            }
+            sweep = new ArrayList<>(plugin.getShopManager().getLoadedShops());
+            sweepCursor = 0;
+            nextSweepAt = ticks + sweepTicks;
+        }
+        int quota = (int) Math.ceil(sweep.size() / (double) sweepTicks);
+        while (quota-- > 0 && sweepCursor < sweep.size() && System.nanoTime() < deadline) {
+            check(sweep.get(sweepCursor++));
+        }
+        if (sweepCursor >= sweep.size()) {
+            // Release the shops as soon as the round finished
+            sweep = new ArrayList<>();
+            sweepCursor = 0;
+        }
+    }
+
+    private void check(@NotNull Shop shop) {
+        //Shop may be deleted or unloaded after requested
+        if (shop.isDeleted() || !shop.isLoaded()) {
+            return;
+        }
+        shop.checkDisplay();
+    }
+}
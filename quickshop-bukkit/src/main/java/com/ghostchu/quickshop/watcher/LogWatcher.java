@@ -1,107 +1,320 @@
 package com.ghostchu.quickshop.watcher;
 
 import com.ghostchu.quickshop.QuickShop;
-import lombok.SneakyThrows;
+import com.ghostchu.quickshop.common.util.QuickExecutor;
+import com.ghostchu.quickshop.util.JsonUtil;
+import com.ghostchu.quickshop.util.logger.Log;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.commons.compress.compressors.gzip.GzipParameters;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Iterator;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
-public class LogWatcher extends BukkitRunnable implements AutoCloseable {
+/**
+ * Writes the action logs into qs.log.
+ * <p>
+ * The caller only enqueues the raw log object, a dedicated writer thread serializes them into a reused buffer
+ * and appends to the file through a FileChannel. The log file rotates when it exceeds the configured size or
+ * the day changed, rotated segments are compressed in background.
+ */
+public class LogWatcher implements AutoCloseable {
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
     private static final DateTimeFormatter LOG_FILE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneId.systemDefault());
-    private final Queue<String> logs = new ConcurrentLinkedQueue<>();
-
-    private PrintWriter printWriter = null;
+    private static final int QUEUE_CAPACITY = 65536;
+    private static final int DRAIN_BATCH_SIZE = 1024;
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    private static final long FLUSH_INTERVAL_MILLIS = 500;
+    /* Segments being compressed, shared by the instances since the previous one may still be compressing after reload */
+    private static final Set<Path> COMPRESSING_SEGMENTS = ConcurrentHashMap.newKeySet();
+    private final QuickShop plugin;
+    private final Path logFile;
+    private final Path archiveFolder;
+    private final long maxFileSize;
+    private final BlockingQueue<Entry> logs = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong droppedLogs = new AtomicLong(0);
+    private final Thread writerThread;
+    /* Writer thread only */
+    private final StringBuilder lineBuffer = new StringBuilder(1024);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private FileChannel channel;
+    private long fileSize;
+    private LocalDate segmentDay;
+    private volatile boolean running = true;
 
     public LogWatcher(QuickShop plugin, File log) {
+        this.plugin = plugin;
+        this.logFile = log.toPath();
+        this.archiveFolder = plugin.getDataFolder().toPath().resolve("logs");
+        this.maxFileSize = (long) (plugin.getConfig().getDouble("logging.file-size") * 1024 * 1024);
+        this.writerThread = new Thread(this::runWriter, "QuickShop-LogWriter");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public void log(@NotNull String log) {
+        enqueue(new Entry(System.currentTimeMillis(), log));
+    }
+
+    /**
+     * Logs an object, the object will be serialized to json in the writer thread.
+     * The object must not be modified after logged.
+     *
+     * @param logObject The object to log
+     */
+    public void log(@NotNull Object logObject) {
+        enqueue(new Entry(System.currentTimeMillis(), logObject));
+    }
+
+    private void enqueue(@NotNull Entry entry) {
+        if (!running || !logs.offer(entry)) {
+            droppedLogs.incrementAndGet();
+        }
+    }
+
+    public long getDroppedLogs() {
+        return droppedLogs.get();
+    }
+
+    public int getPendingLogs() {
+        return logs.size();
+    }
+
+    private void runWriter() {
         try {
-            boolean deleteFailed = false;
-            if (!log.exists()) {
-                //noinspection ResultOfMethodCallIgnored
-                log.getParentFile().mkdirs();
-                //noinspection ResultOfMethodCallIgnored
-                log.createNewFile();
-            } else {
-                if ((log.length() / 1024f / 1024f) > plugin.getConfig().getDouble("logging.file-size")) {
-                    Path logPath = plugin.getDataFolder().toPath().resolve("logs");
-                    Files.createDirectories(logPath);
-                    //Find a available name
-                    Path targetPath;
-                    int i = 1;
-                    do {
-                        targetPath = logPath.resolve(ZonedDateTime.now().format(LOG_FILE_FORMATTER) + "-" + i + ".log.gz");
-                        i++;
-                    } while (Files.exists(targetPath));
-                    Files.createFile(targetPath);
-                    GzipParameters gzipParameters = new GzipParameters();
-                    gzipParameters.setFilename(log.getName());
-                    try (GzipCompressorOutputStream archiveOutputStream = new GzipCompressorOutputStream(new BufferedOutputStream(new FileOutputStream(targetPath.toFile())), gzipParameters)) {
-                        Files.copy(log.toPath(), archiveOutputStream);
-                        archiveOutputStream.finish();
-                        if (log.delete()) {
-                            //noinspection ResultOfMethodCallIgnored
-                            log.createNewFile();
-                        } else {
-                            deleteFailed = true;
-                        }
-                    }
+            // Scan before opening, the segment archived by openLogFile must not be picked up as a leftover
+            compressLeftoverSegments();
+            openLogFile();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not create the log file!", e);
+            running = false;
+            logs.clear();
+            return;
+        }
+        List<Entry> batch = new ArrayList<>(DRAIN_BATCH_SIZE);
+        try {
+            while (running || !logs.isEmpty()) {
+                Entry first = logs.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    logs.drainTo(batch, DRAIN_BATCH_SIZE - 1);
+                    writeBatch(batch);
+                    batch.clear();
                 }
+                flushWriteBuffer();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to write the log file, logging stopped.", e);
+            running = false;
+        } finally {
+            closeChannel();
+        }
+    }
+
+    private void writeBatch(@NotNull List<Entry> batch) throws IOException {
+        for (Entry entry : batch) {
+            LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(entry.timestamp()), ZoneId.systemDefault());
+            if (day.isAfter(segmentDay) || (maxFileSize > 0 && fileSize >= maxFileSize)) {
+                rotate(day);
             }
-            FileWriter logFileWriter;
-            if (deleteFailed) {
-                //If could not delete, just override it
-                logFileWriter = new FileWriter(log, false);
+            lineBuffer.setLength(0);
+            lineBuffer.append('[');
+            DATETIME_FORMATTER.formatTo(Instant.ofEpochMilli(entry.timestamp()), lineBuffer);
+            lineBuffer.append("] ");
+            if (entry.content() instanceof String str) {
+                lineBuffer.append(str);
             } else {
-                //Otherwise append
-                logFileWriter = new FileWriter(log, true);
+                try {
+                    JsonUtil.getGson().toJson(entry.content(), lineBuffer);
+                } catch (RuntimeException e) {
+                    Log.debug("Failed to serialize log object " + entry.content().getClass().getName() + ": " + e.getMessage());
+                    continue;
+                }
+            }
+            lineBuffer.append(System.lineSeparator());
+            encode(lineBuffer);
+        }
+    }
+
+    private void encode(@NotNull CharSequence chars) throws IOException {
+        CharBuffer charBuffer = CharBuffer.wrap(chars);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(charBuffer, writeBuffer, true);
+            if (result.isOverflow()) {
+                flushWriteBuffer();
+                continue;
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            break;
+        }
+        while (encoder.flush(writeBuffer).isOverflow()) {
+            flushWriteBuffer();
+        }
+    }
+
+    private void flushWriteBuffer() throws IOException {
+        if (writeBuffer.position() == 0 || channel == null) {
+            return;
+        }
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            fileSize += channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    private void openLogFile() throws IOException {
+        Files.createDirectories(logFile.toAbsolutePath().getParent());
+        if (Files.exists(logFile) && Files.size(logFile) > 0) {
+            LocalDate lastModifiedDay = LocalDate.ofInstant(Files.getLastModifiedTime(logFile).toInstant(), ZoneId.systemDefault());
+            if ((maxFileSize > 0 && Files.size(logFile) >= maxFileSize) || !lastModifiedDay.equals(LocalDate.now())) {
+                archive(lastModifiedDay);
+            }
+        }
+        channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileSize = channel.size();
+        segmentDay = LocalDate.now();
+    }
+
+    private void rotate(@NotNull LocalDate day) throws IOException {
+        flushWriteBuffer();
+        if (fileSize > 0) {
+            closeChannel();
+            archive(segmentDay);
+            channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            fileSize = channel.size();
+        }
+        segmentDay = day;
+    }
+
+    /**
+     * Moves current log file to the archive folder, and compress it in background.
+     *
+     * @param day The day of the log file
+     */
+    private void archive(@NotNull LocalDate day) throws IOException {
+        Files.createDirectories(archiveFolder);
+        //Find a available name
+        Path segment;
+        int i = 1;
+        do {
+            String name = LOG_FILE_FORMATTER.format(day) + "-" + i;
+            segment = archiveFolder.resolve(name + ".log");
+            if (!Files.exists(segment) && !Files.exists(archiveFolder.resolve(name + ".log.gz"))) {
+                break;
+            }
+            i++;
+        } while (true);
+        Files.move(logFile, segment);
+        submitCompress(segment);
+    }
+
+    private void compressLeftoverSegments() {
+        if (!Files.isDirectory(archiveFolder)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(archiveFolder, "*.log")) {
+            for (Path segment : stream) {
+                submitCompress(segment);
             }
-            printWriter = new PrintWriter(logFileWriter);
-        } catch (FileNotFoundException e) {
-            plugin.getLogger().log(Level.SEVERE, "Log file was not found!", e);
         } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Could not create the log file!", e);
+            Log.debug("Failed to list uncompressed log segments: " + e.getMessage());
         }
     }
 
-    @Override
-    @SneakyThrows
-    public void close() {
-        if (printWriter != null) {
-            printWriter.flush();
-            printWriter.close();
+    private void submitCompress(@NotNull Path segment) {
+        Path key = segment.toAbsolutePath().normalize();
+        if (!COMPRESSING_SEGMENTS.add(key)) {
+            return;
         }
+        QuickExecutor.getCommonExecutor().submit(() -> {
+            try {
+                compress(segment);
+            } finally {
+                COMPRESSING_SEGMENTS.remove(key);
+            }
+        });
     }
 
-    public void log(@NotNull String log) {
-        logs.add("[" + DATETIME_FORMATTER.format(Instant.now()) + "] " + log);
+    private void compress(@NotNull Path segment) {
+        String fileName = segment.getFileName().toString();
+        Path target = segment.resolveSibling(fileName + ".gz");
+        Path temp = segment.resolveSibling(fileName + ".gz.tmp");
+        GzipParameters gzipParameters = new GzipParameters();
+        gzipParameters.setFilename(logFile.getFileName().toString());
+        try {
+            try (OutputStream out = new GzipCompressorOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)), gzipParameters)) {
+                Files.copy(segment, out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(segment);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to compress the log file " + segment + ", it will be retried on next startup.", e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        }
     }
 
-    @Override
-    public void run() {
-        if (printWriter == null) {
-            //Waiting for init
+    private void closeChannel() {
+        if (channel == null) {
             return;
         }
-        Iterator<String> iterator = logs.iterator();
-        while (iterator.hasNext()) {
-            String log = iterator.next();
-            printWriter.println(log);
-            iterator.remove();
+        try {
+            flushWriteBuffer();
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to close the log file.", e);
         }
-        printWriter.flush();
+        channel = null;
     }
 
+    /**
+     * Stops accepting logs, and waits the writer thread to write all pending logs.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            plugin.getLogger().warning("Log writer didn't finish in time, " + logs.size() + " logs may lost.");
+        }
+    }
+
+    private record Entry(long timestamp, @NotNull Object content) {
+    }
 }
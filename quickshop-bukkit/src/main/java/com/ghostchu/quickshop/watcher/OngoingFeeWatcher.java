@@ -3,6 +3,7 @@ package com.ghostchu.quickshop.watcher;
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.event.ShopOngoingFeeEvent;
 import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.api.shop.ShopSummary;
 import com.ghostchu.quickshop.economy.SimpleEconomyTransaction;
 import com.ghostchu.quickshop.shop.SimpleShopManager;
 import com.ghostchu.quickshop.util.MsgUtil;
@@ -10,13 +11,15 @@ import com.ghostchu.quickshop.util.Util;
 import com.ghostchu.quickshop.util.WarningSender;
 import com.ghostchu.quickshop.util.logger.Log;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
-import org.bukkit.Location;
+import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Objects;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Check the shops after server booted up, make sure shop can correct self-deleted when container
@@ -25,6 +28,7 @@ import java.util.UUID;
 public class OngoingFeeWatcher extends BukkitRunnable {
     private final QuickShop plugin;
     private final WarningSender warningSender;
+    private final AtomicBoolean settling = new AtomicBoolean(false);
 
     public OngoingFeeWatcher(@NotNull QuickShop plugin) {
         this.plugin = plugin;
@@ -42,57 +46,104 @@ public class OngoingFeeWatcher extends BukkitRunnable {
         boolean allowLoan = plugin.getConfig().getBoolean("shop.allow-economy-loan");
         boolean ignoreUnlimited = plugin.getConfig().getBoolean("shop.ongoing-fee.ignore-unlimited");
         double gobalCost = plugin.getConfig().getDouble("shop.ongoing-fee.cost-per-shop");
-        for (Shop shop : plugin.getShopManager().getAllShops()) {
-            if ((!shop.isUnlimited() || !ignoreUnlimited) && !shop.isDeleted()) {
-                UUID shopOwner = shop.getOwner();
-                Location location = shop.getLocation();
-                if (!location.isWorldLoaded()) {
-                    //ignore unloaded world
+        boolean aggregated = plugin.getConfig().getBoolean("shop.ongoing-fee.aggregate-by-owner");
+        UUID defaultTaxAccount = ((SimpleShopManager) plugin.getShopManager()).getCacheTaxAccount();
+        // The summaries never hydrate the cold shops, they are charged from their records
+        List<ShopSummary> summaries = new ArrayList<>();
+        for (ShopSummary summary : plugin.getShopManager().getShopSummaries()) {
+            if (summary.unlimited() && ignoreUnlimited) {
+                continue;
+            }
+            if (Bukkit.getWorld(summary.world()) == null) {
+                //ignore unloaded world
+                continue;
+            }
+            summaries.add(summary);
+        }
+        if (!aggregated) {
+            settleEach(summaries, defaultTaxAccount, allowLoan, gobalCost);
+            return;
+        }
+        if (!settling.compareAndSet(false, true)) {
+            Log.debug("Previous ongoing fee settlement still running, skipping...");
+            return;
+        }
+        Map<SettlementGroup, List<ShopSummary>> groups = new LinkedHashMap<>();
+        for (ShopSummary summary : summaries) {
+            UUID taxAccount = summary.taxAccount() != null ? summary.taxAccount() : defaultTaxAccount;
+            SettlementGroup group = new SettlementGroup(summary.owner(), taxAccount, summary.world());
+            groups.computeIfAbsent(group, k -> new ArrayList<>()).add(summary);
+        }
+        Log.debug("Settling ongoing fee for " + groups.size() + " groups...");
+        long budget = TimeUnit.MILLISECONDS.toNanos(Math.max(1, plugin.getConfig().getInt("shop.ongoing-fee.tick-budget-ms", 5)));
+        new SettlementTask(new ArrayDeque<>(groups.entrySet()), allowLoan, gobalCost, budget).runTaskTimer(plugin, 1, 1);
+    }
+
+    /**
+     * Charges the shops one by one on the watcher thread, the shop will be removed if the owner can't afford the fee of it.
+     * The ShopOngoingFeeEvent is only fired for the loaded shops, the cold shops are charged the configured cost.
+     */
+    private void settleEach(@NotNull List<ShopSummary> summaries, @Nullable UUID defaultTaxAccount, boolean allowLoan, double gobalCost) {
+        List<ShopSummary> unpaid = new ArrayList<>();
+        for (ShopSummary summary : summaries) {
+            Shop shop = summary.shop();
+            if (shop != null && shop.isDeleted()) {
+                continue;
+            }
+            UUID shopOwner = summary.owner();
+            World world = Bukkit.getWorld(summary.world());
+            if (world == null) {
+                continue;
+            }
+            double cost = gobalCost;
+            //We must check balance manually to avoid shop missing hell when tax account broken
+            if (!allowLoan && plugin.getEconomy().getBalance(shopOwner, world, plugin.getCurrency()) < cost) {
+                unpaid.add(summary);
+                continue;
+            }
+            UUID taxAccount = summary.taxAccount() != null ? summary.taxAccount() : defaultTaxAccount;
+            if (shop != null) {
+                ShopOngoingFeeEvent event = new ShopOngoingFeeEvent(shop, shopOwner, cost);
+                if (Util.fireCancellableEvent(event)) {
                     continue;
                 }
-                double cost = gobalCost;
-                World world = location.getWorld();
-                //We must check balance manually to avoid shop missing hell when tax account broken
-                if (allowLoan || plugin.getEconomy().getBalance(shopOwner, Objects.requireNonNull(world), plugin.getCurrency()) >= cost) {
-                    UUID taxAccount = null;
-                    if (shop.getTaxAccount() != null) {
-                        taxAccount = shop.getTaxAccount();
-                    } else {
-                        UUID uuid = ((SimpleShopManager) plugin.getShopManager()).getCacheTaxAccount();
-                        if (uuid != null) {
-                            taxAccount = uuid;
-                        }
-                    }
-
-                    ShopOngoingFeeEvent event = new ShopOngoingFeeEvent(shop, shopOwner, cost);
-                    if (Util.fireCancellableEvent(event)) {
-                        continue;
-                    }
-
-                    cost = event.getCost();
-                    double finalCost = cost;
-
-                    UUID finalTaxAccount = taxAccount;
-                    Util.mainThreadRun(() -> {
-                        SimpleEconomyTransaction transaction = SimpleEconomyTransaction.builder()
-                                .allowLoan(allowLoan)
-                                .currency(plugin.getCurrency())
-                                .core(plugin.getEconomy())
-                                .world(world)
-                                .amount(finalCost)
-                                .to(finalTaxAccount)
-                                .from(shopOwner).build();
-
-                        boolean success = transaction.failSafeCommit();
-                        if (!success) {
-                            warningSender.sendWarn("Unable to deposit ongoing fee to tax account, the last error is " + transaction.getLastError());
-                        }
-                    });
-                } else {
-                    this.removeShop(shop);
+                cost = event.getCost();
+            }
+            double finalCost = cost;
+            Util.mainThreadRun(() -> {
+                SimpleEconomyTransaction transaction = SimpleEconomyTransaction.builder()
+                        .allowLoan(allowLoan)
+                        .currency(plugin.getCurrency())
+                        .core(plugin.getEconomy())
+                        .world(world)
+                        .amount(finalCost)
+                        .to(taxAccount)
+                        .from(shopOwner).build();
+                if (!transaction.failSafeCommit()) {
+                    warningSender.sendWarn("Unable to deposit ongoing fee to tax account, the last error is " + transaction.getLastError());
                 }
+            });
+        }
+        removeShops(unpaid);
+    }
+
+    /**
+     * Removes the shops of the summaries, only the cold ones are hydrated for removing
+     *
+     * @param summaries The summaries of shops to remove
+     */
+    private void removeShops(@NotNull List<ShopSummary> summaries) {
+        List<ShopSummary> cold = new ArrayList<>();
+        for (ShopSummary summary : summaries) {
+            if (summary.shop() == null) {
+                cold.add(summary);
+            } else {
+                removeShop(summary.shop());
             }
         }
+        if (!cold.isEmpty()) {
+            plugin.getShopManager().hydrateLazily(cold, this::removeShop);
+        }
     }
 
     /**
@@ -112,4 +163,90 @@ public class OngoingFeeWatcher extends BukkitRunnable {
                 + shop.getLocation().getBlockZ())).forLocale());
     }
 
+    private record SettlementGroup(@NotNull UUID owner, @Nullable UUID taxAccount, @NotNull String world) {
+    }
+
+    private class SettlementTask extends BukkitRunnable {
+        private final Queue<Map.Entry<SettlementGroup, List<ShopSummary>>> groups;
+        private final boolean allowLoan;
+        private final double cost;
+        private final long budgetNanos;
+
+        private SettlementTask(@NotNull Queue<Map.Entry<SettlementGroup, List<ShopSummary>>> groups, boolean allowLoan, double cost, long budgetNanos) {
+            this.groups = groups;
+            this.allowLoan = allowLoan;
+            this.cost = cost;
+            this.budgetNanos = budgetNanos;
+        }
+
+        @Override
+        public void run() {
+            long deadline = System.nanoTime() + budgetNanos;
+            Map.Entry<SettlementGroup, List<ShopSummary>> entry;
+            while ((entry = groups.poll()) != null) {
+                World world = Bukkit.getWorld(entry.getKey().world());
+                if (world != null && plugin.getEconomy() != null) {
+                    settle(entry.getKey(), world, entry.getValue());
+                }
+                if (System.nanoTime() >= deadline) {
+                    return;
+                }
+            }
+            cancel();
+            settling.set(false);
+        }
+
+        private void settle(@NotNull SettlementGroup group, @NotNull World world, @NotNull List<ShopSummary> summaries) {
+            // Fire the event for every loaded shop, so the listeners still can modify or cancel the fee per shop.
+            // The cold shops are charged the configured cost without hydrating them.
+            List<ShopSummary> charging = new ArrayList<>(summaries.size());
+            List<Double> costs = new ArrayList<>(summaries.size());
+            for (ShopSummary summary : summaries) {
+                Shop shop = summary.shop();
+                if (shop == null) {
+                    charging.add(summary);
+                    costs.add(cost);
+                    continue;
+                }
+                if (shop.isDeleted()) {
+                    continue;
+                }
+                ShopOngoingFeeEvent event = new ShopOngoingFeeEvent(shop, group.owner(), cost);
+                if (Util.fireCancellableEvent(event)) {
+                    continue;
+                }
+                charging.add(summary);
+                costs.add(event.getCost());
+            }
+            if (charging.isEmpty()) {
+                return;
+            }
+            //We must check balance manually to avoid shop missing hell when tax account broken
+            double balance = allowLoan ? Double.MAX_VALUE : plugin.getEconomy().getBalance(group.owner(), world, plugin.getCurrency());
+            double total = 0;
+            List<ShopSummary> unpaid = new ArrayList<>();
+            for (int i = 0; i < charging.size(); i++) {
+                if (total + costs.get(i) <= balance) {
+                    total += costs.get(i);
+                } else {
+                    unpaid.add(charging.get(i));
+                }
+            }
+            if (total > 0) {
+                SimpleEconomyTransaction transaction = SimpleEconomyTransaction.builder()
+                        .allowLoan(allowLoan)
+                        .currency(plugin.getCurrency())
+                        .core(plugin.getEconomy())
+                        .world(world)
+                        .amount(total)
+                        .to(group.taxAccount())
+                        .from(group.owner()).build();
+                if (!transaction.failSafeCommit()) {
+                    warningSender.sendWarn("Unable to deposit ongoing fee to tax account, the last error is " + transaction.getLastError());
+                }
+            }
+            removeShops(unpaid);
+        }
+    }
+
 }
@@ -3,14 +3,43 @@ package com.ghostchu.quickshop.watcher;
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.common.util.QuickExecutor;
+import com.ghostchu.quickshop.common.util.Timer;
+import com.ghostchu.quickshop.database.SimpleDatabaseHelperV2;
+import com.ghostchu.quickshop.database.bean.SimpleDataRecord;
+import com.ghostchu.quickshop.shop.ContainerShop;
+import com.ghostchu.quickshop.shop.SimpleShopManager;
 import com.ghostchu.quickshop.util.logger.Log;
+import com.google.common.collect.Lists;
+import lombok.Getter;
 import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Write-behind flusher for dirty shops.
+ * <p>
+ * All dirty shops in a cycle are saved in chunks, each chunk is one database transaction with batched writes.
+ * If a chunk failed, shops in that chunk will fall back to be saved one by one.
+ */
 public class ShopDataSaveWatcher extends BukkitRunnable {
+    private static final int FLUSH_BATCH_SIZE = 500;
     private final QuickShop plugin;
     private CompletableFuture<Void> saveTask;
+    /* Flush metrics, see /qs debug shopsave and the paste */
+    @Getter
+    private volatile long lastFlushLatency;
+    @Getter
+    private volatile int lastFlushShops;
+    @Getter
+    private volatile int lastFlushBatches;
+    private final AtomicLong totalFlushedShops = new AtomicLong(0);
+    private final AtomicLong totalFallbackShops = new AtomicLong(0);
 
     public ShopDataSaveWatcher(QuickShop plugin) {
         this.plugin = plugin;
@@ -23,9 +52,7 @@ public class ShopDataSaveWatcher extends BukkitRunnable {
             return;
         }
         Log.debug("Starting save shops...");
-        saveTask = CompletableFuture.allOf(plugin.getShopManager().getAllShops().stream().filter(Shop::isDirty)
-                        .map(Shop::update)
-                        .toArray(CompletableFuture[]::new))
+        saveTask = flush()
                 .whenCompleteAsync((v, e) -> {
                     if (e != null) {
                         Log.debug("Error saving shops: " + e.getMessage());
@@ -34,4 +61,107 @@ public class ShopDataSaveWatcher extends BukkitRunnable {
                     }
                 }, QuickExecutor.getShopSaveExecutor());
     }
+
+    /**
+     * Saves all dirty shops into database
+     *
+     * @return The future that completes after all dirty shops saved
+     */
+    @NotNull
+    public CompletableFuture<Void> flush() {
+        // Not keyed by the shop, since Shop#hashCode changes with its fields
+        List<PendingShop> pending = new ArrayList<>();
+        for (Shop shop : ((SimpleShopManager) plugin.getShopManager()).getHydratedShops()) {
+            if (!shop.isDirty()) {
+                continue;
+            }
+            if (!(shop instanceof ContainerShop containerShop) || !(plugin.getDatabaseHelper() instanceof SimpleDatabaseHelperV2)) {
+                // Unknown implementation, use the regular way
+                shop.update();
+                continue;
+            }
+            // Take the snapshot on this thread, same as Shop#update does
+            SimpleDataRecord dataRecord = containerShop.beginBatchUpdate();
+            if (dataRecord != null) {
+                pending.add(new PendingShop(containerShop, dataRecord));
+            }
+        }
+        if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> flush(pending), QuickExecutor.getShopSaveExecutor());
+    }
+
+    private void flush(@NotNull List<PendingShop> pending) {
+        Timer timer = new Timer(true);
+        SimpleDatabaseHelperV2 databaseHelper = (SimpleDatabaseHelperV2) plugin.getDatabaseHelper();
+        List<List<PendingShop>> batches = Lists.partition(pending, FLUSH_BATCH_SIZE);
+        for (List<PendingShop> batch : batches) {
+            Map<Long, SimpleDataRecord> shopRecords = new LinkedHashMap<>(batch.size());
+            for (PendingShop pendingShop : batch) {
+                shopRecords.put(pendingShop.shop().getShopId(), pendingShop.dataRecord());
+            }
+            try {
+                databaseHelper.updateShops(shopRecords);
+                batch.forEach(pendingShop -> pendingShop.shop().completeBatchUpdate(null));
+                totalFlushedShops.addAndGet(batch.size());
+            } catch (Exception e) {
+                // Not only SQLException, the shops must leave the updating state whatever happened
+                Log.debug("Failed to save " + batch.size() + " shops in batch, fallback to save them one by one: " + e.getMessage());
+                totalFallbackShops.addAndGet(batch.size());
+                List<CompletableFuture<Void>> futures = new ArrayList<>(batch.size());
+                for (PendingShop pendingShop : batch) {
+                    ContainerShop shop = pendingShop.shop();
+                    CompletableFuture<Void> future;
+                    try {
+                        future = databaseHelper.updateShop(shop);
+                    } catch (Exception ex) {
+                        shop.completeBatchUpdate(ex);
+                        continue;
+                    }
+                    if (future == null) {
+                        shop.completeBatchUpdate(null);
+                        continue;
+                    }
+                    futures.add(future.whenComplete((v, err) -> shop.completeBatchUpdate(err)));
+                }
+                // Wait for them, so the flush future completes after all shops saved
+                CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).exceptionally(err -> null).join();
+            }
+        }
+        lastFlushLatency = timer.stopAndGetTimePassed();
+        lastFlushShops = pending.size();
+        lastFlushBatches = batches.size();
+        Log.debug("Flushed " + lastFlushShops + " shops in " + lastFlushBatches + " batches, used " + lastFlushLatency + "ms. (total: "
+                + totalFlushedShops.get() + " batched, " + totalFallbackShops.get() + " fallback)");
+    }
+
+    public long getTotalFlushedShops() {
+        return totalFlushedShops.get();
+    }
+
+    public long getTotalFallbackShops() {
+        return totalFallbackShops.get();
+    }
+
+    @NotNull
+    public Stats getStats() {
+        return new Stats(lastFlushLatency, lastFlushShops, lastFlushBatches, totalFlushedShops.get(), totalFallbackShops.get());
+    }
+
+    /**
+     * The status of the shop flusher
+     *
+     * @param lastFlushLatency   Time used by the last flush in milliseconds
+     * @param lastFlushShops     Shops saved in the last flush
+     * @param lastFlushBatches   Batches used by the last flush
+     * @param totalFlushedShops  Shops saved in batches in total
+     * @param totalFallbackShops Shops fall back to be saved one by one in total
+     */
+    public record Stats(long lastFlushLatency, int lastFlushShops, int lastFlushBatches, long totalFlushedShops,
+                        long totalFallbackShops) {
+    }
+
+    private record PendingShop(@NotNull ContainerShop shop, @NotNull SimpleDataRecord dataRecord) {
+    }
 }
@@ -2,29 +2,110 @@ package com.ghostchu.quickshop.watcher;
 
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.shop.Shop;
+import org.bukkit.Location;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Updates the shop signs in main thread, spread across ticks by a time budget.
+ * <p>
+ * The queue is keyed by shop location since the shop hash code changes with its data,
+ * the shops in unloaded chunks are deferred until the shop loaded.
+ */
 public class SignUpdateWatcher extends BukkitRunnable {
-    private final Queue<Shop> signUpdateQueue = new LinkedList<>();
+    private static final double RATE_SMOOTHING = 0.2;
+    private final Map<Location, Shop> signUpdateQueue = new LinkedHashMap<>();
+    private final Map<Location, Shop> deferred = new HashMap<>();
+    private final long budgetNanos;
+    private long drained;
+    private long maxDepth;
+    private long lastRunAt = System.nanoTime();
+    private double drainRate;
+
+    public SignUpdateWatcher() {
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, QuickShop.getInstance().getConfig().getInt("shop.sign-update-tick-budget-ms", 2)));
+    }
 
     @Override
     public void run() {
-        Shop shop = signUpdateQueue.poll();
-        while (shop != null && !shop.isDeleted()) {
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + budgetNanos;
+        int updated = 0;
+        Iterator<Shop> it = signUpdateQueue.values().iterator();
+        while (it.hasNext()) {
+            Shop shop = it.next();
+            it.remove();
+            if (shop.isDeleted()) {
+                continue;
+            }
+            if (!shop.isLoaded()) {
+                deferred.put(shop.getLocation(), shop);
+                continue;
+            }
             shop.setSignText(QuickShop.getInstance().text().findRelativeLanguages(shop.getOwner()));
-            shop = signUpdateQueue.poll();
+            updated++;
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        drained += updated;
+        double seconds = (startedAt - lastRunAt) / 1_000_000_000d;
+        if (seconds > 0) {
+            drainRate += RATE_SMOOTHING * (updated / seconds - drainRate);
         }
+        lastRunAt = startedAt;
     }
 
     public void scheduleSignUpdate(@NotNull Shop shop) {
-        if (signUpdateQueue.contains(shop)) {
-            return; // Ignore
+        // Replace the value in case a new shop created at same location, the queue order kept
+        signUpdateQueue.put(shop.getLocation(), shop);
+        deferred.remove(shop.getLocation());
+        maxDepth = Math.max(maxDepth, signUpdateQueue.size());
+    }
+
+    /**
+     * Requeues the deferred sign update of the shop, should be called when the shop loaded.
+     * Matched by location, the shop may be hydrated again as another instance after deferred.
+     *
+     * @param shop The shop loaded
+     */
+    public void onShopLoaded(@NotNull Shop shop) {
+        if (deferred.remove(shop.getLocation()) != null) {
+            scheduleSignUpdate(shop);
         }
-        signUpdateQueue.add(shop);
+    }
+
+    /**
+     * Drops the queued and deferred sign update at the location, should be called when the shop removed
+     *
+     * @param location The shop location
+     */
+    public void cancelSignUpdate(@NotNull Location location) {
+        signUpdateQueue.remove(location);
+        deferred.remove(location);
+    }
+
+    @NotNull
+    public Stats getStats() {
+        return new Stats(signUpdateQueue.size(), deferred.size(), maxDepth, drained, drainRate);
+    }
+
+    /**
+     * The status of the sign update queue
+     *
+     * @param queued    Shops waiting for update
+     * @param deferred  Shops waiting for chunk load
+     * @param maxQueued The max queue depth ever reached
+     * @param drained   Signs updated in total
+     * @param drainRate Smoothed signs updated per second
+     */
+    public record Stats(int queued, int deferred, long maxQueued, long drained, double drainRate) {
     }
 
 }
@@ -0,0 +1,154 @@
+package com.ghostchu.quickshop.common.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded thread pool which records the queue waiting time and running time of tasks.
+ * <p>
+ * The pool grows to the max size before queueing, the idle threads exit after 60 seconds.
+ * When both threads and queue are exhausted, the tasks are kept in an unbounded overflow queue and
+ * moved back to the pool queue by the workers in submission order. The tasks never run on the
+ * submitting thread, which usually is the server thread and must not be blocked by I/O.
+ */
+public class MonitoredExecutor extends ThreadPoolExecutor {
+    private final String name;
+    private final int queueCapacity;
+    private final boolean virtual;
+    private final LongAdder rejected = new LongAdder();
+    private final Deque<Runnable> overflow = new ConcurrentLinkedDeque<>();
+    private final LongAdder timedTasks = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder totalRunNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    public MonitoredExecutor(@NotNull String name, int threads, int queueCapacity, @NotNull ThreadFactory threadFactory, boolean virtual) {
+        super(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueCapacity), threadFactory);
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+        this.virtual = virtual;
+        allowCoreThreadTimeOut(true);
+        setRejectedExecutionHandler((r, executor) -> {
+            if (executor.isShutdown()) {
+                return;
+            }
+            rejected.increment();
+            overflow.offer(r);
+            drainOverflow();
+        });
+    }
+
+    @Override
+    public void execute(@NotNull Runnable command) {
+        Runnable task = new TimedTask(command, System.nanoTime());
+        if (!overflow.isEmpty() && !isShutdown()) {
+            // Keep the submission order, queue behind the overflowed tasks
+            overflow.offer(task);
+            drainOverflow();
+            return;
+        }
+        super.execute(task);
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        super.afterExecute(r, t);
+        drainOverflow();
+    }
+
+    /**
+     * Moves the overflowed tasks into the pool queue as long as the queue has space
+     */
+    private void drainOverflow() {
+        if (overflow.isEmpty()) {
+            return;
+        }
+        boolean moved = false;
+        synchronized (overflow) {
+            Runnable task;
+            while ((task = overflow.poll()) != null) {
+                if (!getQueue().offer(task)) {
+                    overflow.addFirst(task);
+                    break;
+                }
+                moved = true;
+            }
+        }
+        if (moved) {
+            // The tasks added to queue directly, make sure there are workers to take them
+            prestartAllCoreThreads();
+        }
+    }
+
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @NotNull
+    public Stats getStats() {
+        long tasks = timedTasks.sum();
+        return new Stats(name, virtual, getPoolSize(), getMaximumPoolSize(), getActiveCount(), getQueue().size() + overflow.size(), queueCapacity,
+                getCompletedTaskCount(), rejected.sum(),
+                tasks == 0 ? 0 : totalWaitNanos.sum() / tasks / 1_000_000d,
+                maxWaitNanos.get() / 1_000_000d,
+                tasks == 0 ? 0 : totalRunNanos.sum() / tasks / 1_000_000d);
+    }
+
+    /**
+     * The snapshot of the executor status
+     *
+     * @param name          The executor name
+     * @param virtual       Whether the executor running on virtual threads
+     * @param poolSize      Current threads in the pool
+     * @param maxPoolSize   Max threads of the pool
+     * @param activeCount   Threads running tasks
+     * @param queued        Tasks waiting in queue, including the overflowed tasks
+     * @param queueCapacity The queue capacity
+     * @param completed     Tasks completed
+     * @param rejected      Tasks overflowed since the executor saturated
+     * @param avgWaitMillis Average time the tasks waited in queue
+     * @param maxWaitMillis Max time a task waited in queue
+     * @param avgRunMillis  Average time the tasks ran
+     */
+    public record Stats(String name, boolean virtual, int poolSize, int maxPoolSize, int activeCount, int queued,
+                        int queueCapacity, long completed, long rejected, double avgWaitMillis, double maxWaitMillis,
+                        double avgRunMillis) {
+    }
+
+    private class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long submittedAt;
+
+        private TimedTask(@NotNull Runnable task, long submittedAt) {
+            this.task = task;
+            this.submittedAt = submittedAt;
+        }
+
+        @Override
+        public void run() {
+            long startedAt = System.nanoTime();
+            long waited = startedAt - submittedAt;
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulate(waited);
+            try {
+                task.run();
+            } finally {
+                totalRunNanos.add(System.nanoTime() - startedAt);
+                timedTasks.increment();
+            }
+        }
+    }
+}
@@ -1,19 +1,23 @@
 package com.ghostchu.quickshop.common.util;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class QuickExecutor {
+    private static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    private static final int DEFAULT_VIRTUAL_THREADS = 64;
+    private static volatile MonitoredExecutor DATABASE_EXECUTOR = createDefault("Database");
+    private static volatile MonitoredExecutor SHOP_SAVE_EXECUTOR = createDefault("ShopSave");
+    private static volatile MonitoredExecutor COMMON_EXECUTOR = createDefault("Common");
 
     private QuickExecutor() {
     }
 
-    private static final ExecutorService DATABASE_EXECUTOR = new ThreadPoolExecutor(2, 16, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
-    private static final ExecutorService SHOP_SAVE_EXECUTOR = new ThreadPoolExecutor(0, 16, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
-    private static final ExecutorService COMMON_EXECUTOR = new ThreadPoolExecutor(1, 16, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
-
     public static ExecutorService getCommonExecutor() {
         return COMMON_EXECUTOR;
     }
@@ -25,4 +29,91 @@ public class QuickExecutor {
     public static ExecutorService getShopSaveExecutor() {
         return SHOP_SAVE_EXECUTOR;
     }
+
+    /**
+     * Rebuilds the executors with given sizes, the old executors finish their queued tasks and then exit.
+     * Should be called before anyone holding the executors, e.g. the database manager.
+     *
+     * @param databaseThreads Max threads of the database executor, 0 to decide by the CPU cores
+     * @param commonThreads   Max threads of the common executor, 0 to decide by the CPU cores
+     * @param shopSaveThreads Max threads of the shop save executor, 0 to decide by the CPU cores
+     * @param queueCapacity   The queue capacity of each executor, 0 to use the default
+     * @param virtualThreads  Run the I/O-bound database and common executor on virtual threads if the JVM supports
+     */
+    public static synchronized void configure(int databaseThreads, int commonThreads, int shopSaveThreads, int queueCapacity, boolean virtualThreads) {
+        int capacity = queueCapacity > 0 ? queueCapacity : DEFAULT_QUEUE_CAPACITY;
+        MonitoredExecutor oldDatabase = DATABASE_EXECUTOR;
+        MonitoredExecutor oldCommon = COMMON_EXECUTOR;
+        MonitoredExecutor oldShopSave = SHOP_SAVE_EXECUTOR;
+        DATABASE_EXECUTOR = create("Database", databaseThreads, defaultThreads(), capacity, virtualThreads);
+        COMMON_EXECUTOR = create("Common", commonThreads, defaultThreads(), capacity, virtualThreads);
+        SHOP_SAVE_EXECUTOR = create("ShopSave", shopSaveThreads, Math.max(1, defaultThreads() / 2), capacity, false);
+        oldDatabase.shutdown();
+        oldCommon.shutdown();
+        oldShopSave.shutdown();
+    }
+
+    @NotNull
+    public static List<MonitoredExecutor> getExecutors() {
+        return List.of(DATABASE_EXECUTOR, COMMON_EXECUTOR, SHOP_SAVE_EXECUTOR);
+    }
+
+    /**
+     * Checks if the JVM supports virtual threads (Java 21+)
+     *
+     * @return Supported
+     */
+    public static boolean isVirtualThreadSupported() {
+        return Runtime.version().feature() >= 21 && virtualThreadFactory("QuickShop-Probe") != null;
+    }
+
+    @NotNull
+    private static MonitoredExecutor createDefault(@NotNull String name) {
+        return create(name, 0, defaultThreads(), DEFAULT_QUEUE_CAPACITY, false);
+    }
+
+    @NotNull
+    private static MonitoredExecutor create(@NotNull String name, int threads, int defaultThreads, int queueCapacity, boolean virtual) {
+        String threadName = "QuickShop-" + name;
+        if (virtual && Runtime.version().feature() >= 21) {
+            ThreadFactory factory = virtualThreadFactory(threadName);
+            if (factory != null) {
+                // Virtual threads are cheap, blocking I/O won't pin a carrier thread
+                return new MonitoredExecutor(name, threads > 0 ? threads : DEFAULT_VIRTUAL_THREADS, queueCapacity, factory, true);
+            }
+        }
+        return new MonitoredExecutor(name, threads > 0 ? threads : defaultThreads, queueCapacity, platformThreadFactory(threadName), false);
+    }
+
+    private static int defaultThreads() {
+        return Math.min(8, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @NotNull
+    private static ThreadFactory platformThreadFactory(@NotNull String name) {
+        AtomicInteger counter = new AtomicInteger(0);
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Creates the virtual thread factory by reflection, since we are still compiling against Java 17.
+     *
+     * @param name The thread name prefix
+     * @return The factory, or null if not supported
+     */
+    @Nullable
+    private static ThreadFactory virtualThreadFactory(@NotNull String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
 }